@@ -16,35 +16,106 @@
 package io.apiman.gateway.engine.hazelcast;
 
 import com.hazelcast.config.Config;
-import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import io.apiman.plugins.session.state.IClosableComponent;
 
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Common base class for components backed by a Hazelcast Map.
+ * <p>
+ * Components created with the same configuration share a Hazelcast instance, which is shut down once every
+ * component using it has been closed. Listeners can be added to release resources held for a component when it is
+ * closed.
  *
  * @author Pete Cornish
  */
-abstract class AbstractHazelcastComponent {
-    private final String storeName;
+abstract class AbstractHazelcastComponent implements AutoCloseable, IClosableComponent {
     private final HazelcastInstance hazelcastInstance;
+    private final IMap<String, ?> sharedState;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Constructor.
      */
     public AbstractHazelcastComponent(String storeName) {
-        this(storeName, new Config());
+        this(storeName, null);
     }
 
     /**
      * Constructor.
      *
-     * @param config the config
+     * @param config the config, or <code>null</code> for the default configuration
      */
     public AbstractHazelcastComponent(String storeName, Config config) {
-        this.storeName = storeName;
-        hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+        hazelcastInstance = HazelcastInstanceRegistry.acquire(config);
+
+        // the proxy is thread-safe, so look it up once rather than on every operation
+        sharedState = hazelcastInstance.getMap(storeName);
+    }
+
+    /**
+     * @see io.apiman.plugins.session.state.IClosableComponent#addCloseListener(java.lang.Runnable)
+     */
+    @Override
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+
+        // whichever of this and close() removes the listener runs it, so it runs exactly once
+        if (closed.get() && closeListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Run the close listeners, then release this component's use of the Hazelcast instance, shutting it down if no
+     * other component uses it.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                runCloseListeners();
+            } finally {
+                HazelcastInstanceRegistry.release(hazelcastInstance);
+            }
+        }
+    }
+
+    /**
+     * Run every close listener, even if one fails.
+     *
+     * @throws RuntimeException the first failure of a listener
+     */
+    private void runCloseListeners() {
+        RuntimeException failure = null;
+        for (Runnable listener : closeListeners) {
+            if (closeListeners.remove(listener)) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    if (null == failure) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the Hazelcast instance used by this component
+     */
+    HazelcastInstance getHazelcastInstance() {
+        return hazelcastInstance;
     }
 
     /**
@@ -53,8 +124,9 @@ abstract class AbstractHazelcastComponent {
      * @param <T> the value type
      * @return the shared state
      */
-    protected <T> Map<String, T> getSharedState() {
-        return hazelcastInstance.getMap(storeName);
+    @SuppressWarnings("unchecked")
+    protected <T> IMap<String, T> getSharedState() {
+        return (IMap<String, T>) sharedState;
     }
 
     /**
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.gateway.engine.hazelcast;
+
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.util.Map;
+
+/**
+ * Base class for entry processors serialized using {@link HazelcastSerialization}. The same processor is applied
+ * to backup entries, so is serialized only once per operation.
+ *
+ * @param <V> the value type
+ * @author Pete Cornish
+ */
+abstract class AbstractIdentifiedEntryProcessor<V>
+        implements EntryProcessor<String, V>, EntryBackupProcessor<String, V>, IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public EntryBackupProcessor<String, V> getBackupProcessor() {
+        return this;
+    }
+
+    @Override
+    public void processBackup(Map.Entry<String, V> entry) {
+        process(entry);
+    }
+
+    @Override
+    public int getFactoryId() {
+        return HazelcastSerialization.FACTORY_ID;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.gateway.engine.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares Hazelcast instances between the components of a gateway, so that components with the same configuration
+ * join the cluster as a single member. Instances are reference counted, and shut down when the last component
+ * using them is released.
+ * <p>
+ * Configurations are the same if they have the same instance name, or, if they have no instance name, if they are
+ * the same object. Components using the default configuration always share an instance.
+ *
+ * @author Pete Cornish
+ */
+final class HazelcastInstanceRegistry {
+    private static final Object DEFAULT_CONFIG_KEY = new Object();
+
+    /**
+     * Guarded by the class monitor.
+     */
+    private static final Map<Object, SharedInstance> INSTANCES = new HashMap<>();
+
+    private HazelcastInstanceRegistry() {
+    }
+
+    /**
+     * Get the instance for the configuration, starting it if necessary, and increment its reference count.
+     *
+     * @param config the config, or <code>null</code> for the default configuration
+     * @return the instance
+     */
+    static synchronized HazelcastInstance acquire(Config config) {
+        final Object key = getKey(config);
+
+        SharedInstance shared = INSTANCES.get(key);
+        if (null == shared || !shared.instance.getLifecycleService().isRunning()) {
+            // the instance may have been shut down outside of the registry
+            final Config instanceConfig = (null == config ? new Config() : config);
+            HazelcastSerialization.configure(instanceConfig);
+            shared = new SharedInstance(Hazelcast.newHazelcastInstance(instanceConfig));
+            INSTANCES.put(key, shared);
+        }
+        shared.references++;
+        return shared.instance;
+    }
+
+    /**
+     * Decrement the reference count of the instance, shutting it down if it is no longer used.
+     *
+     * @param instance the instance
+     */
+    static synchronized void release(HazelcastInstance instance) {
+        INSTANCES.entrySet().removeIf(entry -> {
+            final SharedInstance shared = entry.getValue();
+            if (shared.instance != instance || --shared.references > 0) {
+                return false;
+            }
+            shared.instance.shutdown();
+            return true;
+        });
+    }
+
+    private static Object getKey(Config config) {
+        if (null == config) {
+            return DEFAULT_CONFIG_KEY;
+        }
+        return (null == config.getInstanceName() ? config : config.getInstanceName());
+    }
+
+    /**
+     * An instance and the number of components using it.
+     */
+    private static class SharedInstance {
+        private final HazelcastInstance instance;
+        private int references;
+
+        private SharedInstance(HazelcastInstance instance) {
+            this.instance = instance;
+        }
+    }
+}
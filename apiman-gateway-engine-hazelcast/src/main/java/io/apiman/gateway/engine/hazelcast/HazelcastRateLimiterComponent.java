@@ -16,6 +16,10 @@
 package io.apiman.gateway.engine.hazelcast;
 
 import com.hazelcast.config.Config;
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 import io.apiman.gateway.engine.async.AsyncResultImpl;
 import io.apiman.gateway.engine.async.IAsyncResultHandler;
 import io.apiman.gateway.engine.components.IRateLimiterComponent;
@@ -23,22 +27,55 @@ import io.apiman.gateway.engine.components.rate.RateLimitResponse;
 import io.apiman.gateway.engine.rates.RateBucketPeriod;
 import io.apiman.gateway.engine.rates.RateLimiterBucket;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Rate limiter component backed by a Hazelcast Map. This allows rate limiting
  * to be done across nodes in a cluster of gateways.
+ * <p>
+ * Each bucket is checked and incremented by an entry processor on the member that owns it, so updates to a bucket
+ * are atomic across the cluster, and requests for different buckets never contend.
+ * <p>
+ * Optionally, set a reservation size (see {@link #RESERVATION_SIZE}) to have each member reserve that many permits
+ * from a bucket at a time, then accept requests against its reservation without a cluster round trip. Requests that
+ * arrive while a reservation is in flight wait for it, rather than reserving more permits. Reserved permits are
+ * deducted from the shared bucket up front, so the limit is never exceeded, but a member may reject requests while
+ * another member holds unused permits: up to <code>members * reservationSize</code> permits per period may go
+ * unused. Reservations lapse when the period resets, as does the shared bucket, so unused permits are not returned.
  *
  * @author Pete Cornish
  */
 public class HazelcastRateLimiterComponent extends AbstractHazelcastComponent implements IRateLimiterComponent {
     private static final String STORE_NAME = "rate-limiter"; //$NON-NLS-1$
 
-    private final Object mutex = new Object();
+    /**
+     * Set this System property to the number of permits each member reserves from a bucket at a time, or zero to
+     * check every request against the shared bucket.
+     */
+    public static final String RESERVATION_SIZE = HazelcastRateLimiterComponent.class.getName() + ".reservationSize"; //$NON-NLS-1$
+
+    /**
+     * Once this many buckets have local reservations, lapsed reservations are discarded.
+     */
+    private static final int RESERVATION_PRUNE_THRESHOLD = 1024;
+
+    private final long reservationSize;
+    private final ConcurrentMap<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicLong reservationCount = new AtomicLong();
 
     /**
      * Constructor.
      */
     public HazelcastRateLimiterComponent() {
         super(STORE_NAME);
+        this.reservationSize = Long.getLong(RESERVATION_SIZE, 0);
     }
 
     /**
@@ -47,7 +84,18 @@ public class HazelcastRateLimiterComponent extends AbstractHazelcastComponent im
      * @param config the config
      */
     public HazelcastRateLimiterComponent(Config config) {
+        this(config, Long.getLong(RESERVATION_SIZE, 0));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param config          the config
+     * @param reservationSize the number of permits to reserve from a bucket at a time, or zero to disable
+     */
+    public HazelcastRateLimiterComponent(Config config, long reservationSize) {
         super(STORE_NAME, config);
+        this.reservationSize = reservationSize;
     }
 
     /**
@@ -56,28 +104,419 @@ public class HazelcastRateLimiterComponent extends AbstractHazelcastComponent im
     @Override
     public void accept(final String bucketId, final RateBucketPeriod period, final long limit,
                        final long increment, final IAsyncResultHandler<RateLimitResponse> handler) {
-        RateLimiterBucket bucket;
-        synchronized (mutex) {
-            bucket = (RateLimiterBucket) getSharedState().get(bucketId);
+        if (reservationSize > 0) {
+            acceptReserved(bucketId, period, limit, increment, handler);
+            return;
+        }
+
+        try {
+            getSharedState().submitToKey(bucketId, new RateLimitEntryProcessor(period, limit, increment),
+                    new ExecutionCallback<RateLimitResult>() {
+                        @Override
+                        public void onResponse(RateLimitResult result) {
+                            final RateLimitResponse response = new RateLimitResponse();
+                            response.setAccepted(result.accepted);
+                            response.setReset((int) (result.resetMillis / 1000L));
+                            response.setRemaining(limit - result.count);
+                            handler.handle(AsyncResultImpl.create(response));
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            handler.handle(AsyncResultImpl.create(t));
+                        }
+                    });
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
+        }
+    }
+
+    /**
+     * Accept the request against this member's reservation for the bucket, or wait for more permits to be reserved
+     * if the reservation has lapsed or has too few permits left.
+     */
+    private void acceptReserved(final String bucketId, final RateBucketPeriod period, final long limit,
+                                final long increment, final IAsyncResultHandler<RateLimitResponse> handler) {
+
+        final long nowMillis = System.currentTimeMillis();
+        Reservation reservation = reservations.get(bucketId);
+        if (null == reservation) {
+            reservation = reservations.computeIfAbsent(bucketId, key -> new Reservation());
+        }
+
+        final Boolean accepted = reservation.tryAccept(increment, nowMillis);
+        if (null != accepted) {
+            handler.handle(AsyncResultImpl.create(reservation.toResponse(accepted, limit, nowMillis)));
+            return;
+        }
+
+        final Boolean acceptedAfterReserve;
+        long requested = 0;
+        synchronized (reservation) {
+            // permits may have been reserved since the first attempt
+            acceptedAfterReserve = reservation.tryAccept(increment, nowMillis);
+            if (null == acceptedAfterReserve) {
+                reservation.pending.add(new PendingRequest(increment, handler));
+                if (!reservation.reserving) {
+                    requested = reservation.startReserving(reservationSize);
+                }
+            }
+        }
+
+        if (null != acceptedAfterReserve) {
+            handler.handle(AsyncResultImpl.create(reservation.toResponse(acceptedAfterReserve, limit, nowMillis)));
+        }
+        if (requested > 0) {
+            reserve(bucketId, reservation, period, limit, requested);
+        }
+    }
+
+    /**
+     * Reserve permits from the shared bucket, then complete the requests waiting for them.
+     */
+    private void reserve(final String bucketId, final Reservation reservation, final RateBucketPeriod period,
+                         final long limit, final long requested) {
+
+        reservationCount.incrementAndGet();
+        try {
+            getSharedState().submitToKey(bucketId, new ReservePermitsEntryProcessor(period, limit, requested),
+                    new ExecutionCallback<RateLimitResult>() {
+                        @Override
+                        public void onResponse(RateLimitResult result) {
+                            final long nowMillis = System.currentTimeMillis();
+                            final List<PendingRequest> accepted = new ArrayList<>();
+                            final List<PendingRequest> rejected = new ArrayList<>();
+                            final long nextRequested;
+
+                            synchronized (reservation) {
+                                reservation.addPermits(result, requested, nowMillis);
+                                reservation.completePending(nowMillis, accepted, rejected);
+                                nextRequested = (reservation.pending.isEmpty() ? 0 :
+                                        reservation.startReserving(reservationSize));
+                            }
+
+                            if (reservations.size() > RESERVATION_PRUNE_THRESHOLD) {
+                                reservations.values().removeIf(candidate -> candidate.isLapsed(nowMillis));
+                            }
+
+                            for (PendingRequest request : accepted) {
+                                request.handler.handle(AsyncResultImpl.create(
+                                        reservation.toResponse(true, limit, nowMillis)));
+                            }
+                            for (PendingRequest request : rejected) {
+                                request.handler.handle(AsyncResultImpl.create(
+                                        reservation.toResponse(false, limit, nowMillis)));
+                            }
+                            if (nextRequested > 0) {
+                                reserve(bucketId, reservation, period, limit, nextRequested);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            failPending(reservation, t);
+                        }
+                    });
+        } catch (Exception e) {
+            failPending(reservation, e);
+        }
+    }
+
+    /**
+     * Fail the requests waiting for a reservation.
+     */
+    private static void failPending(Reservation reservation, Throwable t) {
+        final List<PendingRequest> failed;
+        synchronized (reservation) {
+            failed = new ArrayList<>(reservation.pending);
+            reservation.pending.clear();
+            reservation.reserving = false;
+        }
+        for (PendingRequest request : failed) {
+            request.handler.handle(AsyncResultImpl.create(t));
+        }
+    }
+
+    /**
+     * @return the number of reservations requested from the shared buckets by this member
+     */
+    long getReservationCount() {
+        return reservationCount.get();
+    }
+
+    /**
+     * Checks and increments a bucket on the member that owns it.
+     */
+    static class RateLimitEntryProcessor extends AbstractIdentifiedEntryProcessor<RateLimiterBucket> {
+        private static final long serialVersionUID = 1L;
+
+        private RateBucketPeriod period;
+        private long limit;
+        private long increment;
+
+        RateLimitEntryProcessor() {
+        }
+
+        RateLimitEntryProcessor(RateBucketPeriod period, long limit, long increment) {
+            this.period = period;
+            this.limit = limit;
+            this.increment = increment;
+        }
+
+        @Override
+        public Object process(Map.Entry<String, RateLimiterBucket> entry) {
+            RateLimiterBucket bucket = entry.getValue();
             if (bucket == null) {
                 bucket = new RateLimiterBucket();
-                getSharedState().put(bucketId, bucket);
             }
             bucket.resetIfNecessary(period);
 
-            RateLimitResponse response = new RateLimitResponse();
+            final boolean accepted;
             if (bucket.getCount() > limit) {
-                response.setAccepted(false);
+                accepted = false;
             } else {
-                response.setAccepted(bucket.getCount() < limit);
+                accepted = bucket.getCount() < limit;
                 bucket.setCount(bucket.getCount() + increment);
                 bucket.setLast(System.currentTimeMillis());
             }
-            int reset = (int) (bucket.getResetMillis(period) / 1000L);
-            response.setReset(reset);
-            response.setRemaining(limit - bucket.getCount());
-            handler.handle(AsyncResultImpl.create(response));
-            getSharedState().put(bucketId, bucket);
+            entry.setValue(bucket);
+
+            return new RateLimitResult(accepted, 0, bucket.getCount(), bucket.getResetMillis(period));
+        }
+
+        @Override
+        public int getId() {
+            return HazelcastSerialization.RATE_LIMIT_ENTRY_PROCESSOR;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            out.writeUTF(period.name());
+            out.writeLong(limit);
+            out.writeLong(increment);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            period = RateBucketPeriod.valueOf(in.readUTF());
+            limit = in.readLong();
+            increment = in.readLong();
+        }
+    }
+
+    /**
+     * Reserves up to the requested number of permits from a bucket, on the member that owns it.
+     */
+    static class ReservePermitsEntryProcessor extends AbstractIdentifiedEntryProcessor<RateLimiterBucket> {
+        private static final long serialVersionUID = 1L;
+
+        private RateBucketPeriod period;
+        private long limit;
+        private long requested;
+
+        ReservePermitsEntryProcessor() {
+        }
+
+        ReservePermitsEntryProcessor(RateBucketPeriod period, long limit, long requested) {
+            this.period = period;
+            this.limit = limit;
+            this.requested = requested;
+        }
+
+        @Override
+        public Object process(Map.Entry<String, RateLimiterBucket> entry) {
+            RateLimiterBucket bucket = entry.getValue();
+            if (bucket == null) {
+                bucket = new RateLimiterBucket();
+            }
+            bucket.resetIfNecessary(period);
+
+            final long granted = Math.max(0, Math.min(requested, limit - bucket.getCount()));
+            if (granted > 0) {
+                bucket.setCount(bucket.getCount() + granted);
+                bucket.setLast(System.currentTimeMillis());
+                entry.setValue(bucket);
+            }
+
+            return new RateLimitResult(granted > 0, granted, bucket.getCount(), bucket.getResetMillis(period));
+        }
+
+        @Override
+        public int getId() {
+            return HazelcastSerialization.RESERVE_PERMITS_ENTRY_PROCESSOR;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            out.writeUTF(period.name());
+            out.writeLong(limit);
+            out.writeLong(requested);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            period = RateBucketPeriod.valueOf(in.readUTF());
+            limit = in.readLong();
+            requested = in.readLong();
+        }
+    }
+
+    /**
+     * Permits reserved by this member from a bucket, for the current period of the bucket.
+     * <p>
+     * Permits are taken without locking. Reserving permits, and the requests waiting for them, are guarded
+     * by the monitor of the reservation.
+     */
+    private static class Reservation {
+        private final AtomicLong permits = new AtomicLong();
+        private volatile long resetAt;
+        private volatile long sharedCount;
+
+        /**
+         * Whether the shared bucket had no more permits to give for the current period.
+         */
+        private volatile boolean exhausted;
+
+        private final List<PendingRequest> pending = new ArrayList<>();
+        private boolean reserving;
+
+        boolean isLapsed(long nowMillis) {
+            return nowMillis >= resetAt;
+        }
+
+        /**
+         * Try to accept the request using reserved permits.
+         *
+         * @return <code>true</code> if accepted, <code>false</code> if the bucket is exhausted for the period,
+         * or <code>null</code> if more permits must be reserved
+         */
+        Boolean tryAccept(long increment, long nowMillis) {
+            if (isLapsed(nowMillis)) {
+                return null;
+            }
+            long available;
+            do {
+                available = permits.get();
+                if (available < increment) {
+                    return (exhausted ? Boolean.FALSE : null);
+                }
+            } while (!permits.compareAndSet(available, available - increment));
+            return Boolean.TRUE;
+        }
+
+        /**
+         * Must be called holding the monitor.
+         *
+         * @return the number of permits to reserve for the pending requests
+         */
+        long startReserving(long reservationSize) {
+            reserving = true;
+            long pendingIncrements = 0;
+            for (PendingRequest request : pending) {
+                pendingIncrements += request.increment;
+            }
+            return Math.max(reservationSize, pendingIncrements);
+        }
+
+        /**
+         * Add the permits granted by the shared bucket, starting a new period if the reservation has lapsed.
+         * Must be called holding the monitor.
+         */
+        void addPermits(RateLimitResult result, long requested, long nowMillis) {
+            if (isLapsed(nowMillis)) {
+                permits.set(result.granted);
+                resetAt = nowMillis + result.resetMillis;
+            } else {
+                permits.addAndGet(result.granted);
+            }
+            sharedCount = result.count;
+            exhausted = (result.granted < requested);
+            reserving = false;
+        }
+
+        /**
+         * Take the requests that can now be completed from those pending, in order of arrival.
+         * Must be called holding the monitor.
+         */
+        void completePending(long nowMillis, List<PendingRequest> accepted, List<PendingRequest> rejected) {
+            for (Iterator<PendingRequest> iterator = pending.iterator(); iterator.hasNext(); ) {
+                final PendingRequest request = iterator.next();
+                final Boolean outcome = tryAccept(request.increment, nowMillis);
+                if (null != outcome) {
+                    (outcome ? accepted : rejected).add(request);
+                    iterator.remove();
+                }
+            }
+        }
+
+        /**
+         * @return an approximate response: permits held by other members are counted as used
+         */
+        RateLimitResponse toResponse(boolean accepted, long limit, long nowMillis) {
+            final RateLimitResponse response = new RateLimitResponse();
+            response.setAccepted(accepted);
+            response.setReset((int) (Math.max(0, resetAt - nowMillis) / 1000L));
+            response.setRemaining(Math.max(0, limit - sharedCount) + permits.get());
+            return response;
+        }
+    }
+
+    /**
+     * A request waiting for permits to be reserved.
+     */
+    private static class PendingRequest {
+        private final long increment;
+        private final IAsyncResultHandler<RateLimitResponse> handler;
+
+        private PendingRequest(long increment, IAsyncResultHandler<RateLimitResponse> handler) {
+            this.increment = increment;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * The outcome of a {@link RateLimitEntryProcessor} or {@link ReservePermitsEntryProcessor}, returned to the calling member.
+     */
+    static class RateLimitResult implements IdentifiedDataSerializable {
+        private boolean accepted;
+        private long granted;
+        private long count;
+        private long resetMillis;
+
+        RateLimitResult() {
+        }
+
+        private RateLimitResult(boolean accepted, long granted, long count, long resetMillis) {
+            this.accepted = accepted;
+            this.granted = granted;
+            this.count = count;
+            this.resetMillis = resetMillis;
+        }
+
+        @Override
+        public int getFactoryId() {
+            return HazelcastSerialization.FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return HazelcastSerialization.RATE_LIMIT_RESULT;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            out.writeBoolean(accepted);
+            out.writeLong(granted);
+            out.writeLong(count);
+            out.writeLong(resetMillis);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            accepted = in.readBoolean();
+            granted = in.readLong();
+            count = in.readLong();
+            resetMillis = in.readLong();
         }
     }
 }
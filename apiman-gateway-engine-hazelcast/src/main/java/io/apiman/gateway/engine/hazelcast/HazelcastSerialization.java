@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.gateway.engine.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializableFactory;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import io.apiman.gateway.engine.rates.RateLimiterBucket;
+
+import java.io.IOException;
+
+/**
+ * Registers compact serialization, without reflection, for the types this module sends between members and holds
+ * in maps: the entry processors and their results, as {@link IdentifiedDataSerializable}, and
+ * {@link RateLimiterBucket} values, using a {@link StreamSerializer}.
+ * <p>
+ * Every member must register the same factory and serializers, which happens when the components create their
+ * Hazelcast instance.
+ *
+ * @author Pete Cornish
+ */
+final class HazelcastSerialization {
+    /**
+     * The ID of the {@link DataSerializableFactory} for this module.
+     */
+    static final int FACTORY_ID = 1701;
+
+    static final int RATE_LIMIT_ENTRY_PROCESSOR = 1;
+    static final int RESERVE_PERMITS_ENTRY_PROCESSOR = 2;
+    static final int RATE_LIMIT_RESULT = 3;
+    static final int REMOVE_ENTRY_PROCESSOR = 4;
+
+    /**
+     * The type ID of the {@link RateLimiterBucket} serializer.
+     */
+    static final int RATE_LIMITER_BUCKET_TYPE_ID = 1701;
+
+    private HazelcastSerialization() {
+    }
+
+    /**
+     * Register the serialization for this module with the configuration, unless it has already been registered.
+     *
+     * @param config the config
+     */
+    static void configure(Config config) {
+        final SerializationConfig serializationConfig = config.getSerializationConfig();
+        serializationConfig.getDataSerializableFactories().putIfAbsent(FACTORY_ID, new Factory());
+
+        final boolean bucketSerializerRegistered = serializationConfig.getSerializerConfigs().stream()
+                .anyMatch(serializer -> RateLimiterBucket.class.equals(serializer.getTypeClass()));
+        if (!bucketSerializerRegistered) {
+            serializationConfig.addSerializerConfig(new SerializerConfig()
+                    .setTypeClass(RateLimiterBucket.class)
+                    .setImplementation(new RateLimiterBucketSerializer()));
+        }
+    }
+
+    /**
+     * Creates the {@link IdentifiedDataSerializable} types of this module.
+     */
+    private static class Factory implements DataSerializableFactory {
+        @Override
+        public IdentifiedDataSerializable create(int typeId) {
+            switch (typeId) {
+                case RATE_LIMIT_ENTRY_PROCESSOR:
+                    return new HazelcastRateLimiterComponent.RateLimitEntryProcessor();
+                case RESERVE_PERMITS_ENTRY_PROCESSOR:
+                    return new HazelcastRateLimiterComponent.ReservePermitsEntryProcessor();
+                case RATE_LIMIT_RESULT:
+                    return new HazelcastRateLimiterComponent.RateLimitResult();
+                case REMOVE_ENTRY_PROCESSOR:
+                    return new HazelcastSharedStateComponent.RemoveEntryProcessor();
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Writes a {@link RateLimiterBucket} as its two fields.
+     */
+    static class RateLimiterBucketSerializer implements StreamSerializer<RateLimiterBucket> {
+        @Override
+        public int getTypeId() {
+            return RATE_LIMITER_BUCKET_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, RateLimiterBucket bucket) throws IOException {
+            out.writeLong(bucket.getCount());
+            out.writeLong(bucket.getLast());
+        }
+
+        @Override
+        public RateLimiterBucket read(ObjectDataInput in) throws IOException {
+            final RateLimiterBucket bucket = new RateLimiterBucket();
+            bucket.setCount(in.readLong());
+            bucket.setLast(in.readLong());
+            return bucket;
+        }
+
+        @Override
+        public void destroy() {
+            // no op
+        }
+    }
+}
@@ -16,19 +16,53 @@
 package io.apiman.gateway.engine.hazelcast;
 
 import com.hazelcast.config.Config;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
 import io.apiman.gateway.engine.async.AsyncResultImpl;
 import io.apiman.gateway.engine.async.IAsyncResultHandler;
 import io.apiman.gateway.engine.components.ISharedStateComponent;
+import io.apiman.plugins.session.state.IBatchSharedState;
+import io.apiman.plugins.session.state.IEntryProcessingSharedState;
+import io.apiman.plugins.session.state.IExpiringSharedState;
+import io.apiman.plugins.session.state.IObservableSharedState;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Shared state component backed by a Hazelcast Map. This allows the shared state
  * to be easily clusterable.
+ * <p>
+ * As well as the {@link ISharedStateComponent} operations, it supports the time to live, batch and entry processor
+ * operations used by the session plugins.
  *
  * @author Pete Cornish
  */
-public class HazelcastSharedStateComponent extends AbstractHazelcastComponent implements ISharedStateComponent {
+public class HazelcastSharedStateComponent extends AbstractHazelcastComponent implements ISharedStateComponent,
+        IExpiringSharedState, IBatchSharedState, IEntryProcessingSharedState, IObservableSharedState {
     private static final String STORE_NAME = "shared-state"; //$NON-NLS-1$
 
+    /**
+     * The attribute by which queries refer to the key of an entry.
+     */
+    private static final String KEY_ATTRIBUTE = "__key"; //$NON-NLS-1$
+
     /**
      * Constructor.
      */
@@ -46,22 +80,19 @@ public class HazelcastSharedStateComponent extends AbstractHazelcastComponent im
     }
 
     /**
+     * The value is fetched in a single asynchronous operation; Hazelcast maps cannot hold <code>null</code> values,
+     * so a <code>null</code> result means the property is not set.
+     *
      * @see io.apiman.gateway.engine.components.ISharedStateComponent#getProperty(java.lang.String, java.lang.String, java.lang.Object, io.apiman.gateway.engine.async.IAsyncResultHandler)
      */
-    @SuppressWarnings("unchecked")
     @Override
     public <T> void getProperty(String namespace, String propertyName, T defaultValue, IAsyncResultHandler<T> handler) {
         final String namespacedKey = buildNamespacedKey(namespace, propertyName);
-        if (getSharedState().containsKey(namespacedKey)) {
-            try {
-                T rval = (T) getSharedState().get(namespacedKey);
-                handler.handle(AsyncResultImpl.create(rval));
-            } catch (Exception e) {
-                handler.handle(AsyncResultImpl.create(e));
-            }
-
-        } else {
-            handler.handle(AsyncResultImpl.create(defaultValue));
+        try {
+            onCompletion(this.<T>getSharedState().getAsync(namespacedKey),
+                    value -> (null != value ? value : defaultValue), handler);
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
         }
     }
 
@@ -72,8 +103,22 @@ public class HazelcastSharedStateComponent extends AbstractHazelcastComponent im
     public <T> void setProperty(String namespace, String propertyName, T value, IAsyncResultHandler<Void> handler) {
         final String namespacedKey = buildNamespacedKey(namespace, propertyName);
         try {
-            getSharedState().put(namespacedKey, value);
-            handler.handle(AsyncResultImpl.create((Void) null));
+            onCompletion(this.<T>getSharedState().putAsync(namespacedKey, value), previous -> null, handler);
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
+        }
+    }
+
+    /**
+     * @see io.apiman.plugins.session.state.IExpiringSharedState#setProperty(java.lang.String, java.lang.String, java.lang.Object, long, io.apiman.gateway.engine.async.IAsyncResultHandler)
+     */
+    @Override
+    public <T> void setProperty(String namespace, String propertyName, T value, long timeToLive,
+                                IAsyncResultHandler<Void> handler) {
+        final String namespacedKey = buildNamespacedKey(namespace, propertyName);
+        try {
+            onCompletion(this.<T>getSharedState().putAsync(namespacedKey, value, timeToLive, TimeUnit.MILLISECONDS),
+                    previous -> null, handler);
         } catch (Exception e) {
             handler.handle(AsyncResultImpl.create(e));
         }
@@ -86,10 +131,245 @@ public class HazelcastSharedStateComponent extends AbstractHazelcastComponent im
     public <T> void clearProperty(String namespace, String propertyName, IAsyncResultHandler<Void> handler) {
         final String namespacedKey = buildNamespacedKey(namespace, propertyName);
         try {
-            getSharedState().remove(namespacedKey);
+            onCompletion(getSharedState().removeAsync(namespacedKey), previous -> null, handler);
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
+        }
+    }
+
+    /**
+     * @see io.apiman.plugins.session.state.IBatchSharedState#getProperties(java.lang.String, java.util.Collection, io.apiman.gateway.engine.async.IAsyncResultHandler)
+     */
+    @Override
+    public <T> void getProperties(String namespace, Collection<String> propertyNames, IAsyncResultHandler<Map<String, T>> handler) {
+        final Map<String, String> propertyNamesByKey = new HashMap<>();
+        for (String propertyName : propertyNames) {
+            propertyNamesByKey.put(buildNamespacedKey(namespace, propertyName), propertyName);
+        }
+
+        try {
+            final Map<String, T> values = this.<T>getSharedState().getAll(propertyNamesByKey.keySet());
+            final Map<String, T> rval = new HashMap<>(values.size());
+            values.forEach((key, value) -> rval.put(propertyNamesByKey.get(key), value));
+            handler.handle(AsyncResultImpl.create(rval));
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
+        }
+    }
+
+    /**
+     * @see io.apiman.plugins.session.state.IBatchSharedState#setProperties(java.lang.String, java.util.Map, io.apiman.gateway.engine.async.IAsyncResultHandler)
+     */
+    @Override
+    public <T> void setProperties(String namespace, Map<String, T> properties, IAsyncResultHandler<Void> handler) {
+        final Map<String, T> namespacedProperties = new HashMap<>(properties.size());
+        properties.forEach((propertyName, value) -> namespacedProperties.put(buildNamespacedKey(namespace, propertyName), value));
+
+        try {
+            getSharedState().putAll(namespacedProperties);
+            handler.handle(AsyncResultImpl.create((Void) null));
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
+        }
+    }
+
+    /**
+     * @see io.apiman.plugins.session.state.IBatchSharedState#clearProperties(java.lang.String, java.util.Collection, io.apiman.gateway.engine.async.IAsyncResultHandler)
+     */
+    @Override
+    public void clearProperties(String namespace, Collection<String> propertyNames, IAsyncResultHandler<Void> handler) {
+        final Set<String> namespacedKeys = new HashSet<>(propertyNames.size());
+        for (String propertyName : propertyNames) {
+            namespacedKeys.add(buildNamespacedKey(namespace, propertyName));
+        }
+
+        try {
+            if (!namespacedKeys.isEmpty()) {
+                getSharedState().executeOnKeys(namespacedKeys, new RemoveEntryProcessor());
+            }
             handler.handle(AsyncResultImpl.create((Void) null));
         } catch (Exception e) {
             handler.handle(AsyncResultImpl.create(e));
         }
     }
+
+    /**
+     * @see io.apiman.plugins.session.state.IEntryProcessingSharedState#executeOnProperty(java.lang.String, java.lang.String, com.hazelcast.map.EntryProcessor, io.apiman.gateway.engine.async.IAsyncResultHandler)
+     */
+    @Override
+    public <R> void executeOnProperty(String namespace, String propertyName, EntryProcessor<String, ?> entryProcessor,
+                                      IAsyncResultHandler<R> handler) {
+        final String namespacedKey = buildNamespacedKey(namespace, propertyName);
+        try {
+            getSharedState().submitToKey(namespacedKey, entryProcessor, new ExecutionCallback<R>() {
+                @Override
+                public void onResponse(R response) {
+                    handler.handle(AsyncResultImpl.create(response));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    handler.handle(AsyncResultImpl.create(t));
+                }
+            });
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
+        }
+    }
+
+    /**
+     * The entries are selected by a query on the members that own them.
+     *
+     * @see io.apiman.plugins.session.state.IObservableSharedState#getAllProperties(java.lang.String, io.apiman.gateway.engine.async.IAsyncResultHandler)
+     */
+    @Override
+    public <T> void getAllProperties(String namespace, IAsyncResultHandler<Map<String, T>> handler) {
+        final String keyPrefix = buildNamespacedKey(namespace, "");
+        try {
+            final Map<String, T> rval = new HashMap<>();
+            for (Map.Entry<String, T> entry : this.<T>getSharedState().entrySet(buildKeyPrefixPredicate(keyPrefix))) {
+                if (entry.getKey().startsWith(keyPrefix)) {
+                    rval.put(entry.getKey().substring(keyPrefix.length()), entry.getValue());
+                }
+            }
+            handler.handle(AsyncResultImpl.create(rval));
+        } catch (Exception e) {
+            handler.handle(AsyncResultImpl.create(e));
+        }
+    }
+
+    /**
+     * @see io.apiman.plugins.session.state.IObservableSharedState#addPropertyListener(java.lang.String, java.util.function.BiConsumer)
+     */
+    @Override
+    public <T> String addPropertyListener(String namespace, BiConsumer<String, T> listener) {
+        final String keyPrefix = buildNamespacedKey(namespace, "");
+        return this.<T>getSharedState().addEntryListener(new PropertyListener<>(keyPrefix, listener),
+                buildKeyPrefixPredicate(keyPrefix), true);
+    }
+
+    /**
+     * @see io.apiman.plugins.session.state.IObservableSharedState#removePropertyListener(java.lang.String)
+     */
+    @Override
+    public void removePropertyListener(String listenerId) {
+        getSharedState().removeEntryListener(listenerId);
+    }
+
+    /**
+     * Matches keys starting with the prefix. Characters in the prefix that are wildcards in a query match more keys
+     * than intended, so the caller must check the prefix of each key it is given.
+     * The predicate is one of Hazelcast's own, so every member can deserialize it.
+     *
+     * @param keyPrefix the key prefix
+     * @return the predicate
+     */
+    private static Predicate buildKeyPrefixPredicate(String keyPrefix) {
+        return Predicates.like(KEY_ATTRIBUTE, keyPrefix + "%"); //$NON-NLS-1$
+    }
+
+    /**
+     * Completes the handler with the mapped result of the future, from the callback of the future rather than
+     * by blocking the calling thread.
+     *
+     * @param future  the future returned by an asynchronous map operation
+     * @param mapper  converts the result of the future into the result for the handler
+     * @param handler the result handler
+     * @param <V>     the result type of the future
+     * @param <R>     the result type of the handler
+     */
+    private static <V, R> void onCompletion(Future<V> future, Function<V, R> mapper, IAsyncResultHandler<R> handler) {
+        final ExecutionCallback<V> callback = new ExecutionCallback<V>() {
+            @Override
+            public void onResponse(V response) {
+                final R rval;
+                try {
+                    rval = mapper.apply(response);
+                } catch (Exception e) {
+                    handler.handle(AsyncResultImpl.create(e));
+                    return;
+                }
+                handler.handle(AsyncResultImpl.create(rval));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                handler.handle(AsyncResultImpl.create(t));
+            }
+        };
+
+        if (future instanceof ICompletableFuture) {
+            ((ICompletableFuture<V>) future).andThen(callback);
+
+        } else {
+            // not expected from Hazelcast's map proxies, but the declared type permits it
+            try {
+                callback.onResponse(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                callback.onFailure(e);
+            } catch (ExecutionException e) {
+                callback.onFailure(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Passes the properties set in a namespace to a listener.
+     *
+     * @param <T> the value type
+     */
+    private static class PropertyListener<T> implements EntryAddedListener<String, T>, EntryUpdatedListener<String, T> {
+        private final String keyPrefix;
+        private final BiConsumer<String, T> listener;
+
+        PropertyListener(String keyPrefix, BiConsumer<String, T> listener) {
+            this.keyPrefix = keyPrefix;
+            this.listener = listener;
+        }
+
+        @Override
+        public void entryAdded(EntryEvent<String, T> event) {
+            propertySet(event);
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<String, T> event) {
+            propertySet(event);
+        }
+
+        private void propertySet(EntryEvent<String, T> event) {
+            if (event.getKey().startsWith(keyPrefix)) {
+                listener.accept(event.getKey().substring(keyPrefix.length()), event.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes the entries it is executed on.
+     */
+    static class RemoveEntryProcessor extends AbstractIdentifiedEntryProcessor<Object> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object process(Map.Entry<String, Object> entry) {
+            entry.setValue(null);
+            return null;
+        }
+
+        @Override
+        public int getId() {
+            return HazelcastSerialization.REMOVE_ENTRY_PROCESSOR;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) {
+            // no state
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) {
+            // no state
+        }
+    }
 }
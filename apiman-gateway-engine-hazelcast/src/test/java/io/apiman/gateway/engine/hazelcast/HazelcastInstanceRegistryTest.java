@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.gateway.engine.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link HazelcastInstanceRegistry}.
+ *
+ * @author Pete Cornish
+ */
+public class HazelcastInstanceRegistryTest {
+    @AfterClass
+    public static void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    private static Config buildConfig(String instanceName) {
+        final Config config = new Config();
+        config.setInstanceName(instanceName);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        return config;
+    }
+
+    /**
+     * Expects that components with the same configuration share an instance, which is shut down when the
+     * last component is closed.
+     */
+    @Test
+    public void testSharedInstance() {
+        final HazelcastSharedStateComponent sharedState =
+                new HazelcastSharedStateComponent(buildConfig("registry-test"));
+        final HazelcastRateLimiterComponent rateLimiter =
+                new HazelcastRateLimiterComponent(buildConfig("registry-test"));
+
+        assertSame(sharedState.getHazelcastInstance(), rateLimiter.getHazelcastInstance());
+        assertEquals(1, sharedState.getHazelcastInstance().getCluster().getMembers().size());
+
+        sharedState.close();
+        sharedState.close();
+        assertTrue(rateLimiter.getHazelcastInstance().getLifecycleService().isRunning());
+
+        rateLimiter.close();
+        assertFalse(rateLimiter.getHazelcastInstance().getLifecycleService().isRunning());
+    }
+
+    /**
+     * Expects that components with different configurations have their own instances, and that a new instance
+     * is started once the previous one has been shut down.
+     */
+    @Test
+    public void testSeparateInstances() {
+        final HazelcastSharedStateComponent first = new HazelcastSharedStateComponent(buildConfig(null));
+        final HazelcastSharedStateComponent second = new HazelcastSharedStateComponent(buildConfig(null));
+        try {
+            assertNotSame(first.getHazelcastInstance(), second.getHazelcastInstance());
+        } finally {
+            first.close();
+            second.close();
+        }
+
+        final Config config = buildConfig("registry-restart-test");
+        final HazelcastSharedStateComponent original = new HazelcastSharedStateComponent(config);
+        original.close();
+
+        final HazelcastSharedStateComponent restarted = new HazelcastSharedStateComponent(config);
+        try {
+            assertNotSame(original.getHazelcastInstance(), restarted.getHazelcastInstance());
+            assertTrue(restarted.getHazelcastInstance().getLifecycleService().isRunning());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    /**
+     * Expects that close listeners run once when the component is closed, or immediately if added afterwards, and
+     * that a failing listener does not stop the others or the release of the instance.
+     */
+    @Test
+    public void testCloseListeners() {
+        final HazelcastSharedStateComponent sharedState =
+                new HazelcastSharedStateComponent(buildConfig("close-listener-test"));
+        final AtomicInteger closes = new AtomicInteger();
+        sharedState.addCloseListener(() -> {
+            throw new IllegalStateException("listener failed");
+        });
+        sharedState.addCloseListener(closes::incrementAndGet);
+
+        try {
+            sharedState.close();
+            fail("Expected listener failure");
+        } catch (IllegalStateException e) {
+            assertEquals("listener failed", e.getMessage());
+        }
+        assertEquals(1, closes.get());
+        assertFalse(sharedState.getHazelcastInstance().getLifecycleService().isRunning());
+
+        sharedState.close();
+        assertEquals(1, closes.get());
+
+        sharedState.addCloseListener(closes::incrementAndGet);
+        assertEquals(2, closes.get());
+    }
+}
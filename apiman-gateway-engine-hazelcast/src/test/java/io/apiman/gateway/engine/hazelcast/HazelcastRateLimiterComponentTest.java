@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.gateway.engine.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import io.apiman.gateway.engine.components.rate.RateLimitResponse;
+import io.apiman.gateway.engine.rates.RateBucketPeriod;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link HazelcastRateLimiterComponent}.
+ *
+ * @author Pete Cornish
+ */
+public class HazelcastRateLimiterComponentTest {
+    private static HazelcastRateLimiterComponent rateLimiter;
+
+    @BeforeClass
+    public static void setUp() {
+        final Config config = new Config();
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        rateLimiter = new HazelcastRateLimiterComponent(config);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    private static RateLimitResponse accept(String bucketId, long limit) throws InterruptedException {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<RateLimitResponse> response = new AtomicReference<>();
+        rateLimiter.accept(bucketId, RateBucketPeriod.Hour, limit, 1, result -> {
+            assertTrue(result.isSuccess());
+            response.set(result.getResult());
+            completed.countDown();
+        });
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        return response.get();
+    }
+
+    /**
+     * Expects that requests are accepted until the limit is reached.
+     */
+    @Test
+    public void testLimitEnforced() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            final RateLimitResponse response = accept("single", 3);
+            assertTrue(response.isAccepted());
+            assertEquals(3 - i, response.getRemaining());
+            assertTrue(response.getReset() > 0);
+        }
+        assertFalse(accept("single", 3).isAccepted());
+        assertFalse(accept("single", 3).isAccepted());
+    }
+
+    /**
+     * Expects that concurrent requests for many buckets are each counted exactly once.
+     */
+    @Test
+    public void testConcurrentBuckets() throws Exception {
+        final int buckets = 16;
+        final int requestsPerBucket = 200;
+        final int limit = 150;
+
+        final AtomicInteger[] accepted = new AtomicInteger[buckets];
+        for (int i = 0; i < buckets; i++) {
+            accepted[i] = new AtomicInteger();
+        }
+
+        final CountDownLatch completed = new CountDownLatch(buckets * requestsPerBucket);
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            for (int request = 0; request < requestsPerBucket; request++) {
+                for (int i = 0; i < buckets; i++) {
+                    final int bucket = i;
+                    executor.execute(() -> rateLimiter.accept("concurrent-" + bucket, RateBucketPeriod.Hour, limit, 1,
+                            result -> {
+                                if (result.isSuccess() && result.getResult().isAccepted()) {
+                                    accepted[bucket].incrementAndGet();
+                                }
+                                completed.countDown();
+                            }));
+                }
+            }
+            assertTrue(completed.await(30, TimeUnit.SECONDS));
+
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < buckets; i++) {
+            assertEquals(limit, accepted[i].get());
+        }
+    }
+}
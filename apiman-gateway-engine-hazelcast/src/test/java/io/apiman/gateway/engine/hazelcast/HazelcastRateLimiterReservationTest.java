@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.gateway.engine.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import io.apiman.gateway.engine.components.rate.RateLimitResponse;
+import io.apiman.gateway.engine.rates.RateBucketPeriod;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the reservation mode of {@link HazelcastRateLimiterComponent}, using a cluster of two members
+ * in this JVM.
+ *
+ * @author Pete Cornish
+ */
+public class HazelcastRateLimiterReservationTest {
+    private static final int RESERVATION_SIZE = 10;
+
+    private static HazelcastRateLimiterComponent[] members;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        members = new HazelcastRateLimiterComponent[]{
+                new HazelcastRateLimiterComponent(buildConfig(), RESERVATION_SIZE),
+                new HazelcastRateLimiterComponent(buildConfig(), RESERVATION_SIZE)
+        };
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (!isClusterFormed()) {
+            assertTrue("Cluster did not form", System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    private static Config buildConfig() {
+        final Config config = new Config();
+        config.getGroupConfig().setName("rate-limiter-reservation-test");
+        config.setProperty("hazelcast.wait.seconds.before.join", "0");
+
+        final JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        return config;
+    }
+
+    private static boolean isClusterFormed() {
+        for (HazelcastInstance instance : Hazelcast.getAllHazelcastInstances()) {
+            if (instance.getCluster().getMembers().size() < members.length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static RateLimitResponse accept(HazelcastRateLimiterComponent member, String bucketId, long limit)
+            throws InterruptedException {
+
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<RateLimitResponse> response = new AtomicReference<>();
+        member.accept(bucketId, RateBucketPeriod.Hour, limit, 1, result -> {
+            assertTrue(result.isSuccess());
+            response.set(result.getResult());
+            completed.countDown();
+        });
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        return response.get();
+    }
+
+    private static long getReservationCount() {
+        long reservations = 0;
+        for (HazelcastRateLimiterComponent member : members) {
+            reservations += member.getReservationCount();
+        }
+        return reservations;
+    }
+
+    /**
+     * Expects that most requests are served from local reservations, and that the limit is enforced across members.
+     */
+    @Test
+    public void testLimitEnforcedAcrossMembers() throws Exception {
+        final int limit = 100;
+        final long reservationsBefore = getReservationCount();
+
+        int accepted = 0;
+        for (int i = 0; i < 150; i++) {
+            final RateLimitResponse response = accept(members[i % members.length], "alternating", limit);
+            if (response.isAccepted()) {
+                accepted++;
+                assertTrue(response.getRemaining() >= 0);
+                assertTrue(response.getReset() > 0);
+            }
+        }
+
+        assertTrue("Accepted " + accepted, accepted <= limit);
+        assertTrue("Accepted " + accepted, accepted >= limit - members.length * RESERVATION_SIZE);
+
+        // one reservation per batch, then one per member to learn that the bucket is exhausted
+        final long reservations = getReservationCount() - reservationsBefore;
+        assertTrue("Reservations " + reservations, reservations <= (limit / RESERVATION_SIZE) + members.length);
+    }
+
+    /**
+     * Expects that concurrent requests on all members never exceed the limit, and that unused reservations
+     * leave at most the bounded number of permits unused.
+     */
+    @Test
+    public void testConcurrentRequestsAcrossMembers() throws Exception {
+        final int limit = 500;
+        final int requestsPerMember = 400;
+
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch completed = new CountDownLatch(requestsPerMember * members.length);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int request = 0; request < requestsPerMember; request++) {
+                for (HazelcastRateLimiterComponent member : members) {
+                    executor.execute(() -> member.accept("concurrent", RateBucketPeriod.Hour, limit, 1, result -> {
+                        if (result.isSuccess() && result.getResult().isAccepted()) {
+                            accepted.incrementAndGet();
+                        }
+                        completed.countDown();
+                    }));
+                }
+            }
+            assertTrue(completed.await(30, TimeUnit.SECONDS));
+
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue("Accepted " + accepted, accepted.get() <= limit);
+        assertTrue("Accepted " + accepted, accepted.get() >= limit - members.length * RESERVATION_SIZE);
+    }
+}
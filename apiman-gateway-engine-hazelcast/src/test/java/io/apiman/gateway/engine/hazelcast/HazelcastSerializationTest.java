@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.gateway.engine.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import io.apiman.gateway.engine.rates.RateBucketPeriod;
+import io.apiman.gateway.engine.rates.RateLimiterBucket;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.AbstractMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link HazelcastSerialization}.
+ *
+ * @author Pete Cornish
+ */
+public class HazelcastSerializationTest {
+    private static SerializationService serializationService;
+
+    @BeforeClass
+    public static void setUp() {
+        final Config config = new Config();
+        HazelcastSerialization.configure(config);
+        HazelcastSerialization.configure(config);
+        serializationService = new DefaultSerializationServiceBuilder()
+                .setConfig(config.getSerializationConfig())
+                .build();
+    }
+
+    private static <T> T roundTrip(T object) {
+        return serializationService.toObject(serializationService.toData(object));
+    }
+
+    private static int getJavaSerializedSize(Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.size();
+    }
+
+    private static RateLimiterBucket buildBucket() {
+        final RateLimiterBucket bucket = new RateLimiterBucket();
+        bucket.setCount(42);
+        bucket.setLast(System.currentTimeMillis());
+        return bucket;
+    }
+
+    /**
+     * Expects that rate limiter buckets survive serialization unchanged, and are considerably smaller than when
+     * using Java serialization.
+     */
+    @Test
+    public void testRateLimiterBucket() throws Exception {
+        final RateLimiterBucket bucket = buildBucket();
+        final RateLimiterBucket deserialized = roundTrip(bucket);
+        assertEquals(bucket.getCount(), deserialized.getCount());
+        assertEquals(bucket.getLast(), deserialized.getLast());
+
+        final int serializedSize = serializationService.toData(bucket).totalSize();
+        final int javaSerializedSize = getJavaSerializedSize(bucket);
+        assertTrue(String.format("Serialized size %s should be less than a third of Java serialized size %s",
+                serializedSize, javaSerializedSize), serializedSize * 3 < javaSerializedSize);
+    }
+
+    /**
+     * Expects that entry processors are serialized using the factory, and behave the same once deserialized.
+     */
+    @Test
+    public void testEntryProcessors() {
+        final HazelcastRateLimiterComponent.RateLimitEntryProcessor processor =
+                roundTrip(new HazelcastRateLimiterComponent.RateLimitEntryProcessor(RateBucketPeriod.Hour, 43, 1));
+
+        final Map.Entry<String, RateLimiterBucket> entry = new AbstractMap.SimpleEntry<>("bucket", buildBucket());
+        final Object result = processor.process(entry);
+        assertEquals(43, entry.getValue().getCount());
+        assertSame(processor, processor.getBackupProcessor());
+
+        // the result must also survive serialization, as it is returned to the calling member
+        assertTrue(result instanceof IdentifiedDataSerializable);
+        final Data resultData = serializationService.toData(result);
+        assertEquals(resultData, serializationService.toData(roundTrip(result)));
+
+        final HazelcastRateLimiterComponent.ReservePermitsEntryProcessor reserve =
+                roundTrip(new HazelcastRateLimiterComponent.ReservePermitsEntryProcessor(RateBucketPeriod.Hour, 50, 10));
+        reserve.process(entry);
+        assertEquals(50, entry.getValue().getCount());
+
+        final HazelcastSharedStateComponent.RemoveEntryProcessor remove =
+                roundTrip(new HazelcastSharedStateComponent.RemoveEntryProcessor());
+        final Map.Entry<String, Object> removed = new AbstractMap.SimpleEntry<>("property", "value");
+        remove.process(removed);
+        assertNull(removed.getValue());
+    }
+}
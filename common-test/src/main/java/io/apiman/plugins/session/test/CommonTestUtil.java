@@ -6,11 +6,16 @@ import io.apiman.gateway.engine.IComponentRegistry;
 import io.apiman.gateway.engine.async.IAsyncResult;
 import io.apiman.gateway.engine.async.IAsyncResultHandler;
 import io.apiman.gateway.engine.impl.EngineImpl;
+import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.gateway.engine.policy.PolicyContextImpl;
 import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.model.SessionToken;
 import io.apiman.plugins.session.store.ISessionStore;
+import io.apiman.plugins.session.store.RevokedSessions;
 import io.apiman.plugins.session.store.SessionStoreFactory;
+import io.apiman.plugins.session.util.SessionTokenSigner;
 import io.apiman.plugins.session.util.SessionUtil;
+import io.apiman.plugins.session.util.TimeUtil;
 import io.apiman.test.policies.ApimanPolicyTest;
 import org.apache.commons.lang.SerializationUtils;
 
@@ -28,6 +33,7 @@ public class CommonTestUtil {
     public static final String AUTHENTICATED_PRINICPAL = "apiman";
     public static final String COOKIE_NAME = "XSESSION";
     public static final String JWT_SIGNING_SECRET = "jwt!53cre7";
+    public static final String COOKIE_SIGNING_SECRET = "c00k1e!53cre7";
 
     /**
      * Performs a deep copy of an object, returning a new instance with the
@@ -42,13 +48,67 @@ public class CommonTestUtil {
     }
 
     /**
-     * @return the ISessionStore used by the test policy engine
+     * @return a policy context using the components of the test policy engine
      */
-    private static ISessionStore getSessionStore() {
+    private static IPolicyContext getPolicyContext() {
         final EngineImpl engine = (EngineImpl) ApimanPolicyTest.tester.getEngine();
         final IComponentRegistry componentRegistry = engine.getComponentRegistry();
         final IDelegateFactory loggerFactory = new DefaultDelegateFactory();
-        return SessionStoreFactory.getSessionStore(new PolicyContextImpl(componentRegistry, loggerFactory));
+        return new PolicyContextImpl(componentRegistry, loggerFactory);
+    }
+
+    /**
+     * @return the ISessionStore used by the test policy engine
+     */
+    private static ISessionStore getSessionStore() {
+        return SessionStoreFactory.getSessionStore(getPolicyContext());
+    }
+
+    /**
+     * Delete the Session with the given ID.
+     *
+     * @param sessionId the ID of the Session
+     */
+    public static void deleteSession(String sessionId) {
+        final AtomicBoolean deleted = new AtomicBoolean(false);
+        getSessionStore().deleteSession(sessionId, result -> deleted.set(true));
+
+        // wait for deletion
+        while (!deleted.get()) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @param sessionId the ID of the Session
+     * @return <code>true</code> if signed cookies for the Session have been revoked
+     */
+    public static boolean isRevoked(String sessionId) {
+        final AtomicReference<IAsyncResult<Boolean>> revokedResult = new AtomicReference<>();
+        RevokedSessions.isRevoked(getPolicyContext(), sessionId, revokedResult::set);
+
+        // wait for the result
+        while (null == revokedResult.get()) {
+            Thread.yield();
+        }
+
+        return revokedResult.get().getResult();
+    }
+
+    /**
+     * Revoke signed cookies for the Session with the given ID.
+     *
+     * @param sessionId the ID of the Session
+     */
+    public static void revokeSession(String sessionId) {
+        final AtomicBoolean revoked = new AtomicBoolean(false);
+        RevokedSessions.revoke(getPolicyContext(), sessionId, TimeUtil.getNowInMillis() + 60000,
+                result -> revoked.set(true));
+
+        // wait for revocation
+        while (!revoked.get()) {
+            Thread.yield();
+        }
     }
 
     /**
@@ -82,7 +142,7 @@ public class CommonTestUtil {
      *
      * @param session the Session to store
      */
-    private static void storeSession(Session session) {
+    public static void storeSession(Session session) {
         final AtomicBoolean stored = new AtomicBoolean(false);
 
         // store the session
@@ -124,4 +184,18 @@ public class CommonTestUtil {
     public static String buildCookieHeader(Session originalSession) {
         return COOKIE_NAME + "=" + originalSession.getSessionId() + ";";
     }
+
+    /**
+     * Build a cookie header with a signed token for the Session, as reissued by the Cookie Validator Policy.
+     *
+     * @param session  the Session
+     * @param issuedAt the time the token was issued
+     * @param expires  the time the token expires
+     * @return the cookie header
+     */
+    public static String buildSignedCookieHeader(Session session, long issuedAt, long expires) {
+        final SessionToken token = new SessionToken(session.getSessionId(), session.getAuthenticatedPrincipal(),
+                issuedAt, expires);
+        return COOKIE_NAME + "=" + new SessionTokenSigner(COOKIE_SIGNING_SECRET).sign(token) + ";";
+    }
 }
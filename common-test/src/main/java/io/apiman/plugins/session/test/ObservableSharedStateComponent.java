@@ -0,0 +1,122 @@
+package io.apiman.plugins.session.test;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.plugins.session.state.IClosableComponent;
+import io.apiman.plugins.session.state.IObservableSharedState;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * An in-memory shared state component that can be observed and closed, and counts the properties read from it, so
+ * that tests can check which operations reach the shared state. Listeners are called on the thread setting the
+ * property.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ObservableSharedStateComponent implements IObservableSharedState, IClosableComponent, AutoCloseable {
+    private final ConcurrentMap<String, ConcurrentMap<String, Object>> namespaces = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PropertyListener> listeners = new ConcurrentHashMap<>();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger propertyReads = new AtomicInteger();
+    private final AtomicInteger nextListenerId = new AtomicInteger();
+
+    /**
+     * @return the number of calls to {@link #getProperty(String, String, Object, IAsyncResultHandler)}
+     */
+    public int getPropertyReads() {
+        return propertyReads.get();
+    }
+
+    /**
+     * @return the number of property listeners
+     */
+    public int getPropertyListenerCount() {
+        return listeners.size();
+    }
+
+    private ConcurrentMap<String, Object> getNamespace(String namespace) {
+        return namespaces.computeIfAbsent(namespace, key -> new ConcurrentHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> void getProperty(String namespace, String propertyName, T defaultValue, IAsyncResultHandler<T> handler) {
+        propertyReads.incrementAndGet();
+        final T value = (T) getNamespace(namespace).get(propertyName);
+        handler.handle(AsyncResultImpl.create(null != value ? value : defaultValue));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> void setProperty(String namespace, String propertyName, T value, IAsyncResultHandler<Void> handler) {
+        getNamespace(namespace).put(propertyName, value);
+        listeners.values().forEach(listener -> {
+            if (listener.namespace.equals(namespace)) {
+                ((BiConsumer<String, T>) listener.listener).accept(propertyName, value);
+            }
+        });
+        handler.handle(AsyncResultImpl.create((Void) null));
+    }
+
+    @Override
+    public <T> void clearProperty(String namespace, String propertyName, IAsyncResultHandler<Void> handler) {
+        getNamespace(namespace).remove(propertyName);
+        handler.handle(AsyncResultImpl.create((Void) null));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> void getAllProperties(String namespace, IAsyncResultHandler<Map<String, T>> handler) {
+        handler.handle(AsyncResultImpl.create((Map<String, T>) new HashMap<>(getNamespace(namespace))));
+    }
+
+    @Override
+    public <T> String addPropertyListener(String namespace, BiConsumer<String, T> listener) {
+        final String listenerId = String.valueOf(nextListenerId.incrementAndGet());
+        listeners.put(listenerId, new PropertyListener(namespace, listener));
+        return listenerId;
+    }
+
+    @Override
+    public void removePropertyListener(String listenerId) {
+        listeners.remove(listenerId);
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+    }
+
+    /**
+     * Run the close listeners.
+     */
+    @Override
+    public void close() {
+        for (Runnable listener : closeListeners) {
+            if (closeListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * A listener for the properties of a namespace.
+     */
+    private static class PropertyListener {
+        private final String namespace;
+        private final BiConsumer<String, ?> listener;
+
+        PropertyListener(String namespace, BiConsumer<String, ?> listener) {
+            this.namespace = namespace;
+            this.listener = listener;
+        }
+    }
+}
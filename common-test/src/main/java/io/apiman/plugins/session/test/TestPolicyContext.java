@@ -0,0 +1,81 @@
+package io.apiman.plugins.session.test;
+
+import io.apiman.common.logging.IApimanLogger;
+import io.apiman.gateway.engine.IComponent;
+import io.apiman.gateway.engine.policy.IConnectorInterceptor;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A policy context for tests that run without a policy engine. It provides the given components, and holds its
+ * attributes in a map.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class TestPolicyContext implements IPolicyContext {
+    private final List<IComponent> components;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private IConnectorInterceptor connectorInterceptor;
+
+    /**
+     * @param components the components to provide, each returned for any of the types it implements
+     */
+    public TestPolicyContext(IComponent... components) {
+        this.components = Arrays.asList(components);
+    }
+
+    /**
+     * Discard all attributes, as if a new request had started.
+     */
+    public void clearAttributes() {
+        attributes.clear();
+    }
+
+    /**
+     * @return the first of the components that implements the type, or {@code null} if none does
+     */
+    @Override
+    public <T extends IComponent> T getComponent(Class<T> componentClass) {
+        for (IComponent component : components) {
+            if (componentClass.isInstance(component)) {
+                return componentClass.cast(component);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getAttribute(String name, T defaultValue) {
+        return (T) attributes.getOrDefault(name, defaultValue);
+    }
+
+    @Override
+    public boolean removeAttribute(String name) {
+        return (null != attributes.remove(name));
+    }
+
+    @Override
+    public void setConnectorInterceptor(IConnectorInterceptor connectorInterceptor) {
+        this.connectorInterceptor = connectorInterceptor;
+    }
+
+    @Override
+    public IConnectorInterceptor getConnectorInterceptor() {
+        return connectorInterceptor;
+    }
+
+    @Override
+    public IApimanLogger getLogger(Class<?> klazz) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,80 @@
+package io.apiman.plugins.session.test;
+
+import io.apiman.plugins.session.clock.ClockFactory;
+import io.apiman.plugins.session.clock.IClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when told to, so that expiry can be tested without sleeping.
+ * <p>
+ * Typical use:
+ * <pre>
+ * try (VirtualClock clock = VirtualClock.install()) {
+ *     clock.advance(61000);
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class VirtualClock implements IClock, AutoCloseable {
+    private final AtomicLong nowMillis;
+    private IClock previous;
+    private boolean installed;
+
+    /**
+     * Create a clock stopped at the given time.
+     *
+     * @param nowMillis the initial time, in milliseconds since the epoch
+     */
+    public VirtualClock(long nowMillis) {
+        this.nowMillis = new AtomicLong(nowMillis);
+    }
+
+    /**
+     * Create a clock stopped at the current time and use it in place of the configured clock, until it is closed.
+     *
+     * @return the installed clock
+     */
+    public static VirtualClock install() {
+        final VirtualClock clock = new VirtualClock(ClockFactory.getClock().getNowInMillis());
+        clock.previous = ClockFactory.setClock(clock);
+        clock.installed = true;
+        return clock;
+    }
+
+    @Override
+    public long getNowInMillis() {
+        return nowMillis.get();
+    }
+
+    /**
+     * @param nowMillis the new time, in milliseconds since the epoch
+     */
+    public void setNowInMillis(long nowMillis) {
+        this.nowMillis.set(nowMillis);
+    }
+
+    /**
+     * Move the clock forward.
+     *
+     * @param millis the number of milliseconds to advance by
+     * @return the new time, in milliseconds since the epoch
+     */
+    public long advance(long millis) {
+        return nowMillis.addAndGet(millis);
+    }
+
+    /**
+     * Restore the clock that was in use when this clock was installed.
+     */
+    @Override
+    public void close() {
+        if (installed) {
+            // cleared first, as replacing this clock closes it
+            installed = false;
+            ClockFactory.setClock(previous);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io.apiman.plugins.session.store;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import io.apiman.gateway.engine.async.IAsyncResult;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.components.ISharedStateComponent;
+import io.apiman.gateway.engine.hazelcast.HazelcastSharedStateComponent;
+import io.apiman.gateway.engine.impl.InMemorySharedStateComponent;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.test.ObservableSharedStateComponent;
+import io.apiman.plugins.session.test.TestPolicyContext;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link RevokedSessions}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class RevokedSessionsTest {
+    private static final String NAMESPACE = ISessionStore.SESSION_DATA_PREFIX + ".revoked";
+
+    @AfterClass
+    public static void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    private static boolean isRevoked(IPolicyContext context, String sessionId) {
+        final AtomicReference<IAsyncResult<Boolean>> result = new AtomicReference<>();
+        RevokedSessions.isRevoked(context, sessionId, result::set);
+        assertTrue(result.get().isSuccess());
+        return result.get().getResult();
+    }
+
+    private static void revoke(IPolicyContext context, String sessionId, long retainUntil) {
+        final AtomicReference<IAsyncResult<Void>> result = new AtomicReference<>();
+        RevokedSessions.revoke(context, sessionId, retainUntil, result::set);
+        assertTrue(result.get().isSuccess());
+    }
+
+    /**
+     * Store a revocation directly in the shared state, as another node would, and wait for it to be stored.
+     */
+    private static void store(ISharedStateComponent sharedState, String namespace, String sessionId,
+                              long retainUntil) throws InterruptedException {
+
+        final CountDownLatch stored = new CountDownLatch(1);
+        sharedState.setProperty(namespace, sessionId, retainUntil, result -> {
+            assertTrue(result.isSuccess());
+            stored.countDown();
+        });
+        assertTrue(stored.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Expects that revocations stored before and after first use, including by other nodes, are checked without
+     * reading the shared state.
+     */
+    @Test
+    public void testChecksLocalRevocations() throws Exception {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        try (ObservableSharedStateComponent sharedState = new ObservableSharedStateComponent()) {
+            final IPolicyContext context = new TestPolicyContext(sharedState);
+            store(sharedState, NAMESPACE, "before", nowMillis + 60000);
+
+            assertTrue(isRevoked(context, "before"));
+            assertFalse(isRevoked(context, "valid"));
+
+            // stored by another node
+            store(sharedState, NAMESPACE, "other-node", nowMillis + 60000);
+            assertTrue(isRevoked(context, "other-node"));
+
+            revoke(context, "this-node", nowMillis + 60000);
+            assertTrue(isRevoked(context, "this-node"));
+
+            revoke(context, "expired", nowMillis - 1000);
+            assertFalse(isRevoked(context, "expired"));
+
+            assertEquals(0, sharedState.getPropertyReads());
+            assertEquals(1, sharedState.getPropertyListenerCount());
+        }
+    }
+
+    /**
+     * Expects that the listener is removed once the shared state component is closed.
+     */
+    @Test
+    public void testClosedWithEngine() {
+        final ObservableSharedStateComponent sharedState = new ObservableSharedStateComponent();
+        assertFalse(isRevoked(new TestPolicyContext(sharedState), "valid"));
+        assertEquals(1, sharedState.getPropertyListenerCount());
+
+        sharedState.close();
+        assertEquals(0, sharedState.getPropertyListenerCount());
+    }
+
+    /**
+     * Expects that each check reads the shared state if it cannot be observed, as is the case for components from
+     * core apiman.
+     */
+    @Test
+    public void testPlainSharedState() {
+        final IPolicyContext context = new TestPolicyContext(new InMemorySharedStateComponent());
+        try {
+            revoke(context, "revoked", TimeUtil.getNowInMillis() + 60000);
+            assertTrue(isRevoked(context, "revoked"));
+            assertFalse(isRevoked(context, "valid"));
+        } finally {
+            SessionStoreFactory.closeSessionStores(context);
+        }
+    }
+
+    /**
+     * Expects that revocations are replicated from a Hazelcast shared state component, and then checked without
+     * reading it.
+     */
+    @Test
+    public void testHazelcastSharedState() throws Exception {
+        final AtomicInteger propertyReads = new AtomicInteger();
+        final Config config = new Config();
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        final HazelcastSharedStateComponent sharedState = new HazelcastSharedStateComponent(config) {
+            @Override
+            public <T> void getProperty(String namespace, String propertyName, T defaultValue,
+                                        IAsyncResultHandler<T> handler) {
+                propertyReads.incrementAndGet();
+                super.getProperty(namespace, propertyName, defaultValue, handler);
+            }
+        };
+
+        try {
+            final IPolicyContext context = new TestPolicyContext(sharedState);
+            final long nowMillis = TimeUtil.getNowInMillis();
+            store(sharedState, NAMESPACE, "before", nowMillis + 60000);
+            store(sharedState, NAMESPACE + "-other", "unrelated", nowMillis + 60000);
+
+            assertTrue(isRevoked(context, "before"));
+            assertFalse(isRevoked(context, "unrelated"));
+
+            // stored by another node, and delivered to the listener asynchronously
+            store(sharedState, NAMESPACE, "other-node", nowMillis + 60000);
+            for (int i = 0; i < 100 && !isRevoked(context, "other-node"); i++) {
+                Thread.sleep(50);
+            }
+            assertTrue(isRevoked(context, "other-node"));
+            assertFalse(isRevoked(context, "valid"));
+            assertEquals(0, propertyReads.get());
+
+        } finally {
+            sharedState.close();
+        }
+    }
+}
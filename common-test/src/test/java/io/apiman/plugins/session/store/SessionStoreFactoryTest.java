@@ -0,0 +1,128 @@
+package io.apiman.plugins.session.store;
+
+import com.hazelcast.config.Config;
+import io.apiman.gateway.engine.hazelcast.HazelcastSharedStateComponent;
+import io.apiman.gateway.engine.impl.InMemorySharedStateComponent;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.exception.SessionStoreNotFoundException;
+import io.apiman.plugins.session.id.ISessionIdGenerator;
+import io.apiman.plugins.session.id.SessionIdGeneratorFactory;
+import io.apiman.plugins.session.store.impl.InMemorySessionStoreImpl;
+import io.apiman.plugins.session.store.impl.SharedStateSessionStoreImpl;
+import io.apiman.plugins.session.test.TestPolicyContext;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SessionStoreFactory}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionStoreFactoryTest {
+    private static final String NAMED_STORE = "io.apiman.plugins.session.ISessionStore.named.local";
+
+    private final IPolicyContext context = new TestPolicyContext(new InMemorySharedStateComponent());
+
+    @After
+    public void tearDown() {
+        SessionStoreFactory.closeSessionStores(context);
+        System.clearProperty(NAMED_STORE);
+    }
+
+    /**
+     * Expects that every thread receives the same store for an engine.
+     */
+    @Test
+    public void testConcurrentLookup() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<ISessionStore>> lookups = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                lookups.add(() -> SessionStoreFactory.getSessionStore(context));
+            }
+
+            final ISessionStore expected = SessionStoreFactory.getSessionStore(context);
+            assertTrue(expected instanceof SharedStateSessionStoreImpl);
+            for (Future<ISessionStore> store : executor.invokeAll(lookups)) {
+                assertSame(expected, store.get());
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Expects that each engine has its own stores, which are recreated once closed.
+     */
+    @Test
+    public void testStoresPerEngine() {
+        final IPolicyContext otherContext = new TestPolicyContext(new InMemorySharedStateComponent());
+        try {
+            final ISessionStore store = SessionStoreFactory.getSessionStore(context);
+            assertNotSame(store, SessionStoreFactory.getSessionStore(otherContext));
+
+            SessionStoreFactory.closeSessionStores(context);
+            assertNotSame(store, SessionStoreFactory.getSessionStore(context));
+
+        } finally {
+            SessionStoreFactory.closeSessionStores(otherContext);
+        }
+    }
+
+    /**
+     * Expects that an engine's stores are closed when its Hazelcast shared state component is closed, and that the
+     * session ID generator is closed once no engine has stores.
+     */
+    @Test
+    public void testStoresClosedWithEngine() {
+        SessionStoreFactory.closeSessionStores(context);
+
+        final Config config = new Config();
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        final HazelcastSharedStateComponent sharedState = new HazelcastSharedStateComponent(config);
+        final IPolicyContext hazelcastContext = new TestPolicyContext(sharedState);
+
+        final ISessionStore store = SessionStoreFactory.getSessionStore(hazelcastContext);
+        final ISessionIdGenerator generator = SessionIdGeneratorFactory.getSessionIdGenerator();
+        assertSame(generator, SessionIdGeneratorFactory.getSessionIdGenerator());
+
+        sharedState.close();
+        assertNotSame(generator, SessionIdGeneratorFactory.getSessionIdGenerator());
+        try {
+            assertNotSame(store, SessionStoreFactory.getSessionStore(hazelcastContext));
+        } finally {
+            SessionStoreFactory.closeSessionStores(hazelcastContext);
+        }
+    }
+
+    /**
+     * Expects that named stores are configured separately, and can be configured using a provider name.
+     */
+    @Test
+    public void testNamedStore() {
+        System.setProperty(NAMED_STORE, "inMemory");
+
+        final ISessionStore namedStore = SessionStoreFactory.getSessionStore(context, "local");
+        assertTrue(namedStore instanceof InMemorySessionStoreImpl);
+        assertSame(namedStore, SessionStoreFactory.getSessionStore(context, "local"));
+        assertNotSame(namedStore, SessionStoreFactory.getSessionStore(context));
+    }
+
+    /**
+     * Expects that an unconfigured named store is rejected.
+     */
+    @Test(expected = SessionStoreNotFoundException.class)
+    public void testNamedStoreNotConfigured() {
+        SessionStoreFactory.getSessionStore(context, "unknown");
+    }
+}
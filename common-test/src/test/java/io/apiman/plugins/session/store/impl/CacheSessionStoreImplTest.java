@@ -0,0 +1,103 @@
+package io.apiman.plugins.session.store.impl;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.impl.InMemoryCacheStoreComponent;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.test.TestPolicyContext;
+import io.apiman.plugins.session.util.SessionCodec;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CacheSessionStoreImpl}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class CacheSessionStoreImplTest {
+    private TypedCacheStoreComponent cacheStore;
+
+    @Before
+    public void setUp() {
+        cacheStore = new TypedCacheStoreComponent();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(SessionCodec.BINARY_CODEC_ENABLED);
+    }
+
+    private CacheSessionStoreImpl createStore(boolean binaryCodec) {
+        System.setProperty(SessionCodec.BINARY_CODEC_ENABLED, String.valueOf(binaryCodec));
+        final CacheSessionStoreImpl store = new CacheSessionStoreImpl();
+        store.init(new TestPolicyContext(cacheStore));
+        return store;
+    }
+
+    private static Session buildSession(String sessionId) {
+        final Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setAuthenticatedPrincipal("apiman");
+        session.setExpires(TimeUtil.getNowInMillis() + 60000);
+        return session;
+    }
+
+    private static Session fetch(CacheSessionStoreImpl store, String sessionId) {
+        final AtomicReference<Session> fetched = new AtomicReference<>();
+        store.fetchSession(sessionId, result -> {
+            assertTrue(result.isSuccess());
+            fetched.set(result.getResult());
+        });
+        return fetched.get();
+    }
+
+    /**
+     * Expects that sessions stored as serialized objects can be read once the binary codec is enabled.
+     */
+    @Test
+    public void testFetchSerializedSessionWithBinaryCodec() {
+        createStore(false).storeSession("serialized", buildSession("serialized"), result -> assertTrue(result.isSuccess()));
+
+        final Session fetched = fetch(createStore(true), "serialized");
+        assertNotNull(fetched);
+        assertEquals("serialized", fetched.getSessionId());
+        assertEquals("apiman", fetched.getAuthenticatedPrincipal());
+    }
+
+    /**
+     * Expects that sessions stored in the binary encoding can be read once the binary codec is disabled.
+     */
+    @Test
+    public void testFetchBinarySessionWithoutBinaryCodec() {
+        createStore(true).storeSession("binary", buildSession("binary"), result -> assertTrue(result.isSuccess()));
+
+        final Session fetched = fetch(createStore(false), "binary");
+        assertNotNull(fetched);
+        assertEquals("binary", fetched.getSessionId());
+        assertEquals("apiman", fetched.getAuthenticatedPrincipal());
+    }
+
+    /**
+     * A cache store that, like stores which deserialize into the requested type, fails when the stored value is
+     * not of the requested type.
+     */
+    private static class TypedCacheStoreComponent extends InMemoryCacheStoreComponent {
+        @Override
+        public <T> void get(String cacheKey, Class<T> type, IAsyncResultHandler<T> handler) {
+            super.get(cacheKey, type, result -> {
+                if (result.isSuccess() && null != result.getResult() && !type.isInstance(result.getResult())) {
+                    handler.handle(AsyncResultImpl.<T>create(new ClassCastException(
+                            "Cannot read " + result.getResult().getClass() + " as " + type)));
+                } else {
+                    handler.handle(result);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package io.apiman.plugins.session.store.impl;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.serialization.HazelcastSerializationException;
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResult;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.hazelcast.HazelcastSharedStateComponent;
+import io.apiman.gateway.engine.impl.InMemorySharedStateComponent;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.test.TestPolicyContext;
+import io.apiman.plugins.session.util.SessionCodec;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the batch and touch operations of {@link SharedStateSessionStoreImpl} backed by a
+ * {@link HazelcastSharedStateComponent}, and by a shared state component without its optional capabilities.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SharedStateSessionStoreImplTest {
+    private static HazelcastSharedStateComponent sharedState;
+    private static SharedStateSessionStoreImpl store;
+
+    @BeforeClass
+    public static void setUp() {
+        final Config config = new Config();
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+
+        sharedState = new HazelcastSharedStateComponent(config);
+        store = new SharedStateSessionStoreImpl();
+        store.init(new TestPolicyContext(sharedState));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        Hazelcast.shutdownAll();
+    }
+
+    private static Session buildSession(String sessionId) {
+        final Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setAuthenticatedPrincipal("apiman");
+        return session;
+    }
+
+    /**
+     * Expects that sessions can be stored, fetched and deleted in batches.
+     */
+    @Test
+    public void testBatchOperations() throws Exception {
+        final Map<String, Session> sessions = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            sessions.put("batch-" + i, buildSession("batch-" + i));
+        }
+        SharedStateSessionStoreImplTest.<Void>await(handler -> store.storeSessions(sessions, handler));
+
+        final AtomicReference<Map<String, Session>> fetched = new AtomicReference<>();
+        store.fetchSessions(Arrays.asList("batch-0", "batch-9", "unknown"), result -> fetched.set(result.getResult()));
+        assertEquals(2, fetched.get().size());
+        assertEquals("batch-0", fetched.get().get("batch-0").getSessionId());
+        assertEquals("batch-9", fetched.get().get("batch-9").getSessionId());
+
+        store.deleteSessions(Arrays.asList("batch-0", "batch-1"), result -> assertTrue(result.isSuccess()));
+        store.fetchSessions(sessions.keySet(), result -> fetched.set(result.getResult()));
+        assertEquals(8, fetched.get().size());
+        assertFalse(fetched.get().containsKey("batch-0"));
+        assertFalse(fetched.get().containsKey("batch-1"));
+
+        assertEquals("batch-2", fetch(store, "batch-2").getSessionId());
+    }
+
+    /**
+     * Expects that touching a session extends its expiry, but never moves it backwards.
+     */
+    @Test
+    public void testTouchSession() throws Exception {
+        verifyTouchSession(store, "touch");
+    }
+
+    /**
+     * Expects that touching a session held in the binary encoding extends its expiry and retains the encoding.
+     */
+    @Test
+    public void testTouchBinarySession() throws Exception {
+        System.setProperty(SessionCodec.BINARY_CODEC_ENABLED, "true");
+        try {
+            final SharedStateSessionStoreImpl binaryStore = new SharedStateSessionStoreImpl();
+            binaryStore.init(new TestPolicyContext(sharedState));
+            verifyTouchSession(binaryStore, "touch-binary");
+
+            final Object storedValue = await(handler -> sharedState.getProperty(
+                    SharedStateSessionStoreImpl.SESSION_DATA_PREFIX, "touch-binary", null, handler));
+            assertTrue(storedValue instanceof byte[]);
+
+        } finally {
+            System.clearProperty(SessionCodec.BINARY_CODEC_ENABLED);
+        }
+    }
+
+    /**
+     * Expects that once the entry processor cannot be serialized, sessions are touched by fetching and storing them,
+     * without trying the entry processor again.
+     */
+    @Test
+    public void testTouchWithoutEntryProcessor() throws Exception {
+        final AtomicInteger entryProcessorAttempts = new AtomicInteger();
+        final Config config = new Config();
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+
+        final HazelcastSharedStateComponent failingSharedState = new HazelcastSharedStateComponent(config) {
+            @Override
+            public <R> void executeOnProperty(String namespace, String propertyName,
+                                              EntryProcessor<String, ?> entryProcessor,
+                                              IAsyncResultHandler<R> handler) {
+                entryProcessorAttempts.incrementAndGet();
+                handler.handle(AsyncResultImpl.<R>create(new HazelcastSerializationException(
+                        new ClassNotFoundException(TouchSessionEntryProcessor.class.getName()))));
+            }
+        };
+        final SharedStateSessionStoreImpl fallbackStore = new SharedStateSessionStoreImpl();
+        fallbackStore.init(new TestPolicyContext(failingSharedState));
+
+        verifyTouchSession(fallbackStore, "touch-fallback");
+        assertEquals(1, entryProcessorAttempts.get());
+    }
+
+    /**
+     * Expects that sessions are removed once their absolute expiry has passed, even if they have been touched.
+     */
+    @Test
+    public void testTimeToLive() throws Exception {
+        final Session session = buildSession("ttl");
+        session.setAbsoluteExpiry(TimeUtil.getNowInMillis() + 1000);
+        SharedStateSessionStoreImplTest.<Void>await(handler -> store.storeSession("ttl", session, handler));
+        awaitTouch(store, "ttl", TimeUtil.getNowInMillis() + 60000);
+        assertEquals("ttl", fetch(store, "ttl").getSessionId());
+
+        Thread.sleep(1500);
+        assertNull(fetch(store, "ttl").getSessionId());
+        assertNull(await(handler -> sharedState.getProperty(
+                SharedStateSessionStoreImpl.SESSION_DATA_PREFIX, "ttl", null, handler)));
+    }
+
+    /**
+     * Expects that sessions are removed once they have been idle until their expiry, and that touching a session
+     * keeps it.
+     */
+    @Test
+    public void testIdleTimeToLive() throws Exception {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Session idle = buildSession("idle");
+        idle.setExpires(nowMillis + 1000);
+        idle.setAbsoluteExpiry(nowMillis + 60000);
+        SharedStateSessionStoreImplTest.<Void>await(handler -> store.storeSession("idle", idle, handler));
+
+        final Session active = buildSession("active");
+        active.setExpires(nowMillis + 1000);
+        active.setAbsoluteExpiry(nowMillis + 60000);
+        SharedStateSessionStoreImplTest.<Void>await(handler -> store.storeSession("active", active, handler));
+
+        Thread.sleep(600);
+        awaitTouch(store, "active", TimeUtil.getNowInMillis() + 1000);
+
+        Thread.sleep(600);
+        assertNull(fetch(store, "idle").getSessionId());
+        assertEquals("active", fetch(store, "active").getSessionId());
+
+        Thread.sleep(900);
+        assertNull(fetch(store, "active").getSessionId());
+    }
+
+    /**
+     * Expects that a shared state component without the optional capabilities, such as one from core apiman, is
+     * used one session at a time, and keeps sessions until they are deleted.
+     */
+    @Test
+    public void testPlainSharedState() throws Exception {
+        final SharedStateSessionStoreImpl plainStore = new SharedStateSessionStoreImpl();
+        plainStore.init(new TestPolicyContext(new InMemorySharedStateComponent()));
+
+        final Map<String, Session> sessions = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            sessions.put("plain-" + i, buildSession("plain-" + i));
+        }
+        SharedStateSessionStoreImplTest.<Void>await(handler -> plainStore.storeSessions(sessions, handler));
+
+        final Map<String, Session> fetched = await(handler -> plainStore.fetchSessions(
+                Arrays.asList("plain-0", "plain-2", "unknown"), handler));
+        assertEquals(2, fetched.size());
+        assertEquals("plain-2", fetched.get("plain-2").getSessionId());
+
+        SharedStateSessionStoreImplTest.<Void>await(handler -> plainStore.deleteSessions(
+                Arrays.asList("plain-0", "plain-1"), handler));
+        assertNull(fetch(plainStore, "plain-0").getSessionId());
+        assertEquals("plain-2", fetch(plainStore, "plain-2").getSessionId());
+
+        verifyTouchSession(plainStore, "plain-touch");
+
+        final Session expired = buildSession("plain-expired");
+        expired.setAbsoluteExpiry(TimeUtil.getNowInMillis() - 1000);
+        SharedStateSessionStoreImplTest.<Void>await(handler -> plainStore.storeSession("plain-expired", expired, handler));
+        assertEquals("plain-expired", fetch(plainStore, "plain-expired").getSessionId());
+    }
+
+    private void verifyTouchSession(SharedStateSessionStoreImpl sessionStore, String sessionId) throws Exception {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Session session = buildSession(sessionId);
+        session.setExpires(nowMillis + 10000);
+        SharedStateSessionStoreImplTest.<Void>await(handler -> sessionStore.storeSession(sessionId, session, handler));
+
+        awaitTouch(sessionStore, sessionId, nowMillis + 50000);
+        assertEquals(nowMillis + 50000, fetch(sessionStore, sessionId).getExpires());
+
+        awaitTouch(sessionStore, sessionId, nowMillis + 20000);
+        assertEquals(nowMillis + 50000, fetch(sessionStore, sessionId).getExpires());
+        assertEquals("apiman", fetch(sessionStore, sessionId).getAuthenticatedPrincipal());
+
+        awaitTouch(sessionStore, "unknown", nowMillis + 50000);
+        assertNull(fetch(sessionStore, "unknown").getSessionId());
+    }
+
+    private static void awaitTouch(SharedStateSessionStoreImpl sessionStore, String sessionId, long newExpiry)
+            throws InterruptedException {
+
+        SharedStateSessionStoreImplTest.<Void>await(handler -> sessionStore.touchSession(sessionId, newExpiry, handler));
+    }
+
+    private static Session fetch(SharedStateSessionStoreImpl sessionStore, String sessionId)
+            throws InterruptedException {
+
+        return await(handler -> sessionStore.fetchSession(sessionId, handler));
+    }
+
+    /**
+     * Wait for an asynchronous operation to succeed.
+     *
+     * @param operation starts the operation, completing the given handler
+     * @return the result of the operation
+     */
+    private static <T> T await(Consumer<IAsyncResultHandler<T>> operation) throws InterruptedException {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<IAsyncResult<T>> result = new AtomicReference<>();
+        operation.accept(asyncResult -> {
+            result.set(asyncResult);
+            completed.countDown();
+        });
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertTrue(result.get().isSuccess());
+        return result.get().getResult();
+    }
+}
@@ -1,6 +1,11 @@
 package io.apiman.plugins.session.beans;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.apiman.plugins.session.path.IPathMatcher;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.List;
 
 /**
  * Common configuration object for the session policies.
@@ -15,6 +20,25 @@ public abstract class AbstractSessionConfigBean {
     @JsonProperty
     private String pathMatcher;
 
+    /**
+     * Regular expressions indicating further paths to which this policy should be applied, for policies covering
+     * many routes.
+     */
+    @JsonProperty
+    private List<String> pathMatchers;
+
+    /**
+     * The compiled form of {@link #pathMatcher} and {@link #pathMatchers}, set when the configuration is parsed.
+     */
+    @JsonIgnore
+    private IPathMatcher compiledPathMatcher;
+
+    /**
+     * The name of the session store to use, or <code>null</code> for the default store.
+     */
+    @JsonProperty
+    private String sessionStore;
+
     public String getPathMatcher() {
         return pathMatcher;
     }
@@ -22,4 +46,36 @@ public abstract class AbstractSessionConfigBean {
     public void setPathMatcher(String pathMatcher) {
         this.pathMatcher = pathMatcher;
     }
+
+    public List<String> getPathMatchers() {
+        return pathMatchers;
+    }
+
+    public void setPathMatchers(List<String> pathMatchers) {
+        this.pathMatchers = pathMatchers;
+    }
+
+    /**
+     * @return <code>true</code> if {@link #pathMatcher} or any entry of {@link #pathMatchers} is not blank
+     */
+    public boolean hasPathMatcher() {
+        return StringUtils.isNotBlank(pathMatcher) ||
+                (null != pathMatchers && pathMatchers.stream().anyMatch(StringUtils::isNotBlank));
+    }
+
+    public IPathMatcher getCompiledPathMatcher() {
+        return compiledPathMatcher;
+    }
+
+    public void setCompiledPathMatcher(IPathMatcher compiledPathMatcher) {
+        this.compiledPathMatcher = compiledPathMatcher;
+    }
+
+    public String getSessionStore() {
+        return sessionStore;
+    }
+
+    public void setSessionStore(String sessionStore) {
+        this.sessionStore = sessionStore;
+    }
 }
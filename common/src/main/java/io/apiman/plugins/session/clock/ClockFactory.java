@@ -0,0 +1,108 @@
+package io.apiman.plugins.session.clock;
+
+import io.apiman.plugins.session.clock.impl.CoarseClock;
+import io.apiman.plugins.session.clock.impl.SystemClock;
+import io.apiman.plugins.session.exception.ClockNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Returns the configured implementation of the {@link IClock}.
+ * Set the System property {@link #CLOCK_IMPL} to configure the implementation to use.
+ * Set the System property {@link #COARSE_CLOCK_TICK_MILLIS} to use a {@link CoarseClock} updated at this interval,
+ * instead of reading the system time on every call.
+ * <p>
+ * Tests can replace the clock using {@link #setClock(IClock)}. A replaced clock that is {@link AutoCloseable}, such as
+ * the {@link CoarseClock}, is closed. Call {@link #closeClock()} to close the configured clock when it is no longer
+ * needed; it is created again if requested.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ClockFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClockFactory.class);
+    private static final String CLOCK_IMPL = "io.apiman.plugins.session.IClock";
+    private static final String DEFAULT_IMPL = SystemClock.class.getCanonicalName();
+
+    /**
+     * The resolution of the coarse clock in milliseconds, or zero to read the clock implementation on every call.
+     */
+    private static final String COARSE_CLOCK_TICK_MILLIS = CLOCK_IMPL + ".coarse.tickMillis";
+
+    private static final long DEFAULT_COARSE_CLOCK_TICK_MILLIS = 0;
+
+    /**
+     * Cached clock.
+     */
+    private static volatile IClock clock;
+
+    /**
+     * Whether the cached clock was created by this factory, rather than set.
+     */
+    private static boolean configured;
+
+    /**
+     * Get the clock implementation. Once created, the clock is returned without locking.
+     *
+     * @return the clock
+     * @throws ClockNotFoundException
+     */
+    public static IClock getClock() throws ClockNotFoundException {
+        final IClock current = clock;
+        return (null != current ? current : createClock());
+    }
+
+    /**
+     * Replace the clock, such as with a controllable clock in tests. The clock previously in use is closed if it is
+     * {@link AutoCloseable}.
+     *
+     * @param newClock the clock to use, or <code>null</code> to create the configured clock on next use
+     * @return the clock previously in use, or <code>null</code> if none had been created or it has been closed
+     */
+    public synchronized static IClock setClock(IClock newClock) {
+        final IClock previous = clock;
+        clock = newClock;
+        configured = false;
+
+        if (previous instanceof AutoCloseable && previous != newClock) {
+            try {
+                ((AutoCloseable) previous).close();
+            } catch (Exception e) {
+                LOGGER.warn("Error closing clock", e);
+            }
+            return null;
+        }
+        return previous;
+    }
+
+    /**
+     * Close the configured clock, if it is {@link AutoCloseable}, stopping any thread it uses. It is created again on
+     * next use. A clock replaced using {@link #setClock(IClock)} is left in use.
+     */
+    public synchronized static void closeClock() {
+        if (configured) {
+            setClock(null);
+        }
+    }
+
+    private synchronized static IClock createClock() {
+        if (null == clock) {
+            final long tickMillis = Long.getLong(COARSE_CLOCK_TICK_MILLIS, DEFAULT_COARSE_CLOCK_TICK_MILLIS);
+            if (tickMillis > 0) {
+                clock = new CoarseClock(tickMillis);
+                LOGGER.debug("Using coarse clock updated every {}ms", tickMillis);
+
+            } else {
+                final String clockImpl = System.getProperty(CLOCK_IMPL, DEFAULT_IMPL);
+                try {
+                    clock = (IClock) Class.forName(clockImpl).newInstance();
+                    LOGGER.debug("Using clock implementation: " + clockImpl);
+
+                } catch (InstantiationException | IllegalAccessException | ClassNotFoundException | ClassCastException e) {
+                    throw new ClockNotFoundException(clockImpl, e);
+                }
+            }
+            configured = true;
+        }
+        return clock;
+    }
+}
@@ -0,0 +1,24 @@
+package io.apiman.plugins.session.clock;
+
+/**
+ * Provides the current time to the session policies and stores, so that it can be read cheaply and controlled in
+ * tests.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface IClock {
+    /**
+     * Implementations must be thread-safe, and should not allocate.
+     *
+     * @return the current time, in milliseconds since the epoch
+     */
+    long getNowInMillis();
+
+    /**
+     * @param millis a time, in milliseconds since the epoch
+     * @return <code>true</code> if the time is after the current time
+     */
+    default boolean isAfterNow(long millis) {
+        return (millis > getNowInMillis());
+    }
+}
@@ -0,0 +1,50 @@
+package io.apiman.plugins.session.clock.impl;
+
+import io.apiman.plugins.session.clock.IClock;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock holding the system time in a field, updated by a background ticker thread, so that reading the time is a
+ * single volatile read. The time returned lags the system time by up to the tick interval, so this is only suitable
+ * where that resolution is acceptable, such as session expiry.
+ * <p>
+ * Each clock has its own ticker thread, which is stopped when the clock is closed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class CoarseClock implements IClock, AutoCloseable {
+    private final ScheduledExecutorService ticker;
+    private volatile long nowMillis = System.currentTimeMillis();
+
+    /**
+     * @param tickMillis the interval between updates of the time, in milliseconds
+     */
+    public CoarseClock(long tickMillis) {
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "coarse-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        nowMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getNowInMillis() {
+        return nowMillis;
+    }
+
+    /**
+     * Stop updating the time, stopping the ticker thread.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
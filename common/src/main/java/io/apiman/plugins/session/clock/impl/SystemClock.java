@@ -0,0 +1,15 @@
+package io.apiman.plugins.session.clock.impl;
+
+import io.apiman.plugins.session.clock.IClock;
+
+/**
+ * A clock reading the system time on every call.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SystemClock implements IClock {
+    @Override
+    public long getNowInMillis() {
+        return System.currentTimeMillis();
+    }
+}
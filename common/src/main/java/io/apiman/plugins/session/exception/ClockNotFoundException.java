@@ -0,0 +1,12 @@
+package io.apiman.plugins.session.exception;
+
+/**
+ * Thrown when the clock implementation is not found.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ClockNotFoundException extends RuntimeException {
+    public ClockNotFoundException(String clockImpl, Throwable cause) {
+        super("IClock implementation not found: " + clockImpl, cause);
+    }
+}
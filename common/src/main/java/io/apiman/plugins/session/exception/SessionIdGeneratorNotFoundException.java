@@ -0,0 +1,12 @@
+package io.apiman.plugins.session.exception;
+
+/**
+ * Thrown when the session ID generator implementation is not found.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionIdGeneratorNotFoundException extends RuntimeException {
+    public SessionIdGeneratorNotFoundException(String sessionIdGeneratorImpl, Throwable cause) {
+        super("ISessionIdGenerator implementation not found: " + sessionIdGeneratorImpl, cause);
+    }
+}
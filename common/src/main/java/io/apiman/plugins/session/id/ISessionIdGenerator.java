@@ -0,0 +1,47 @@
+package io.apiman.plugins.session.id;
+
+/**
+ * Generates session IDs.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface ISessionIdGenerator {
+    /**
+     * The shortest session ID considered well formed by default.
+     */
+    int MIN_SESSION_ID_LENGTH = 16;
+
+    /**
+     * The longest session ID considered well formed by default.
+     */
+    int MAX_SESSION_ID_LENGTH = 64;
+
+    /**
+     * Generate a new, unguessable session ID. Implementations must be thread-safe.
+     *
+     * @return the session ID
+     */
+    String generateSessionId();
+
+    /**
+     * Check whether a value could be a session ID, without consulting the session store, so that malformed
+     * cookie values can be rejected cheaply. By default, this accepts URL-safe Base64 and UUIDs, so sessions
+     * issued with earlier ID formats remain valid. Implementations with a stricter format should override this.
+     *
+     * @param sessionId the candidate session ID
+     * @return <code>true</code> if the value is in a format that could have been generated
+     */
+    default boolean isWellFormed(String sessionId) {
+        final int length = sessionId.length();
+        if (length < MIN_SESSION_ID_LENGTH || length > MAX_SESSION_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = sessionId.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
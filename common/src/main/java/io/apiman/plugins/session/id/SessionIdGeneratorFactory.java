@@ -0,0 +1,84 @@
+package io.apiman.plugins.session.id;
+
+import io.apiman.plugins.session.exception.SessionIdGeneratorNotFoundException;
+import io.apiman.plugins.session.id.impl.PooledSessionIdGenerator;
+import io.apiman.plugins.session.id.impl.SecureRandomSessionIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Returns the configured implementation of the {@link ISessionIdGenerator}.
+ * Set the System property {@link #SESSION_ID_GENERATOR_IMPL} to configure the implementation to use.
+ * Set the System property {@link #SESSION_ID_POOL_SIZE} to pre-generate session IDs on a background thread. The pool
+ * is disabled by default, as only the Cookie Issue Policy generates IDs, and is stopped by
+ * {@link #closeSessionIdGenerator()}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionIdGeneratorFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionIdGeneratorFactory.class);
+    private static final String SESSION_ID_GENERATOR_IMPL = "io.apiman.plugins.session.ISessionIdGenerator";
+    private static final String DEFAULT_IMPL = SecureRandomSessionIdGenerator.class.getCanonicalName();
+
+    /**
+     * The number of pre-generated session IDs to hold, or zero to generate IDs on demand.
+     */
+    private static final String SESSION_ID_POOL_SIZE = SESSION_ID_GENERATOR_IMPL + ".poolSize";
+
+    private static final int DEFAULT_SESSION_ID_POOL_SIZE = 0;
+
+    /**
+     * Cached session ID generator.
+     */
+    private static volatile ISessionIdGenerator sessionIdGenerator;
+
+    /**
+     * Get the session ID generator implementation. Once created, the generator is returned without locking.
+     *
+     * @return the session ID generator
+     * @throws SessionIdGeneratorNotFoundException
+     */
+    public static ISessionIdGenerator getSessionIdGenerator() throws SessionIdGeneratorNotFoundException {
+        final ISessionIdGenerator generator = sessionIdGenerator;
+        return (null != generator ? generator : createSessionIdGenerator());
+    }
+
+    /**
+     * Close and forget the session ID generator, stopping any background thread it uses. It is created again if
+     * requested.
+     */
+    public synchronized static void closeSessionIdGenerator() {
+        final ISessionIdGenerator generator = sessionIdGenerator;
+        sessionIdGenerator = null;
+
+        if (generator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) generator).close();
+            } catch (Exception e) {
+                LOGGER.warn("Error closing session ID generator", e);
+            }
+        }
+    }
+
+    private synchronized static ISessionIdGenerator createSessionIdGenerator() {
+        if (null == sessionIdGenerator) {
+            final String generatorImpl = System.getProperty(SESSION_ID_GENERATOR_IMPL, DEFAULT_IMPL);
+            try {
+                ISessionIdGenerator generator = (ISessionIdGenerator) Class.forName(generatorImpl).newInstance();
+                LOGGER.debug("Using session ID generator implementation: " + generatorImpl);
+
+                final int poolSize = Integer.getInteger(SESSION_ID_POOL_SIZE, DEFAULT_SESSION_ID_POOL_SIZE);
+                if (poolSize > 0) {
+                    generator = new PooledSessionIdGenerator(generator, poolSize);
+                    LOGGER.debug("Pre-generating up to {} session IDs", poolSize);
+                }
+
+                sessionIdGenerator = generator;
+
+            } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+                throw new SessionIdGeneratorNotFoundException(generatorImpl, e);
+            }
+        }
+        return sessionIdGenerator;
+    }
+}
@@ -0,0 +1,83 @@
+package io.apiman.plugins.session.id.impl;
+
+import io.apiman.plugins.session.id.ISessionIdGenerator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decorates an {@link ISessionIdGenerator} with a pool of pre-generated session IDs, which is refilled by a
+ * background thread once it falls below half of its capacity. If the pool is empty, IDs are generated on the
+ * calling thread. The background thread runs until the generator is closed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PooledSessionIdGenerator implements ISessionIdGenerator, AutoCloseable {
+    private final ISessionIdGenerator delegate;
+    private final BlockingQueue<String> pool;
+    private final int refillThreshold;
+    private final Thread refiller;
+
+    /**
+     * @param delegate the generator used to fill the pool
+     * @param poolSize the maximum number of pre-generated session IDs
+     */
+    public PooledSessionIdGenerator(ISessionIdGenerator delegate, int poolSize) {
+        this.delegate = delegate;
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+        this.refillThreshold = poolSize / 2;
+
+        refiller = new Thread(this::refill, "session-id-pool-refill");
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    @Override
+    public String generateSessionId() {
+        final String sessionId = pool.poll();
+        if (pool.size() <= refillThreshold) {
+            LockSupport.unpark(refiller);
+        }
+        return (null != sessionId ? sessionId : delegate.generateSessionId());
+    }
+
+    @Override
+    public boolean isWellFormed(String sessionId) {
+        return delegate.isWellFormed(sessionId);
+    }
+
+    /**
+     * Stop refilling the pool. IDs already in the pool are still used, then IDs are generated on the calling thread.
+     */
+    @Override
+    public void close() {
+        refiller.interrupt();
+    }
+
+    /**
+     * Fill the pool to capacity, then wait until it is next drained below the threshold.
+     */
+    private void refill() {
+        while (!Thread.currentThread().isInterrupted()) {
+            while (pool.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                pool.offer(delegate.generateSessionId());
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    /**
+     * @return the number of pre-generated session IDs available
+     */
+    int getPoolSize() {
+        return pool.size();
+    }
+
+    /**
+     * @return <code>true</code> if the pool is still being refilled
+     */
+    boolean isRefilling() {
+        return refiller.isAlive();
+    }
+}
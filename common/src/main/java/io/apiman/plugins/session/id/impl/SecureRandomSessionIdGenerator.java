@@ -0,0 +1,62 @@
+package io.apiman.plugins.session.id.impl;
+
+import io.apiman.plugins.session.id.ISessionIdGenerator;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Generates session IDs holding 128 bits of entropy, encoded as 22 URL-safe Base64 characters.
+ * <p>
+ * Each thread uses its own {@link #ALGORITHM} generator, seeded once from the platform's default
+ * {@link SecureRandom}. The default generator on Linux, NativePRNG, serialises every caller through a single lock,
+ * so it is only used for seeding, and threads do not contend when generating IDs.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SecureRandomSessionIdGenerator implements ISessionIdGenerator {
+    /**
+     * The number of random bytes in a session ID.
+     */
+    static final int SESSION_ID_BYTES = 16;
+
+    /**
+     * The per-thread generator algorithm.
+     */
+    static final String ALGORITHM = "SHA1PRNG";
+
+    /**
+     * The number of bytes used to seed each per-thread generator.
+     */
+    private static final int SEED_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+    private static final ThreadLocal<SecureRandom> RANDOM =
+            ThreadLocal.withInitial(SecureRandomSessionIdGenerator::createRandom);
+
+    /**
+     * @return a generator seeded from {@link #SEED_SOURCE}
+     */
+    static SecureRandom createRandom() {
+        final byte[] seed = new byte[SEED_BYTES];
+        SEED_SOURCE.nextBytes(seed);
+        try {
+            // seeding before first use replaces the generator's own seeding, which would use the shared source
+            final SecureRandom random = SecureRandom.getInstance(ALGORITHM);
+            random.setSeed(seed);
+            return random;
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to create " + ALGORITHM + " generator", e);
+        }
+    }
+
+    @Override
+    public String generateSessionId() {
+        final byte[] bytes = new byte[SESSION_ID_BYTES];
+        RANDOM.get().nextBytes(bytes);
+        return ENCODER.encodeToString(bytes);
+    }
+}
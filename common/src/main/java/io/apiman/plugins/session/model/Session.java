@@ -21,6 +21,21 @@ public class Session implements Serializable {
     private long validityPeriod;
     private long absoluteExpiry;
 
+    /**
+     * @return a copy of this session, which can be modified independently
+     */
+    public Session copy() {
+        final Session copy = new Session();
+        copy.sessionId = sessionId;
+        copy.authenticatedPrincipal = authenticatedPrincipal;
+        copy.starts = starts;
+        copy.expires = expires;
+        copy.current = current;
+        copy.validityPeriod = validityPeriod;
+        copy.absoluteExpiry = absoluteExpiry;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Session{" + "sessionId='" + sessionId + '\'' +
@@ -0,0 +1,56 @@
+package io.apiman.plugins.session.model;
+
+/**
+ * The claims held in a signed session cookie.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionToken {
+    private final String sessionId;
+    private final String authenticatedPrincipal;
+    private final long issuedAt;
+    private final long expires;
+
+    public SessionToken(String sessionId, String authenticatedPrincipal, long issuedAt, long expires) {
+        this.sessionId = sessionId;
+        this.authenticatedPrincipal = authenticatedPrincipal;
+        this.issuedAt = issuedAt;
+        this.expires = expires;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getAuthenticatedPrincipal() {
+        return authenticatedPrincipal;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    /**
+     * @return the time after which the token must no longer be accepted without consulting the session store
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * @param nowMillis the current time
+     * @return {@code true} if more than half of the token's lifetime has elapsed, so it should be reissued
+     */
+    public boolean isDueForRenewal(long nowMillis) {
+        return (nowMillis - issuedAt) >= (expires - issuedAt) / 2;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionToken{" + "sessionId='" + sessionId + '\'' +
+                ", authenticatedPrincipal='" + authenticatedPrincipal + '\'' +
+                ", issuedAt=" + issuedAt +
+                ", expires=" + expires +
+                '}';
+    }
+}
@@ -0,0 +1,16 @@
+package io.apiman.plugins.session.path;
+
+/**
+ * Matches request paths against a policy's path matcher.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface IPathMatcher {
+    /**
+     * Check whether the whole of the given path matches. Implementations must be thread-safe.
+     *
+     * @param path the request path
+     * @return <code>true</code> if the path matches
+     */
+    boolean matches(String path);
+}
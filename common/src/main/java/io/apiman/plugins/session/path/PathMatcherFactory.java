@@ -0,0 +1,193 @@
+package io.apiman.plugins.session.path;
+
+import io.apiman.plugins.session.path.impl.ExactPathMatcher;
+import io.apiman.plugins.session.path.impl.PathIndexMatcher;
+import io.apiman.plugins.session.path.impl.PrefixPathMatcher;
+import io.apiman.plugins.session.path.impl.RegexPathMatcher;
+import io.apiman.plugins.session.path.impl.SuffixPathMatcher;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiles path matcher regular expressions into an {@link IPathMatcher}.
+ * <p>
+ * Patterns that are literal paths, or a literal path followed or preceded by <code>.*</code>, are matched without a
+ * regular expression. Anything else is compiled as a regular expression, matched against the whole path. Matchers are
+ * immutable, so each distinct pattern is compiled once and shared by every API configured with it.
+ * <p>
+ * A list of patterns is compiled into a single {@link PathIndexMatcher}, so that the time taken to match a path
+ * does not grow with the number of literal, prefix and suffix patterns.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PathMatcherFactory {
+    private static final String ANY = ".*";
+    private static final String METACHARACTERS = ".[]{}()*+?^$|";
+
+    /**
+     * Compiled matchers, keyed by pattern.
+     */
+    private static final ConcurrentMap<String, IPathMatcher> PATH_MATCHERS = new ConcurrentHashMap<>();
+
+    /**
+     * Compiled indexes, keyed by their list of patterns.
+     */
+    private static final ConcurrentMap<List<String>, IPathMatcher> PATH_INDEXES = new ConcurrentHashMap<>();
+
+    /**
+     * Get the matcher for the given pattern, compiling it on first use.
+     *
+     * @param pattern the regular expression
+     * @return the path matcher
+     * @throws java.util.regex.PatternSyntaxException if the pattern is not a valid regular expression
+     */
+    public static IPathMatcher getPathMatcher(String pattern) {
+        final IPathMatcher pathMatcher = PATH_MATCHERS.get(pattern);
+        if (null != pathMatcher) {
+            return pathMatcher;
+        }
+        return PATH_MATCHERS.computeIfAbsent(pattern, PathMatcherFactory::compile);
+    }
+
+    /**
+     * Get a matcher for the given patterns, matching a path if any of the patterns match it. Either argument may be
+     * <code>null</code>, and blank patterns are ignored.
+     *
+     * @param pattern  a single regular expression
+     * @param patterns a list of regular expressions
+     * @return the path matcher, or <code>null</code> if no patterns are given
+     * @throws java.util.regex.PatternSyntaxException if a pattern is not a valid regular expression
+     */
+    public static IPathMatcher getPathMatcher(String pattern, List<String> patterns) {
+        final Set<String> distinct = new LinkedHashSet<>();
+        if (StringUtils.isNotBlank(pattern)) {
+            distinct.add(pattern);
+        }
+        if (null != patterns) {
+            patterns.stream().filter(StringUtils::isNotBlank).forEach(distinct::add);
+        }
+
+        switch (distinct.size()) {
+            case 0:
+                return null;
+            case 1:
+                return getPathMatcher(distinct.iterator().next());
+            default:
+                final List<String> key = Collections.unmodifiableList(new ArrayList<>(distinct));
+                final IPathMatcher pathIndex = PATH_INDEXES.get(key);
+                if (null != pathIndex) {
+                    return pathIndex;
+                }
+                return PATH_INDEXES.computeIfAbsent(key, PathMatcherFactory::compileIndex);
+        }
+    }
+
+    /**
+     * Compile the patterns into an index, holding each literal, prefix and suffix pattern in a trie.
+     */
+    static IPathMatcher compileIndex(List<String> patterns) {
+        final List<String> exactPaths = new ArrayList<>();
+        final List<String> prefixes = new ArrayList<>();
+        final List<String> suffixes = new ArrayList<>();
+        final List<IPathMatcher> regexMatchers = new ArrayList<>();
+
+        for (String pattern : patterns) {
+            final IPathMatcher pathMatcher = getPathMatcher(pattern);
+            if (pathMatcher instanceof ExactPathMatcher) {
+                exactPaths.add(((ExactPathMatcher) pathMatcher).getPath());
+            } else if (pathMatcher instanceof PrefixPathMatcher) {
+                prefixes.add(((PrefixPathMatcher) pathMatcher).getPrefix());
+            } else if (pathMatcher instanceof SuffixPathMatcher) {
+                suffixes.add(((SuffixPathMatcher) pathMatcher).getSuffix());
+            } else {
+                regexMatchers.add(pathMatcher);
+            }
+        }
+        return new PathIndexMatcher(exactPaths, prefixes, suffixes, regexMatchers);
+    }
+
+    /**
+     * Compile the pattern into the fastest equivalent matcher.
+     */
+    static IPathMatcher compile(String pattern) {
+        final String unanchored = stripAnchors(pattern);
+
+        final String exact = toLiteral(unanchored, 0, unanchored.length());
+        if (null != exact) {
+            return new ExactPathMatcher(exact);
+        }
+        if (unanchored.endsWith(ANY)) {
+            final String prefix = toLiteral(unanchored, 0, unanchored.length() - ANY.length());
+            if (null != prefix) {
+                return new PrefixPathMatcher(prefix);
+            }
+        }
+        if (unanchored.startsWith(ANY)) {
+            final String suffix = toLiteral(unanchored, ANY.length(), unanchored.length());
+            if (null != suffix) {
+                return new SuffixPathMatcher(suffix);
+            }
+        }
+        return new RegexPathMatcher(pattern);
+    }
+
+    /**
+     * Remove a leading '^' and trailing '$', which are implied when matching the whole path.
+     */
+    private static String stripAnchors(String pattern) {
+        int start = 0;
+        int end = pattern.length();
+        if (end > start && '^' == pattern.charAt(start)) {
+            start++;
+        }
+        if (end > start && '$' == pattern.charAt(end - 1) && !isEscaped(pattern, start, end - 1)) {
+            end--;
+        }
+        return pattern.substring(start, end);
+    }
+
+    /**
+     * @return <code>true</code> if the character at the given index is preceded by an odd number of backslashes
+     */
+    private static boolean isEscaped(String pattern, int start, int index) {
+        int backslashes = 0;
+        while (index - backslashes - 1 >= start && '\\' == pattern.charAt(index - backslashes - 1)) {
+            backslashes++;
+        }
+        return 1 == backslashes % 2;
+    }
+
+    /**
+     * Convert the part of the pattern between the given indices to the literal string it matches, if it contains no
+     * metacharacters other than escaped punctuation.
+     *
+     * @return the literal, or <code>null</code> if the pattern is not a literal
+     */
+    private static String toLiteral(String pattern, int start, int end) {
+        final StringBuilder literal = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char c = pattern.charAt(i);
+            if ('\\' == c) {
+                // only escaped punctuation is literal - escaped letters and digits are classes or references
+                if (++i >= end || Character.isLetterOrDigit(pattern.charAt(i))) {
+                    return null;
+                }
+                literal.append(pattern.charAt(i));
+
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package io.apiman.plugins.session.path.impl;
+
+import io.apiman.plugins.session.path.IPathMatcher;
+
+/**
+ * Matches a single literal path.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ExactPathMatcher implements IPathMatcher {
+    private final String path;
+
+    public ExactPathMatcher(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean matches(String path) {
+        return this.path.equals(path);
+    }
+
+    @Override
+    public String toString() {
+        return "exact:" + path;
+    }
+}
@@ -0,0 +1,25 @@
+package io.apiman.plugins.session.path.impl;
+
+/**
+ * As '.' in a regular expression does not match line terminators, the prefix and suffix matchers must reject them
+ * in the part of the path that '.*' would have matched.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+final class LineTerminators {
+    private LineTerminators() {
+    }
+
+    /**
+     * @return <code>true</code> if the value contains a line terminator between the given indices
+     */
+    static boolean containsAny(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if ('\n' == c || '\r' == c || '\u0085' == c || '\u2028' == c || '\u2029' == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
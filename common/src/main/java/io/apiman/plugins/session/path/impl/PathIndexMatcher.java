@@ -0,0 +1,123 @@
+package io.apiman.plugins.session.path.impl;
+
+import io.apiman.plugins.session.path.IPathMatcher;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches paths against many patterns at once, for policies that cover many routes.
+ * <p>
+ * Exact and prefix patterns are held in a trie walked from the start of the path, and suffix patterns in a trie
+ * walked from the end, so matching them is linear in the length of the path however many routes there are. Only the
+ * patterns that need a regular expression are tried one by one.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PathIndexMatcher implements IPathMatcher {
+    private final Node forward = new Node();
+    private final Node reverse = new Node();
+    private final IPathMatcher[] regexMatchers;
+    private final boolean hasSuffixes;
+
+    /**
+     * @param exactPaths    literal paths to match exactly
+     * @param prefixes      literal prefixes, each equivalent to <code>prefix.*</code>
+     * @param suffixes      literal suffixes, each equivalent to <code>.*suffix</code>
+     * @param regexMatchers matchers for the remaining patterns
+     */
+    public PathIndexMatcher(List<String> exactPaths, List<String> prefixes, List<String> suffixes,
+                            List<IPathMatcher> regexMatchers) {
+
+        exactPaths.forEach(path -> insert(forward, path, false).exact = true);
+        prefixes.forEach(prefix -> insert(forward, prefix, false).wildcard = true);
+        suffixes.forEach(suffix -> insert(reverse, suffix, true).wildcard = true);
+        this.hasSuffixes = !suffixes.isEmpty();
+        this.regexMatchers = regexMatchers.toArray(new IPathMatcher[regexMatchers.size()]);
+    }
+
+    private static Node insert(Node root, String value, boolean reversed) {
+        Node node = root;
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(reversed ? length - 1 - i : i);
+            node = node.children.computeIfAbsent(c, key -> new Node());
+        }
+        return node;
+    }
+
+    @Override
+    public boolean matches(String path) {
+        final int length = path.length();
+
+        // the wildcard part of a prefix or suffix pattern must not contain a line terminator, as with '.*'
+        int firstTerminator = length;
+        int lastTerminator = -1;
+        for (int i = 0; i < length; i++) {
+            if (LineTerminators.containsAny(path, i, i + 1)) {
+                if (firstTerminator == length) {
+                    firstTerminator = i;
+                }
+                lastTerminator = i;
+            }
+        }
+
+        Node node = forward;
+        for (int i = 0; ; i++) {
+            if (node.wildcard && lastTerminator < i) {
+                return true;
+            }
+            if (i == length) {
+                if (node.exact) {
+                    return true;
+                }
+                break;
+            }
+            node = node.children.get(path.charAt(i));
+            if (null == node) {
+                break;
+            }
+        }
+
+        if (hasSuffixes) {
+            node = reverse;
+            for (int i = length; ; i--) {
+                if (node.wildcard && firstTerminator >= i) {
+                    return true;
+                }
+                if (0 == i) {
+                    break;
+                }
+                node = node.children.get(path.charAt(i - 1));
+                if (null == node) {
+                    break;
+                }
+            }
+        }
+
+        for (IPathMatcher regexMatcher : regexMatchers) {
+            if (regexMatcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A node in a trie, marking whether a pattern ends at this point.
+     */
+    private static class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+
+        /**
+         * A literal path ends here.
+         */
+        boolean exact;
+
+        /**
+         * A prefix or suffix ends here, so the rest of the path is matched by '.*'.
+         */
+        boolean wildcard;
+    }
+}
@@ -0,0 +1,30 @@
+package io.apiman.plugins.session.path.impl;
+
+import io.apiman.plugins.session.path.IPathMatcher;
+
+/**
+ * Matches paths starting with a literal prefix, equivalent to the regular expression <code>prefix.*</code>.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PrefixPathMatcher implements IPathMatcher {
+    private final String prefix;
+
+    public PrefixPathMatcher(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @Override
+    public boolean matches(String path) {
+        return path.startsWith(prefix) && !LineTerminators.containsAny(path, prefix.length(), path.length());
+    }
+
+    @Override
+    public String toString() {
+        return "prefix:" + prefix;
+    }
+}
@@ -0,0 +1,28 @@
+package io.apiman.plugins.session.path.impl;
+
+import io.apiman.plugins.session.path.IPathMatcher;
+
+import java.util.regex.Pattern;
+
+/**
+ * Matches paths against a regular expression, for patterns without a faster equivalent.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class RegexPathMatcher implements IPathMatcher {
+    private final Pattern pattern;
+
+    public RegexPathMatcher(String regex) {
+        this.pattern = Pattern.compile(regex);
+    }
+
+    @Override
+    public boolean matches(String path) {
+        return pattern.matcher(path).matches();
+    }
+
+    @Override
+    public String toString() {
+        return "regex:" + pattern.pattern();
+    }
+}
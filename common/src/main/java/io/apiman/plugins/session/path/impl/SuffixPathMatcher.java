@@ -0,0 +1,30 @@
+package io.apiman.plugins.session.path.impl;
+
+import io.apiman.plugins.session.path.IPathMatcher;
+
+/**
+ * Matches paths ending with a literal suffix, equivalent to the regular expression <code>.*suffix</code>.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SuffixPathMatcher implements IPathMatcher {
+    private final String suffix;
+
+    public SuffixPathMatcher(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    @Override
+    public boolean matches(String path) {
+        return path.endsWith(suffix) && !LineTerminators.containsAny(path, 0, path.length() - suffix.length());
+    }
+
+    @Override
+    public String toString() {
+        return "suffix:" + suffix;
+    }
+}
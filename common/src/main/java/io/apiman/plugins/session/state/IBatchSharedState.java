@@ -0,0 +1,47 @@
+package io.apiman.plugins.session.state;
+
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.components.ISharedStateComponent;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A shared state component that can get, set and clear several properties in a single operation.
+ * <p>
+ * Session stores check for this capability, so a component that does not implement it, or implements a copy of
+ * this interface loaded by another class loader, is used one property at a time.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface IBatchSharedState extends ISharedStateComponent {
+    /**
+     * Gets multiple properties in a single operation. Properties that are not set are omitted from the result.
+     *
+     * @param namespace     the namespace
+     * @param propertyNames the property names
+     * @param handler       the result handler, receiving the values keyed by property name
+     * @param <T>           the value type
+     */
+    <T> void getProperties(String namespace, Collection<String> propertyNames,
+                           IAsyncResultHandler<Map<String, T>> handler);
+
+    /**
+     * Sets multiple properties in a single operation.
+     *
+     * @param namespace  the namespace
+     * @param properties the values keyed by property name
+     * @param handler    the result handler
+     * @param <T>        the value type
+     */
+    <T> void setProperties(String namespace, Map<String, T> properties, IAsyncResultHandler<Void> handler);
+
+    /**
+     * Clears multiple properties in a single operation.
+     *
+     * @param namespace     the namespace
+     * @param propertyNames the property names
+     * @param handler       the result handler
+     */
+    void clearProperties(String namespace, Collection<String> propertyNames, IAsyncResultHandler<Void> handler);
+}
@@ -0,0 +1,18 @@
+package io.apiman.plugins.session.state;
+
+/**
+ * A gateway component that notifies listeners when it is closed, such as when its engine stops.
+ * <p>
+ * Resources held for a component that does not implement this, or implements a copy of this interface loaded by
+ * another class loader, must be released explicitly.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface IClosableComponent {
+    /**
+     * Run the listener once this component is closed, or immediately if it has already been closed.
+     *
+     * @param listener the listener to run
+     */
+    void addCloseListener(Runnable listener);
+}
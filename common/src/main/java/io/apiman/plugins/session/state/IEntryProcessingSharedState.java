@@ -0,0 +1,29 @@
+package io.apiman.plugins.session.state;
+
+import com.hazelcast.map.EntryProcessor;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.components.ISharedStateComponent;
+
+/**
+ * A shared state component that can update a property on the cluster member that owns it, so the value does not
+ * need to be read and written back by the caller.
+ * <p>
+ * Session stores check for this capability, so a component that does not implement it, or implements a copy of
+ * this interface loaded by another class loader, has its properties updated by getting and setting them.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface IEntryProcessingSharedState extends ISharedStateComponent {
+    /**
+     * Applies an update to a property on the member that owns it. The entry processor must be available on the
+     * classpath of every member.
+     *
+     * @param namespace      the namespace
+     * @param propertyName   the property name
+     * @param entryProcessor the entry processor to apply to the property
+     * @param handler        the result handler, receiving the result of the entry processor
+     * @param <R>            the result type
+     */
+    <R> void executeOnProperty(String namespace, String propertyName, EntryProcessor<String, ?> entryProcessor,
+                               IAsyncResultHandler<R> handler);
+}
@@ -0,0 +1,28 @@
+package io.apiman.plugins.session.state;
+
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.components.ISharedStateComponent;
+
+/**
+ * A shared state component that can remove a property once its time to live has elapsed.
+ * <p>
+ * Session stores check for this capability, so a component that does not implement it, or implements a copy of
+ * this interface loaded by another class loader, is used as a plain {@link ISharedStateComponent}: its properties
+ * are kept until they are cleared.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface IExpiringSharedState extends ISharedStateComponent {
+    /**
+     * Set the property, removing it once the time to live has elapsed.
+     *
+     * @param namespace    the namespace
+     * @param propertyName the property name
+     * @param value        the value
+     * @param timeToLive   the time to live, in milliseconds, or zero for no expiry
+     * @param handler      completed once the property is set
+     * @param <T>          the value type
+     */
+    <T> void setProperty(String namespace, String propertyName, T value, long timeToLive,
+                         IAsyncResultHandler<Void> handler);
+}
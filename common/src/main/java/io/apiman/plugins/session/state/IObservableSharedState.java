@@ -0,0 +1,45 @@
+package io.apiman.plugins.session.state;
+
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.components.ISharedStateComponent;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A shared state component whose namespaces can be read in full and watched for changes, so that a node can keep
+ * its own copy of a namespace.
+ * <p>
+ * Callers check for this capability, so a component that does not implement it, or implements a copy of this
+ * interface loaded by another class loader, has each property read when it is needed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface IObservableSharedState extends ISharedStateComponent {
+    /**
+     * Gets every property in the namespace.
+     *
+     * @param namespace the namespace
+     * @param handler   the result handler, receiving the values keyed by property name
+     * @param <T>       the value type
+     */
+    <T> void getAllProperties(String namespace, IAsyncResultHandler<Map<String, T>> handler);
+
+    /**
+     * Calls the listener whenever a property in the namespace is set, on any node. The listener is called on a
+     * thread of the component, so must not block.
+     *
+     * @param namespace the namespace
+     * @param listener  receives the name and the new value of each property set
+     * @param <T>       the value type
+     * @return the ID of the listener, used to remove it
+     */
+    <T> String addPropertyListener(String namespace, BiConsumer<String, T> listener);
+
+    /**
+     * Stop calling the listener.
+     *
+     * @param listenerId the ID returned when the listener was added
+     */
+    void removePropertyListener(String listenerId);
+}
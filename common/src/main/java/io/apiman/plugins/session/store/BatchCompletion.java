@@ -0,0 +1,53 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResult;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Completes a handler once a fixed number of single-key operations have completed.
+ * If any operation fails, the handler receives the first failure once all operations have completed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+class BatchCompletion<T> {
+    private final AtomicInteger remaining;
+    private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+    private final Supplier<T> resultSupplier;
+    private final IAsyncResultHandler<T> handler;
+
+    /**
+     * @param operations     the number of operations in the batch
+     * @param resultSupplier supplies the result of the batch once all operations have completed successfully
+     * @param handler        the handler for the result of the batch
+     */
+    BatchCompletion(int operations, Supplier<T> resultSupplier, IAsyncResultHandler<T> handler) {
+        this.remaining = new AtomicInteger(operations);
+        this.resultSupplier = resultSupplier;
+        this.handler = handler;
+    }
+
+    /**
+     * Record the completion of an operation in the batch.
+     *
+     * @param result the result of the operation
+     */
+    void completed(IAsyncResult<?> result) {
+        if (!result.isSuccess()) {
+            firstError.compareAndSet(null, result.getError());
+        }
+
+        if (0 == remaining.decrementAndGet()) {
+            final Throwable error = firstError.get();
+            if (null == error) {
+                handler.handle(AsyncResultImpl.create(resultSupplier.get()));
+            } else {
+                handler.handle(AsyncResultImpl.<T>create(error));
+            }
+        }
+    }
+}
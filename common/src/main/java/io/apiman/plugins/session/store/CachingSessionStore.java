@@ -0,0 +1,220 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.util.LocalCache;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decorates an {@link ISessionStore} with a node-local cache of recently used sessions.
+ * <p>
+ * Stored sessions are written through to the local cache, so the node that issued a session can read it back
+ * without a remote lookup. Deleted sessions are invalidated locally both before the delete is passed on and once it
+ * completes. Changes made on other nodes become visible once the cached entry exceeds its maximum age.
+ * <p>
+ * A session read from the delegate is only cached if no invalidation of its ID started while it was being read, so
+ * a fetch that overlaps a delete cannot cache the deleted session. Invalidations are counted for stripes of session
+ * IDs, rather than for each ID, so that no state is retained for deleted sessions; an invalidation of another ID in
+ * the same stripe only means that a fetched session is not cached.
+ * <p>
+ * Sessions are copied into and out of the cache, so callers that modify a session never change the cached copy, or
+ * a session held by another thread.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class CachingSessionStore implements ISessionStore {
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final ISessionStore delegate;
+    private final LocalCache<String, Session> cache;
+
+    /**
+     * The number of invalidations started for the session IDs in each stripe.
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    /**
+     * @param delegate     the session store to decorate
+     * @param maxAgeMillis the maximum time for which a cached session is used, in milliseconds
+     * @param maxSize      the maximum number of sessions to cache
+     */
+    public CachingSessionStore(ISessionStore delegate, long maxAgeMillis, int maxSize) {
+        this.delegate = delegate;
+        this.cache = new LocalCache<>(maxAgeMillis, maxSize);
+    }
+
+    @Override
+    public void init(IPolicyContext context) {
+        delegate.init(context);
+    }
+
+    @Override
+    public void close() {
+        cache.clear();
+        delegate.close();
+    }
+
+    @Override
+    public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
+        cache.put(sessionId, session.copy());
+        delegate.storeSession(sessionId, session, result -> {
+            if (!result.isSuccess()) {
+                invalidate(sessionId);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+        final Session cached = cache.get(sessionId);
+        if (null != cached) {
+            handler.handle(AsyncResultImpl.create(cached.copy()));
+            return;
+        }
+
+        final long invalidationCount = getInvalidationCount(sessionId);
+        delegate.fetchSession(sessionId, result -> {
+            final Session session = result.getResult();
+            if (result.isSuccess() && null != session && StringUtils.isNotBlank(session.getSessionId())) {
+                cacheFetched(sessionId, session, invalidationCount);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
+        invalidate(sessionId);
+        delegate.deleteSession(sessionId, result -> {
+            // a fetch that started before the delete was passed on may have read the session
+            invalidate(sessionId);
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void touchSession(String sessionId, long newExpiry, IAsyncResultHandler<Void> handler) {
+        delegate.touchSession(sessionId, newExpiry, result -> {
+            if (result.isSuccess()) {
+                final Session cached = cache.get(sessionId);
+                if (null != cached && newExpiry > cached.getExpires()) {
+                    final Session touched = cached.copy();
+                    touched.setExpires(newExpiry);
+                    cache.replace(sessionId, cached, touched);
+                }
+            } else {
+                invalidate(sessionId);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void storeSessions(Map<String, Session> sessions, IAsyncResultHandler<Void> handler) {
+        sessions.forEach((sessionId, session) -> cache.put(sessionId, session.copy()));
+        delegate.storeSessions(sessions, result -> {
+            if (!result.isSuccess()) {
+                sessions.keySet().forEach(this::invalidate);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void fetchSessions(Collection<String> sessionIds, IAsyncResultHandler<Map<String, Session>> handler) {
+        final Map<String, Session> sessions = new HashMap<>(sessionIds.size());
+        final List<String> uncachedIds = new ArrayList<>();
+        for (String sessionId : sessionIds) {
+            final Session cached = cache.get(sessionId);
+            if (null != cached) {
+                sessions.put(sessionId, cached.copy());
+            } else {
+                uncachedIds.add(sessionId);
+            }
+        }
+
+        if (uncachedIds.isEmpty()) {
+            handler.handle(AsyncResultImpl.create(sessions));
+            return;
+        }
+
+        final long[] invalidationCounts = new long[uncachedIds.size()];
+        for (int i = 0; i < invalidationCounts.length; i++) {
+            invalidationCounts[i] = getInvalidationCount(uncachedIds.get(i));
+        }
+
+        delegate.fetchSessions(uncachedIds, result -> {
+            if (result.isSuccess()) {
+                for (int i = 0; i < invalidationCounts.length; i++) {
+                    final String sessionId = uncachedIds.get(i);
+                    final Session session = result.getResult().get(sessionId);
+                    if (null != session && StringUtils.isNotBlank(session.getSessionId())) {
+                        cacheFetched(sessionId, session, invalidationCounts[i]);
+                    }
+                }
+                sessions.putAll(result.getResult());
+                handler.handle(AsyncResultImpl.create(sessions));
+            } else {
+                handler.handle(result);
+            }
+        });
+    }
+
+    @Override
+    public void deleteSessions(Collection<String> sessionIds, IAsyncResultHandler<Void> handler) {
+        sessionIds.forEach(this::invalidate);
+        delegate.deleteSessions(sessionIds, result -> {
+            sessionIds.forEach(this::invalidate);
+            handler.handle(result);
+        });
+    }
+
+    /**
+     * Cache a session read from the delegate, unless an invalidation of its ID has started since the read began.
+     *
+     * @param sessionId         the ID of the session
+     * @param session           the session read from the delegate
+     * @param invalidationCount the invalidation count for the session ID when the read began
+     */
+    private void cacheFetched(String sessionId, Session session, long invalidationCount) {
+        if (invalidationCount != getInvalidationCount(sessionId)) {
+            return;
+        }
+
+        // don't overwrite a newer session stored while the fetch was in flight
+        cache.putIfAbsent(sessionId, session.copy());
+
+        // an invalidation may have started between the check and the update
+        if (invalidationCount != getInvalidationCount(sessionId)) {
+            cache.invalidate(sessionId);
+        }
+    }
+
+    /**
+     * Remove the session from the cache, and prevent fetches already in flight from caching it.
+     *
+     * @param sessionId the ID of the session
+     */
+    private void invalidate(String sessionId) {
+        invalidations.incrementAndGet(getStripe(sessionId));
+        cache.invalidate(sessionId);
+    }
+
+    private long getInvalidationCount(String sessionId) {
+        return invalidations.get(getStripe(sessionId));
+    }
+
+    private static int getStripe(String sessionId) {
+        return sessionId.hashCode() & (INVALIDATION_STRIPES - 1);
+    }
+}
@@ -1,8 +1,15 @@
 package io.apiman.plugins.session.store;
 
+import io.apiman.gateway.engine.async.AsyncResultImpl;
 import io.apiman.gateway.engine.async.IAsyncResultHandler;
 import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.plugins.session.model.Session;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a session store.
@@ -23,9 +30,101 @@ public interface ISessionStore {
      */
     void init(IPolicyContext context);
 
+    /**
+     * Release any resources held by the session store. The store is not used after this is called.
+     * The default implementation does nothing.
+     */
+    default void close() {
+        // no op
+    }
+
     void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler);
 
     void fetchSession(String sessionId, IAsyncResultHandler<Session> handler);
 
     void deleteSession(String sessionId, IAsyncResultHandler<Void> handler);
+
+    /**
+     * Extend the expiry of a session, without changing any other session data. The expiry is never moved backwards.
+     * If the session does not exist, this has no effect. The default implementation fetches and stores the session.
+     *
+     * @param sessionId the ID of the session
+     * @param newExpiry the new expiry time of the session
+     * @param handler   completed once the session is updated
+     */
+    default void touchSession(String sessionId, long newExpiry, IAsyncResultHandler<Void> handler) {
+        fetchSession(sessionId, result -> {
+            final Session session = result.getResult();
+            if (!result.isSuccess()) {
+                handler.handle(AsyncResultImpl.<Void>create(result.getError()));
+
+            } else if (null == session || StringUtils.isBlank(session.getSessionId()) ||
+                    newExpiry <= session.getExpires()) {
+                handler.handle(AsyncResultImpl.create((Void) null));
+
+            } else {
+                session.setExpires(newExpiry);
+                storeSession(sessionId, session, handler);
+            }
+        });
+    }
+
+    /**
+     * Store multiple sessions. The default implementation issues a {@link #storeSession} for each session.
+     *
+     * @param sessions the sessions, keyed by session ID
+     * @param handler  completed once all sessions are stored, or with the first failure
+     */
+    default void storeSessions(Map<String, Session> sessions, IAsyncResultHandler<Void> handler) {
+        if (sessions.isEmpty()) {
+            handler.handle(AsyncResultImpl.create((Void) null));
+            return;
+        }
+
+        final BatchCompletion<Void> completion = new BatchCompletion<>(sessions.size(), () -> null, handler);
+        sessions.forEach((sessionId, session) -> storeSession(sessionId, session, completion::completed));
+    }
+
+    /**
+     * Fetch multiple sessions. The default implementation issues a {@link #fetchSession} for each session ID.
+     *
+     * @param sessionIds the session IDs
+     * @param handler    receives the sessions that were found, keyed by session ID, or the first failure
+     */
+    default void fetchSessions(Collection<String> sessionIds, IAsyncResultHandler<Map<String, Session>> handler) {
+        if (sessionIds.isEmpty()) {
+            handler.handle(AsyncResultImpl.create(Collections.emptyMap()));
+            return;
+        }
+
+        final Map<String, Session> sessions = new ConcurrentHashMap<>();
+        final BatchCompletion<Map<String, Session>> completion = new BatchCompletion<>(sessionIds.size(), () -> sessions, handler);
+        for (String sessionId : sessionIds) {
+            fetchSession(sessionId, result -> {
+                final Session session = result.getResult();
+                if (result.isSuccess() && null != session && StringUtils.isNotBlank(session.getSessionId())) {
+                    sessions.put(sessionId, session);
+                }
+                completion.completed(result);
+            });
+        }
+    }
+
+    /**
+     * Delete multiple sessions. The default implementation issues a {@link #deleteSession} for each session ID.
+     *
+     * @param sessionIds the session IDs
+     * @param handler    completed once all sessions are deleted, or with the first failure
+     */
+    default void deleteSessions(Collection<String> sessionIds, IAsyncResultHandler<Void> handler) {
+        if (sessionIds.isEmpty()) {
+            handler.handle(AsyncResultImpl.create((Void) null));
+            return;
+        }
+
+        final BatchCompletion<Void> completion = new BatchCompletion<>(sessionIds.size(), () -> null, handler);
+        for (String sessionId : sessionIds) {
+            deleteSession(sessionId, completion::completed);
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package io.apiman.plugins.session.store;
+
+/**
+ * Provides an {@link ISessionStore} implementation under a short name, so it can be configured by name rather than
+ * class. Providers are discovered using {@link java.util.ServiceLoader}: list implementations in
+ * <code>META-INF/services/io.apiman.plugins.session.store.ISessionStoreProvider</code>.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface ISessionStoreProvider {
+    /**
+     * @return the name with which the session store is configured
+     */
+    String getName();
+
+    /**
+     * @return a new, uninitialised session store
+     */
+    ISessionStore createSessionStore();
+}
@@ -0,0 +1,170 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.IAsyncResult;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.store.metrics.OperationMetrics;
+import io.apiman.plugins.session.store.metrics.SessionStoreMetrics;
+import io.apiman.plugins.session.store.metrics.SessionStoreOperation;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Decorates an {@link ISessionStore} to record the latency and outcome of each operation in
+ * {@link SessionStoreMetrics}. Latency is measured from the call until its handler is invoked.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class InstrumentedSessionStore implements ISessionStore {
+    private final ISessionStore delegate;
+    private final SessionStoreMetrics metrics = new SessionStoreMetrics();
+    private String mBeanStoreName;
+
+    /**
+     * @param delegate the session store to decorate
+     */
+    public InstrumentedSessionStore(ISessionStore delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Expose the metrics through JMX until the store is closed.
+     *
+     * @param storeName distinguishes this store from others in the JVM
+     * @see SessionStoreMetrics#registerMBeans(String)
+     */
+    public void registerMBeans(String storeName) {
+        metrics.registerMBeans(storeName);
+        mBeanStoreName = storeName;
+    }
+
+    /**
+     * @return the metrics recorded for this store
+     */
+    public SessionStoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void init(IPolicyContext context) {
+        delegate.init(context);
+    }
+
+    @Override
+    public void close() {
+        if (null != mBeanStoreName) {
+            metrics.unregisterMBeans(mBeanStoreName);
+        }
+        delegate.close();
+    }
+
+    @Override
+    public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
+        final OperationMetrics operation = metrics.getOperation(SessionStoreOperation.STORE);
+        final long start = System.nanoTime();
+        try {
+            delegate.storeSession(sessionId, session, result -> complete(operation, start, result, handler));
+        } catch (RuntimeException e) {
+            operation.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+        final OperationMetrics operation = metrics.getOperation(SessionStoreOperation.FETCH);
+        final long start = System.nanoTime();
+        try {
+            delegate.fetchSession(sessionId, result -> {
+                if (result.isSuccess()) {
+                    final Session session = result.getResult();
+                    final boolean found = (null != session && StringUtils.isNotBlank(session.getSessionId()));
+                    operation.recordLookup(found ? 1 : 0, found ? 0 : 1);
+                }
+                complete(operation, start, result, handler);
+            });
+        } catch (RuntimeException e) {
+            operation.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
+        final OperationMetrics operation = metrics.getOperation(SessionStoreOperation.DELETE);
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteSession(sessionId, result -> complete(operation, start, result, handler));
+        } catch (RuntimeException e) {
+            operation.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void touchSession(String sessionId, long newExpiry, IAsyncResultHandler<Void> handler) {
+        final OperationMetrics operation = metrics.getOperation(SessionStoreOperation.TOUCH);
+        final long start = System.nanoTime();
+        try {
+            delegate.touchSession(sessionId, newExpiry, result -> complete(operation, start, result, handler));
+        } catch (RuntimeException e) {
+            operation.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void storeSessions(Map<String, Session> sessions, IAsyncResultHandler<Void> handler) {
+        final OperationMetrics operation = metrics.getOperation(SessionStoreOperation.STORE_BATCH);
+        final long start = System.nanoTime();
+        try {
+            delegate.storeSessions(sessions, result -> complete(operation, start, result, handler));
+        } catch (RuntimeException e) {
+            operation.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void fetchSessions(Collection<String> sessionIds, IAsyncResultHandler<Map<String, Session>> handler) {
+        final OperationMetrics operation = metrics.getOperation(SessionStoreOperation.FETCH_BATCH);
+        final long start = System.nanoTime();
+        try {
+            delegate.fetchSessions(sessionIds, result -> {
+                if (result.isSuccess()) {
+                    final int found = result.getResult().size();
+                    operation.recordLookup(found, sessionIds.size() - found);
+                }
+                complete(operation, start, result, handler);
+            });
+        } catch (RuntimeException e) {
+            operation.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteSessions(Collection<String> sessionIds, IAsyncResultHandler<Void> handler) {
+        final OperationMetrics operation = metrics.getOperation(SessionStoreOperation.DELETE_BATCH);
+        final long start = System.nanoTime();
+        try {
+            delegate.deleteSessions(sessionIds, result -> complete(operation, start, result, handler));
+        } catch (RuntimeException e) {
+            operation.record(System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Record the operation, then pass its result on.
+     */
+    private static <T> void complete(OperationMetrics operation, long start, IAsyncResult<T> result,
+                                     IAsyncResultHandler<T> handler) {
+
+        operation.record(System.nanoTime() - start, result.isSuccess());
+        handler.handle(result);
+    }
+}
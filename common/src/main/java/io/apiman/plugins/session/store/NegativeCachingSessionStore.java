@@ -0,0 +1,124 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.util.LocalCache;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorates an {@link ISessionStore} with a node-local record of session IDs that were recently not found, so
+ * repeated lookups of unknown sessions are answered without consulting the delegate.
+ * <p>
+ * Storing a session on this node clears any record of it, but a session stored by another node or policy is not
+ * found here until the record exceeds its maximum age, so this should be kept short.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class NegativeCachingSessionStore implements ISessionStore {
+    /**
+     * Returned when a session is known to be absent, to match the other store implementations.
+     */
+    private static final Session DEFAULT_SESSION = new Session();
+
+    private final ISessionStore delegate;
+    private final LocalCache<String, Boolean> misses;
+
+    /**
+     * @param delegate     the session store to decorate
+     * @param maxAgeMillis the maximum time for which a session ID is remembered as not found, in milliseconds
+     * @param maxSize      the maximum number of session IDs to remember
+     */
+    public NegativeCachingSessionStore(ISessionStore delegate, long maxAgeMillis, int maxSize) {
+        this.delegate = delegate;
+        this.misses = new LocalCache<>(maxAgeMillis, maxSize);
+    }
+
+    @Override
+    public void init(IPolicyContext context) {
+        delegate.init(context);
+    }
+
+    @Override
+    public void close() {
+        misses.clear();
+        delegate.close();
+    }
+
+    @Override
+    public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
+        misses.invalidate(sessionId);
+        delegate.storeSession(sessionId, session, handler);
+    }
+
+    @Override
+    public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+        if (null != misses.get(sessionId)) {
+            handler.handle(AsyncResultImpl.create(DEFAULT_SESSION));
+            return;
+        }
+
+        delegate.fetchSession(sessionId, result -> {
+            final Session session = result.getResult();
+            if (result.isSuccess() && (null == session || StringUtils.isBlank(session.getSessionId()))) {
+                misses.put(sessionId, Boolean.TRUE);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
+        delegate.deleteSession(sessionId, handler);
+    }
+
+    @Override
+    public void touchSession(String sessionId, long newExpiry, IAsyncResultHandler<Void> handler) {
+        delegate.touchSession(sessionId, newExpiry, handler);
+    }
+
+    @Override
+    public void storeSessions(Map<String, Session> sessions, IAsyncResultHandler<Void> handler) {
+        sessions.keySet().forEach(misses::invalidate);
+        delegate.storeSessions(sessions, handler);
+    }
+
+    @Override
+    public void fetchSessions(Collection<String> sessionIds, IAsyncResultHandler<Map<String, Session>> handler) {
+        final List<String> unknownIds = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds) {
+            if (null == misses.get(sessionId)) {
+                unknownIds.add(sessionId);
+            }
+        }
+
+        if (unknownIds.isEmpty()) {
+            handler.handle(AsyncResultImpl.create(Collections.emptyMap()));
+            return;
+        }
+
+        delegate.fetchSessions(unknownIds, result -> {
+            if (result.isSuccess()) {
+                final Map<String, Session> sessions = result.getResult();
+                for (String sessionId : unknownIds) {
+                    if (!sessions.containsKey(sessionId)) {
+                        misses.put(sessionId, Boolean.TRUE);
+                    }
+                }
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void deleteSessions(Collection<String> sessionIds, IAsyncResultHandler<Void> handler) {
+        delegate.deleteSessions(sessionIds, handler);
+    }
+}
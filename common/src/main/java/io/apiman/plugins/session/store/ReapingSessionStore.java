@@ -0,0 +1,303 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.store.metrics.ReaperMetrics;
+import io.apiman.plugins.session.util.SessionUtil;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decorates an {@link ISessionStore} that cannot expire sessions itself, deleting sessions once their deadline has
+ * passed.
+ * <p>
+ * Sessions stored or fetched through this node are recorded in a local index, ordered by deadline. On each tick, a
+ * background thread examines at most a fixed number of sessions whose deadline has passed, so a large backlog is
+ * worked through in small increments. Each session is fetched again before it is deleted, as it may have been
+ * extended since it was indexed, possibly on another node; extended sessions are indexed again with their new
+ * deadline. Touching a session does not update the index, for the same reason.
+ * <p>
+ * Each store has its own reaper thread, started when the store is initialised and stopped when it is closed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ReapingSessionStore implements ISessionStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReapingSessionStore.class);
+
+    private final ISessionStore delegate;
+    private final long intervalMillis;
+    private final int budget;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, IndexEntry> indexedSessions = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<IndexEntry> expiryIndex = new ConcurrentSkipListSet<>();
+    private final ReaperMetrics metrics = new ReaperMetrics(() -> indexedSessions.size());
+    private volatile ScheduledExecutorService scheduler;
+    private String mBeanStoreName;
+
+    /**
+     * @param delegate       the session store to decorate
+     * @param intervalMillis the time between ticks, in milliseconds, or zero to reap only when {@link #reap()}
+     *                       is called
+     * @param budget         the maximum number of sessions examined on each tick
+     * @param clock          supplies the current time, in milliseconds
+     */
+    public ReapingSessionStore(ISessionStore delegate, long intervalMillis, int budget, LongSupplier clock) {
+        this.delegate = delegate;
+        this.intervalMillis = intervalMillis;
+        this.budget = budget;
+        this.clock = clock;
+    }
+
+    /**
+     * Expose the metrics through JMX until the store is closed.
+     *
+     * @param storeName distinguishes this store from others in the JVM
+     * @see ReaperMetrics#registerMBean(String)
+     */
+    public void registerMBean(String storeName) {
+        metrics.registerMBean(storeName);
+        mBeanStoreName = storeName;
+    }
+
+    /**
+     * @return the metrics recorded for this reaper
+     */
+    public ReaperMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void init(IPolicyContext context) {
+        delegate.init(context);
+        if (intervalMillis > 0) {
+            final ScheduledExecutorService reaperScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "session-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaperScheduler.scheduleWithFixedDelay(this::reapSafely, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+            scheduler = reaperScheduler;
+        }
+    }
+
+    @Override
+    public void close() {
+        final ScheduledExecutorService reaperScheduler = scheduler;
+        if (null != reaperScheduler) {
+            // lets a run in progress finish, then stops the thread
+            reaperScheduler.shutdown();
+        }
+        if (null != mBeanStoreName) {
+            metrics.unregisterMBean(mBeanStoreName);
+        }
+        indexedSessions.clear();
+        expiryIndex.clear();
+        delegate.close();
+    }
+
+    @Override
+    public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
+        delegate.storeSession(sessionId, session, result -> {
+            if (result.isSuccess()) {
+                index(sessionId, session);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+        delegate.fetchSession(sessionId, result -> {
+            if (result.isSuccess() && null != result.getResult()) {
+                index(sessionId, result.getResult());
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
+        unindex(sessionId);
+        delegate.deleteSession(sessionId, handler);
+    }
+
+    @Override
+    public void touchSession(String sessionId, long newExpiry, IAsyncResultHandler<Void> handler) {
+        delegate.touchSession(sessionId, newExpiry, handler);
+    }
+
+    @Override
+    public void storeSessions(Map<String, Session> sessions, IAsyncResultHandler<Void> handler) {
+        delegate.storeSessions(sessions, result -> {
+            if (result.isSuccess()) {
+                sessions.forEach(this::index);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void fetchSessions(Collection<String> sessionIds, IAsyncResultHandler<Map<String, Session>> handler) {
+        delegate.fetchSessions(sessionIds, result -> {
+            if (result.isSuccess()) {
+                result.getResult().forEach(this::index);
+            }
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void deleteSessions(Collection<String> sessionIds, IAsyncResultHandler<Void> handler) {
+        sessionIds.forEach(this::unindex);
+        delegate.deleteSessions(sessionIds, handler);
+    }
+
+    /**
+     * Examine up to the budgeted number of sessions whose deadline has passed, in order of deadline. Sessions are
+     * fetched and deleted asynchronously, so this returns before they have been reclaimed.
+     *
+     * @return the number of sessions examined
+     */
+    public int reap() {
+        final long nowMillis = clock.getAsLong();
+        int examined = 0;
+
+        for (Iterator<IndexEntry> iterator = expiryIndex.iterator(); examined < budget && iterator.hasNext(); ) {
+            final IndexEntry entry = iterator.next();
+            if (entry.deadline > nowMillis) {
+                break;
+            }
+
+            // the session may have been re-indexed or deleted since the iterator was created
+            if (indexedSessions.remove(entry.sessionId, entry)) {
+                expiryIndex.remove(entry);
+                examine(entry.sessionId, nowMillis);
+                examined++;
+            }
+        }
+        return examined;
+    }
+
+    /**
+     * @return the number of sessions in the expiry index
+     */
+    int getIndexSize() {
+        return indexedSessions.size();
+    }
+
+    private void reapSafely() {
+        try {
+            reap();
+        } catch (RuntimeException e) {
+            // an exception would cancel the scheduled task
+            LOGGER.warn("Error reaping expired sessions", e);
+        }
+    }
+
+    /**
+     * Delete the session if its deadline has still passed, otherwise index it again.
+     */
+    private void examine(String sessionId, long nowMillis) {
+        metrics.recordScanned();
+        delegate.fetchSession(sessionId, result -> {
+            final Session session = result.getResult();
+            if (!result.isSuccess()) {
+                metrics.recordError();
+                LOGGER.warn("Unable to fetch session with ID '{}' to check its expiry", sessionId, result.getError());
+
+            } else if (null == session || StringUtils.isBlank(session.getSessionId())) {
+                // already removed
+
+            } else if (SessionUtil.getDeadline(session) > nowMillis) {
+                metrics.recordRescheduled();
+                index(sessionId, session);
+
+            } else {
+                delegate.deleteSession(sessionId, deleteResult -> {
+                    if (deleteResult.isSuccess()) {
+                        metrics.recordReclaimed();
+                    } else {
+                        metrics.recordError();
+                        LOGGER.warn("Unable to delete expired session with ID '{}'", sessionId, deleteResult.getError());
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Record the deadline of the session, replacing any existing entry. Sessions without a deadline are not indexed.
+     */
+    private void index(String sessionId, Session session) {
+        if (StringUtils.isBlank(session.getSessionId())) {
+            return;
+        }
+        final long deadline = SessionUtil.getDeadline(session);
+        if (deadline <= 0) {
+            unindex(sessionId);
+            return;
+        }
+
+        indexedSessions.compute(sessionId, (key, existing) -> {
+            if (null != existing) {
+                if (existing.deadline == deadline) {
+                    return existing;
+                }
+                expiryIndex.remove(existing);
+            }
+            final IndexEntry entry = new IndexEntry(deadline, sessionId);
+            expiryIndex.add(entry);
+            return entry;
+        });
+    }
+
+    private void unindex(String sessionId) {
+        indexedSessions.computeIfPresent(sessionId, (key, existing) -> {
+            expiryIndex.remove(existing);
+            return null;
+        });
+    }
+
+    /**
+     * A session in the expiry index, ordered by deadline, then by session ID.
+     */
+    private static class IndexEntry implements Comparable<IndexEntry> {
+        private final long deadline;
+        private final String sessionId;
+
+        private IndexEntry(long deadline, String sessionId) {
+            this.deadline = deadline;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public int compareTo(IndexEntry other) {
+            final int byDeadline = Long.compare(deadline, other.deadline);
+            return (0 != byDeadline ? byDeadline : sessionId.compareTo(other.sessionId));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IndexEntry && 0 == compareTo((IndexEntry) other);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(deadline) + sessionId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.components.ISharedStateComponent;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.state.IClosableComponent;
+import io.apiman.plugins.session.state.IExpiringSharedState;
+import io.apiman.plugins.session.state.IObservableSharedState;
+import io.apiman.plugins.session.util.SessionUtil;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Revoked session IDs, used to reject signed session cookies that are validated without the session store.
+ * <p>
+ * Each revocation is held as its own property in the {@link ISharedStateComponent}, keyed by session ID, so it is
+ * visible to every policy and every node, and concurrent revocations do not overwrite each other. A revocation is
+ * retained until the signed cookie it applies to has expired. If the shared state component is an
+ * {@link IExpiringSharedState}, revocations are stored with a time to live, so they are removed at that point;
+ * otherwise they are kept, and only their retention time is checked.
+ * <p>
+ * If the shared state component is an {@link IObservableSharedState}, each node keeps its own copy of the
+ * revocations, loaded once and then updated as revocations are stored on any node, so checks do not read the shared
+ * state. Until the copy has been loaded, or for other components, each check reads the shared state, and revocations
+ * that have been read are remembered locally.
+ * <p>
+ * Revocations are held for each gateway engine, identified by its {@link ISharedStateComponent}. They are released
+ * when the engine's shared state component is closed, if it is an {@link IClosableComponent}, or when the engine's
+ * session stores are closed (see {@link SessionStoreFactory#closeSessionStores(IPolicyContext)}).
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class RevokedSessions {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevokedSessions.class);
+    private static final String NAMESPACE = ISessionStore.SESSION_DATA_PREFIX + ".revoked";
+
+    /**
+     * Required as a non-<code>null</code> default value.
+     */
+    private static final Long NOT_REVOKED = 0L;
+
+    /**
+     * The time, in milliseconds, between attempts to load the revocations, if loading fails.
+     */
+    private static final long LOAD_RETRY_INTERVAL = 1000;
+
+    /**
+     * The time, in milliseconds, between removals of revocations that are no longer retained.
+     */
+    private static final long PURGE_INTERVAL = 60000;
+
+    /**
+     * Revocations, keyed by the shared state component of their engine.
+     */
+    private static final ConcurrentMap<ISharedStateComponent, RevokedSessions> ENGINE_REVOCATIONS =
+            new ConcurrentHashMap<>();
+
+    private final ISharedStateComponent sharedState;
+
+    /**
+     * The time until which each revocation known to this node is retained, keyed by session ID. Once
+     * {@link #replicated} is set, this holds every revocation.
+     */
+    private final ConcurrentMap<String, Long> revocations = new ConcurrentHashMap<>();
+
+    /**
+     * Set once {@link #revocations} has been loaded and is kept up to date by a listener.
+     */
+    private volatile boolean replicated;
+
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private final AtomicLong nextLoadAttempt = new AtomicLong();
+    private final AtomicLong nextPurge = new AtomicLong();
+    private volatile String listenerId;
+
+    private RevokedSessions(ISharedStateComponent sharedState) {
+        this.sharedState = sharedState;
+    }
+
+    /**
+     * Revoke the session.
+     *
+     * @param context     the policy context
+     * @param sessionId   the ID of the session to revoke
+     * @param retainUntil the time until which the revocation must be retained
+     * @param handler     completed once the revocation is stored
+     */
+    public static void revoke(IPolicyContext context, String sessionId, long retainUntil,
+                              IAsyncResultHandler<Void> handler) {
+
+        final ISharedStateComponent sharedState = context.getComponent(ISharedStateComponent.class);
+        final IAsyncResultHandler<Void> revokedHandler = result -> {
+            if (result.isSuccess()) {
+                getRevokedSessions(sharedState).addRevocation(sessionId, retainUntil);
+            }
+            handler.handle(result);
+        };
+
+        if (sharedState instanceof IExpiringSharedState) {
+            final long timeToLive = SessionUtil.getTimeToLive(retainUntil, TimeUtil.getNowInMillis(),
+                    SessionUtil.getMaxTimeToLive());
+            ((IExpiringSharedState) sharedState).setProperty(NAMESPACE, sessionId, retainUntil,
+                    timeToLive, revokedHandler);
+        } else {
+            sharedState.setProperty(NAMESPACE, sessionId, retainUntil, revokedHandler);
+        }
+    }
+
+    /**
+     * Check whether the session has been revoked. The result is an error if the revocation could not be read, in
+     * which case the caller should not rely on the signed cookie.
+     *
+     * @param context   the policy context
+     * @param sessionId the ID of the session
+     * @param handler   passed {@code true} if the session has been revoked
+     */
+    public static void isRevoked(IPolicyContext context, String sessionId, IAsyncResultHandler<Boolean> handler) {
+        getRevokedSessions(context.getComponent(ISharedStateComponent.class)).isRevoked(sessionId, handler);
+    }
+
+    /**
+     * Forget the revocations held for the engine, removing its listener.
+     *
+     * @param sharedState the shared state component of the engine
+     */
+    static void close(ISharedStateComponent sharedState) {
+        final RevokedSessions revokedSessions = ENGINE_REVOCATIONS.remove(sharedState);
+        if (null != revokedSessions) {
+            revokedSessions.close();
+        }
+    }
+
+    /**
+     * Get the revocations for the engine, starting to replicate them on first use.
+     *
+     * @param sharedState the shared state component of the engine
+     * @return the revocations
+     */
+    private static RevokedSessions getRevokedSessions(ISharedStateComponent sharedState) {
+        final RevokedSessions revokedSessions = ENGINE_REVOCATIONS.get(sharedState);
+        if (null != revokedSessions) {
+            return revokedSessions;
+        }
+
+        final RevokedSessions newRevokedSessions = new RevokedSessions(sharedState);
+        final RevokedSessions existing = ENGINE_REVOCATIONS.putIfAbsent(sharedState, newRevokedSessions);
+        if (null != existing) {
+            return existing;
+        }
+
+        // started outside the map update, as the close listener runs immediately if the engine has stopped
+        newRevokedSessions.start();
+        if (sharedState instanceof IClosableComponent) {
+            ((IClosableComponent) sharedState).addCloseListener(() -> close(sharedState));
+        }
+        return newRevokedSessions;
+    }
+
+    /**
+     * Listen for revocations stored on any node, then load those already stored, if the shared state component
+     * supports this.
+     */
+    private void start() {
+        if (sharedState instanceof IObservableSharedState) {
+            try {
+                listenerId = ((IObservableSharedState) sharedState).<Object>addPropertyListener(NAMESPACE,
+                        this::addRevocation);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to listen for revoked sessions - checking each in the shared state", e);
+                return;
+            }
+            load();
+        }
+    }
+
+    /**
+     * Load the revocations already stored, merging them with those received by the listener in the meantime. If
+     * this fails, it is retried by a later check.
+     */
+    private void load() {
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        ((IObservableSharedState) sharedState).<Object>getAllProperties(NAMESPACE, result -> {
+            try {
+                if (result.isSuccess()) {
+                    result.getResult().forEach(this::addRevocation);
+                    replicated = true;
+                } else {
+                    LOGGER.warn("Unable to load revoked sessions - checking each in the shared state",
+                            result.getError());
+                    nextLoadAttempt.set(TimeUtil.getNowInMillis() + LOAD_RETRY_INTERVAL);
+                }
+            } finally {
+                loading.set(false);
+            }
+        });
+    }
+
+    /**
+     * Stop listening for revocations.
+     */
+    private void close() {
+        replicated = false;
+        final String id = listenerId;
+        if (null != id) {
+            try {
+                ((IObservableSharedState) sharedState).removePropertyListener(id);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error removing revoked session listener", e);
+            }
+        }
+    }
+
+    /**
+     * Check whether the session has been revoked, reading the shared state unless this node holds every
+     * revocation.
+     *
+     * @param sessionId the ID of the session
+     * @param handler   passed {@code true} if the session has been revoked
+     */
+    private void isRevoked(String sessionId, IAsyncResultHandler<Boolean> handler) {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Long known = revocations.get(sessionId);
+        if (null != known) {
+            if (known > nowMillis) {
+                handler.handle(AsyncResultImpl.create(true));
+                return;
+            }
+            revocations.remove(sessionId, known);
+        }
+
+        if (replicated) {
+            handler.handle(AsyncResultImpl.create(false));
+            return;
+        }
+
+        if (null != listenerId && nowMillis >= nextLoadAttempt.get()) {
+            load();
+        }
+
+        sharedState.<Object>getProperty(NAMESPACE, sessionId, NOT_REVOKED, result -> {
+            if (!result.isSuccess()) {
+                handler.handle(AsyncResultImpl.<Boolean>create(result.getError()));
+                return;
+            }
+            if (!(result.getResult() instanceof Long)) {
+                handler.handle(AsyncResultImpl.<Boolean>create(new IllegalStateException(
+                        "Unreadable revocation for session with ID '" + sessionId + "'")));
+                return;
+            }
+
+            final long retainUntil = (Long) result.getResult();
+            if (retainUntil > TimeUtil.getNowInMillis()) {
+                addRevocation(sessionId, retainUntil);
+                handler.handle(AsyncResultImpl.create(true));
+            } else {
+                handler.handle(AsyncResultImpl.create(false));
+            }
+        });
+    }
+
+    /**
+     * Remember the revocation, keeping the latest retention time if the session was already known to be revoked,
+     * and occasionally remove revocations that are no longer retained.
+     *
+     * @param sessionId   the ID of the revoked session
+     * @param retainUntil the time until which the revocation is retained, ignored unless it is a {@link Long}
+     */
+    private void addRevocation(String sessionId, Object retainUntil) {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        if (retainUntil instanceof Long && (Long) retainUntil > nowMillis) {
+            revocations.merge(sessionId, (Long) retainUntil, Math::max);
+        }
+
+        final long purgeAt = nextPurge.get();
+        if (nowMillis >= purgeAt && nextPurge.compareAndSet(purgeAt, nowMillis + PURGE_INTERVAL)) {
+            revocations.values().removeIf(revokedUntil -> revokedUntil <= nowMillis);
+        }
+    }
+}
@@ -1,46 +1,271 @@
 package io.apiman.plugins.session.store;
 
+import io.apiman.gateway.engine.components.ISharedStateComponent;
 import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.clock.ClockFactory;
 import io.apiman.plugins.session.exception.SessionStoreNotFoundException;
+import io.apiman.plugins.session.id.SessionIdGeneratorFactory;
+import io.apiman.plugins.session.state.IClosableComponent;
 import io.apiman.plugins.session.store.impl.SharedStateSessionStoreImpl;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Returns the configured implementation of the {@link ISessionStore}.
- * Set the System property {@link #SESSION_STORE_IMPL} to configure the implementation to use.
+ * Set the System property {@link #SESSION_STORE_IMPL} to configure the implementation to use, either as the name of
+ * an {@link ISessionStoreProvider} or as a class name.
+ * Set the System property {@link #SESSION_STORE_IMPL} + {@link #SESSION_CACHE_ENABLED} to cache sessions locally on
+ * each node.
+ * Set the System property {@link #SESSION_STORE_IMPL} + {@link #NEGATIVE_CACHE_MAX_AGE} to remember session IDs that
+ * were not found.
+ * Set the System property {@link #SESSION_STORE_IMPL} + {@link #METRICS_ENABLED} to record metrics for each session
+ * store operation.
+ * Set the System property {@link #SESSION_STORE_IMPL} + {@link #REAPER_ENABLED} to delete expired sessions from stores
+ * that cannot expire them natively.
+ * <p>
+ * Additional named stores are configured in the same way, using the prefix {@link #NAMED_STORE_PREFIX} followed by
+ * the name of the store in place of {@link #SESSION_STORE_IMPL}.
+ * <p>
+ * Stores are created once per gateway engine, identified by its {@link ISharedStateComponent}, and are then looked
+ * up without locking. If the engine's shared state component is an {@link IClosableComponent}, as the Hazelcast
+ * component in this project is, they are closed when it is closed. Otherwise, including for the components in core
+ * apiman and components implementing a copy of that interface loaded by another class loader, they stay open until
+ * {@link #closeSessionStores(IPolicyContext)} is called, which engines should do when they stop.
+ * The engine's revoked sessions (see {@link RevokedSessions}) are released at the same time. Once no engine has stores,
+ * the session ID generator and the clock are closed too.
  *
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class SessionStoreFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(SessionStoreFactory.class);
     private static final String SESSION_STORE_IMPL = "io.apiman.plugins.session.ISessionStore";
+    private static final String NAMED_STORE_PREFIX = SESSION_STORE_IMPL + ".named.";
     private static final String DEFAULT_IMPL = SharedStateSessionStoreImpl.class.getCanonicalName();
 
     /**
-     * Cached session store.
+     * The name of the store used when no name is given.
+     */
+    public static final String DEFAULT_STORE_NAME = "default";
+
+    /**
+     * Whether to decorate the session store with a {@link CachingSessionStore}.
      */
-    private static ISessionStore sessionStore;
+    private static final String SESSION_CACHE_ENABLED = ".cache.enabled";
 
     /**
-     * Get the session store implementation.
+     * The maximum time, in milliseconds, for which a locally cached session is used.
+     */
+    private static final String SESSION_CACHE_MAX_AGE = ".cache.maxAge";
+
+    /**
+     * The maximum number of sessions cached locally.
+     */
+    private static final String SESSION_CACHE_MAX_SIZE = ".cache.maxSize";
+
+    /**
+     * The maximum time, in milliseconds, for which a session ID is remembered as not found, or zero to disable.
+     */
+    private static final String NEGATIVE_CACHE_MAX_AGE = ".negativeCache.maxAge";
+
+    /**
+     * The maximum number of session IDs remembered as not found.
+     */
+    private static final String NEGATIVE_CACHE_MAX_SIZE = ".negativeCache.maxSize";
+
+    /**
+     * Whether to decorate the session store with an {@link InstrumentedSessionStore}.
+     */
+    private static final String METRICS_ENABLED = ".metrics.enabled";
+
+    /**
+     * Whether to decorate the session store with a {@link ReapingSessionStore}.
+     */
+    private static final String REAPER_ENABLED = ".reaper.enabled";
+
+    /**
+     * The time between runs of the reaper, in milliseconds.
+     */
+    private static final String REAPER_INTERVAL = ".reaper.intervalMillis";
+
+    /**
+     * The maximum number of expired sessions examined by each run of the reaper.
+     */
+    private static final String REAPER_BUDGET = ".reaper.budget";
+
+    private static final long DEFAULT_SESSION_CACHE_MAX_AGE = 1000;
+    private static final int DEFAULT_SESSION_CACHE_MAX_SIZE = 10000;
+    private static final long DEFAULT_NEGATIVE_CACHE_MAX_AGE = 0;
+    private static final int DEFAULT_NEGATIVE_CACHE_MAX_SIZE = 10000;
+    private static final long DEFAULT_REAPER_INTERVAL = 1000;
+    private static final int DEFAULT_REAPER_BUDGET = 100;
+
+    /**
+     * Session stores, keyed by the shared state component of their engine, then by store name.
+     */
+    private static final ConcurrentMap<ISharedStateComponent, ConcurrentMap<String, ISessionStore>> SESSION_STORES =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Get the default session store for the engine.
+     *
+     * @param context the policy context
+     * @return the session store
+     * @throws SessionStoreNotFoundException
+     */
+    public static ISessionStore getSessionStore(IPolicyContext context) throws SessionStoreNotFoundException {
+        return getSessionStore(context, null);
+    }
+
+    /**
+     * Get the named session store for the engine, creating and initialising it on first use.
      *
-     * @param context
-     * @return
+     * @param context   the policy context
+     * @param storeName the name of the store, or <code>null</code> for the default store
+     * @return the session store
      * @throws SessionStoreNotFoundException
      */
-    public synchronized static ISessionStore getSessionStore(IPolicyContext context) throws SessionStoreNotFoundException {
-        if (null == sessionStore) {
-            final String sessionStoreImpl = System.getProperty(SESSION_STORE_IMPL, DEFAULT_IMPL);
-            try {
-                sessionStore = (ISessionStore) Class.<ISessionStore>forName(sessionStoreImpl).newInstance();
-                sessionStore.init(context);
-                LOGGER.debug("Using session store implementation: " + sessionStoreImpl);
+    public static ISessionStore getSessionStore(IPolicyContext context, String storeName)
+            throws SessionStoreNotFoundException {
+
+        final String name = (StringUtils.isBlank(storeName) ? DEFAULT_STORE_NAME : storeName);
+        final ISharedStateComponent engineKey = context.getComponent(ISharedStateComponent.class);
+
+        ConcurrentMap<String, ISessionStore> engineStores = SESSION_STORES.get(engineKey);
+        if (null == engineStores) {
+            final ConcurrentMap<String, ISessionStore> newStores = new ConcurrentHashMap<>();
+            engineStores = SESSION_STORES.putIfAbsent(engineKey, newStores);
+            if (null == engineStores) {
+                engineStores = newStores;
+
+                // registered outside the map update, as the listener runs immediately if the engine has stopped
+                if (engineKey instanceof IClosableComponent) {
+                    ((IClosableComponent) engineKey).addCloseListener(() -> closeSessionStores(engineKey));
+                }
+            }
+        }
+
+        final ISessionStore sessionStore = engineStores.get(name);
+        if (null != sessionStore) {
+            return sessionStore;
+        }
+        return engineStores.computeIfAbsent(name, key -> createSessionStore(context, key));
+    }
+
+    /**
+     * Close and forget the session stores and revoked sessions for the engine. They are created again if requested.
+     * This is called when the engine's shared state component is closed if it is an {@link IClosableComponent}, so
+     * only needs to be called by engines using another shared state component.
+     *
+     * @param context the policy context
+     */
+    public static void closeSessionStores(IPolicyContext context) {
+        closeSessionStores(context.getComponent(ISharedStateComponent.class));
+    }
 
-            } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
-                throw new SessionStoreNotFoundException(sessionStoreImpl, e);
+    /**
+     * Close and forget the session stores and revoked sessions for the engine, and the session ID generator and the
+     * clock once no engine has stores.
+     *
+     * @param engineKey the shared state component of the engine
+     */
+    private static void closeSessionStores(ISharedStateComponent engineKey) {
+        RevokedSessions.close(engineKey);
+        final Map<String, ISessionStore> engineStores = SESSION_STORES.remove(engineKey);
+
+        if (null != engineStores) {
+            engineStores.forEach((name, sessionStore) -> {
+                try {
+                    sessionStore.close();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Error closing session store: " + name, e);
+                }
+            });
+
+            if (SESSION_STORES.isEmpty()) {
+                SessionIdGeneratorFactory.closeSessionIdGenerator();
+                ClockFactory.closeClock();
             }
         }
-        return sessionStore;
+    }
+
+    /**
+     * Create and initialise the named session store.
+     */
+    private static ISessionStore createSessionStore(IPolicyContext context, String storeName) {
+        final String prefix = (DEFAULT_STORE_NAME.equals(storeName) ? SESSION_STORE_IMPL : NAMED_STORE_PREFIX + storeName);
+        final String sessionStoreImpl = System.getProperty(prefix,
+                DEFAULT_STORE_NAME.equals(storeName) ? DEFAULT_IMPL : null);
+
+        if (null == sessionStoreImpl) {
+            throw new SessionStoreNotFoundException(storeName,
+                    new IllegalStateException("System property not set: " + prefix));
+        }
+
+        ISessionStore store = instantiate(sessionStoreImpl);
+        LOGGER.debug("Using session store implementation for '{}': {}", storeName, sessionStoreImpl);
+
+        ReapingSessionStore reaper = null;
+        if (Boolean.getBoolean(prefix + REAPER_ENABLED)) {
+            final long interval = Math.max(1L, Long.getLong(prefix + REAPER_INTERVAL, DEFAULT_REAPER_INTERVAL));
+            final int budget = Integer.getInteger(prefix + REAPER_BUDGET, DEFAULT_REAPER_BUDGET);
+            reaper = new ReapingSessionStore(store, interval, budget, TimeUtil::getNowInMillis);
+            store = reaper;
+            LOGGER.debug("Reaping up to {} expired sessions every {}ms", budget, interval);
+        }
+
+        if (Boolean.getBoolean(prefix + SESSION_CACHE_ENABLED)) {
+            final long maxAge = Long.getLong(prefix + SESSION_CACHE_MAX_AGE, DEFAULT_SESSION_CACHE_MAX_AGE);
+            final int maxSize = Integer.getInteger(prefix + SESSION_CACHE_MAX_SIZE, DEFAULT_SESSION_CACHE_MAX_SIZE);
+            store = new CachingSessionStore(store, maxAge, maxSize);
+            LOGGER.debug("Caching sessions locally for up to {}ms (maximum {} sessions)", maxAge, maxSize);
+        }
+
+        final long negativeMaxAge = Long.getLong(prefix + NEGATIVE_CACHE_MAX_AGE, DEFAULT_NEGATIVE_CACHE_MAX_AGE);
+        if (negativeMaxAge > 0) {
+            final int maxSize = Integer.getInteger(prefix + NEGATIVE_CACHE_MAX_SIZE, DEFAULT_NEGATIVE_CACHE_MAX_SIZE);
+            store = new NegativeCachingSessionStore(store, negativeMaxAge, maxSize);
+            LOGGER.debug("Remembering missing sessions for up to {}ms (maximum {} sessions)", negativeMaxAge, maxSize);
+        }
+
+        if (Boolean.getBoolean(prefix + METRICS_ENABLED)) {
+            final InstrumentedSessionStore instrumented = new InstrumentedSessionStore(store);
+            final String mBeanStoreName = storeName + "@" + Integer.toHexString(System.identityHashCode(instrumented));
+            instrumented.registerMBeans(mBeanStoreName);
+            if (null != reaper) {
+                reaper.registerMBean(mBeanStoreName);
+            }
+            store = instrumented;
+            LOGGER.debug("Recording session store metrics as: {}", mBeanStoreName);
+        }
+
+        store.init(context);
+        return store;
+    }
+
+    /**
+     * Create a session store using the {@link ISessionStoreProvider} with the given name, or failing that,
+     * the class with the given name.
+     */
+    private static ISessionStore instantiate(String sessionStoreImpl) {
+        for (ISessionStoreProvider provider : ServiceLoader.load(ISessionStoreProvider.class,
+                SessionStoreFactory.class.getClassLoader())) {
+
+            if (sessionStoreImpl.equals(provider.getName())) {
+                return provider.createSessionStore();
+            }
+        }
+
+        try {
+            return (ISessionStore) Class.forName(sessionStoreImpl).newInstance();
+        } catch (InstantiationException | IllegalAccessException | ClassNotFoundException | ClassCastException e) {
+            throw new SessionStoreNotFoundException(sessionStoreImpl, e);
+        }
     }
 }
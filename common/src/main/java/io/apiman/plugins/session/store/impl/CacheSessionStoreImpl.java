@@ -6,29 +6,45 @@ import io.apiman.gateway.engine.components.ICacheStoreComponent;
 import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.plugins.session.model.Session;
 import io.apiman.plugins.session.store.ISessionStore;
-import io.apiman.plugins.session.util.Constants;
+import io.apiman.plugins.session.util.SessionCodec;
+import io.apiman.plugins.session.util.SessionUtil;
+import io.apiman.plugins.session.util.TimeUtil;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A session store implementation using the {@link ICacheStoreComponent}.
  * Since some operations in the cache store are synchronous, calls are mapped to the behaviour of the
  * {@link IAsyncResultHandler}.
+ * Sessions are written using the {@link SessionCodec} binary encoding if it is enabled.
+ * <p>
+ * Sessions are stored with a time to live, so they are removed once they expire, and are held for no longer than
+ * the maximum time to live (see {@link SessionUtil#MAX_SESSION_TTL}). Sessions are touched by rewriting them, which
+ * also extends their time to live.
  *
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class CacheSessionStoreImpl implements ISessionStore {
     protected ICacheStoreComponent cacheStore;
+    private boolean binaryCodec;
+    private long maxTimeToLive;
 
     @Override
     public void init(IPolicyContext context) {
         cacheStore = context.getComponent(ICacheStoreComponent.class);
+        binaryCodec = SessionCodec.isBinaryCodecEnabled();
+        maxTimeToLive = SessionUtil.getMaxTimeToLive();
     }
 
     @Override
     public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
+        final long timeToLive = SessionUtil.getTimeToLive(SessionUtil.getDeadline(session),
+                TimeUtil.getNowInMillis(), maxTimeToLive);
         try {
-            cacheStore.put(buildCacheKey(sessionId), session, Constants.MAX_SESSION_TTL);
+            // the cache store expects the time to live in seconds
+            cacheStore.put(buildCacheKey(sessionId), SessionCodec.toStoredValue(session, binaryCodec),
+                    TimeUnit.MILLISECONDS.toSeconds(timeToLive + 999));
             handler.handle(AsyncResultImpl.<Void>create(null));
 
         } catch (IOException e) {
@@ -38,13 +54,24 @@ public class CacheSessionStoreImpl implements ISessionStore {
 
     @Override
     public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
-        cacheStore.get(buildCacheKey(sessionId), Session.class, handler);
+        // read either encoding, so sessions written before the codec setting changed can still be read
+        cacheStore.get(buildCacheKey(sessionId), Object.class, result -> {
+            if (result.isSuccess()) {
+                try {
+                    handler.handle(AsyncResultImpl.create(SessionCodec.fromStoredValue(result.getResult())));
+                } catch (IllegalArgumentException e) {
+                    handler.handle(AsyncResultImpl.<Session>create(e));
+                }
+            } else {
+                handler.handle(AsyncResultImpl.<Session>create(result.getError()));
+            }
+        });
     }
 
     @Override
     public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
         try {
-            // overwrite the data and set it to expire immediately
+            // the cache store cannot remove entries, so overwrite the data and set it to expire immediately
             cacheStore.put(buildCacheKey(sessionId), new Session(), 0);
             handler.handle(AsyncResultImpl.<Void>create(null));
 
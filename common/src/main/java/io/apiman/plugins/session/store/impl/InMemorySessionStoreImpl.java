@@ -0,0 +1,162 @@
+package io.apiman.plugins.session.store.impl;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.store.ISessionStore;
+import io.apiman.plugins.session.util.SessionUtil;
+import io.apiman.plugins.session.util.TimeUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A session store implementation holding sessions in the memory of the current node, for single-node deployments.
+ * <p>
+ * Sessions are removed once both their expiry and absolute expiry have passed, using a {@link TimingWheel}
+ * that is advanced as the store is used, so the store never has to scan every session.
+ * <p>
+ * Sessions are copied when stored and when fetched, so callers can modify them without affecting the store, and
+ * stored sessions are replaced rather than modified when touched.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class InMemorySessionStoreImpl implements ISessionStore {
+    /**
+     * Set this System property to change the resolution of session expiry, in milliseconds.
+     */
+    public static final String EXPIRY_TICK_MILLIS = "io.apiman.plugins.session.ISessionStore.inMemory.tickMillis";
+
+    private static final long DEFAULT_EXPIRY_TICK_MILLIS = 1000;
+
+    /**
+     * Indicates that no expiry timer is scheduled for a session.
+     */
+    private static final long NOT_SCHEDULED = Long.MAX_VALUE;
+
+    private final ConcurrentMap<String, StoredSession> sessions = new ConcurrentHashMap<>();
+    private final TimingWheel<String> expiryWheel;
+
+    public InMemorySessionStoreImpl() {
+        final long tickMillis = Math.max(1L, Long.getLong(EXPIRY_TICK_MILLIS, DEFAULT_EXPIRY_TICK_MILLIS));
+        expiryWheel = new TimingWheel<>(tickMillis, TimeUtil.getNowInMillis(), this::onExpiryTimer);
+    }
+
+    @Override
+    public void init(IPolicyContext context) {
+        // no op
+    }
+
+    @Override
+    public void close() {
+        sessions.clear();
+    }
+
+    @Override
+    public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
+        final Session storedSession = session.copy();
+        final long deadline = SessionUtil.getDeadline(storedSession);
+
+        sessions.compute(sessionId, (key, existing) -> {
+            // an earlier timer rechecks the deadline when it fires, so only schedule if this deadline is sooner
+            long scheduled = (null == existing ? NOT_SCHEDULED : existing.scheduledDeadline);
+            if (deadline < scheduled) {
+                expiryWheel.schedule(sessionId, deadline);
+                scheduled = deadline;
+            }
+            return new StoredSession(storedSession, scheduled);
+        });
+
+        expiryWheel.advance(TimeUtil.getNowInMillis());
+        handler.handle(AsyncResultImpl.create((Void) null));
+    }
+
+    @Override
+    public void touchSession(String sessionId, long newExpiry, IAsyncResultHandler<Void> handler) {
+        sessions.computeIfPresent(sessionId, (key, existing) -> {
+            if (newExpiry <= existing.session.getExpires()) {
+                return existing;
+            }
+
+            // replace the session, as it may be being copied by a fetch
+            final Session session = existing.session.copy();
+            session.setExpires(newExpiry);
+
+            final long deadline = SessionUtil.getDeadline(session);
+            long scheduled = existing.scheduledDeadline;
+            if (deadline < scheduled) {
+                expiryWheel.schedule(sessionId, deadline);
+                scheduled = deadline;
+            }
+            return new StoredSession(session, scheduled);
+        });
+
+        expiryWheel.advance(TimeUtil.getNowInMillis());
+        handler.handle(AsyncResultImpl.create((Void) null));
+    }
+
+    @Override
+    public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        expiryWheel.advance(nowMillis);
+
+        final StoredSession stored = sessions.get(sessionId);
+        if (null == stored || SessionUtil.getDeadline(stored.session) <= nowMillis) {
+            // an empty session, to match the other store implementations
+            handler.handle(AsyncResultImpl.create(new Session()));
+        } else {
+            handler.handle(AsyncResultImpl.create(stored.session.copy()));
+        }
+    }
+
+    @Override
+    public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
+        // any pending timer fires harmlessly once the session has gone
+        sessions.remove(sessionId);
+
+        expiryWheel.advance(TimeUtil.getNowInMillis());
+        handler.handle(AsyncResultImpl.create((Void) null));
+    }
+
+    /**
+     * @return the number of sessions held, including any that have expired but not yet been removed
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Remove the session if it has expired, otherwise reschedule its timer if its deadline has been extended.
+     */
+    private void onExpiryTimer(String sessionId, long scheduledDeadline) {
+        final long nowMillis = TimeUtil.getNowInMillis();
+
+        sessions.computeIfPresent(sessionId, (key, stored) -> {
+            // the session may have been touched since the timer was scheduled
+            final long deadline = SessionUtil.getDeadline(stored.session);
+            if (deadline <= nowMillis) {
+                return null;
+            }
+            if (stored.scheduledDeadline != scheduledDeadline) {
+                // another timer is responsible for this session
+                return stored;
+            }
+            expiryWheel.schedule(sessionId, deadline);
+            return new StoredSession(stored.session, deadline);
+        });
+    }
+
+    /**
+     * Holds a session alongside the deadline of its pending expiry timer.
+     */
+    private static class StoredSession {
+        final Session session;
+        final long scheduledDeadline;
+
+        private StoredSession(Session session, long scheduledDeadline) {
+            this.session = session;
+            this.scheduledDeadline = scheduledDeadline;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.apiman.plugins.session.store.impl;
+
+import io.apiman.plugins.session.store.ISessionStore;
+import io.apiman.plugins.session.store.ISessionStoreProvider;
+
+/**
+ * Provides the {@link InMemorySessionStoreImpl} as <code>inMemory</code>.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class InMemorySessionStoreProvider implements ISessionStoreProvider {
+    @Override
+    public String getName() {
+        return "inMemory";
+    }
+
+    @Override
+    public ISessionStore createSessionStore() {
+        return new InMemorySessionStoreImpl();
+    }
+}
@@ -1,17 +1,53 @@
 package io.apiman.plugins.session.store.impl;
 
+import com.hazelcast.nio.serialization.HazelcastSerializationException;
+import io.apiman.gateway.engine.async.AsyncResultImpl;
 import io.apiman.gateway.engine.async.IAsyncResultHandler;
 import io.apiman.gateway.engine.components.ISharedStateComponent;
 import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.state.IBatchSharedState;
+import io.apiman.plugins.session.state.IEntryProcessingSharedState;
+import io.apiman.plugins.session.state.IExpiringSharedState;
 import io.apiman.plugins.session.store.ISessionStore;
+import io.apiman.plugins.session.util.SessionCodec;
+import io.apiman.plugins.session.util.SessionUtil;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A session store implementation using the {@link ISharedStateComponent}.
+ * Sessions are written using the {@link SessionCodec} binary encoding if it is enabled.
+ * <p>
+ * The store uses the optional capabilities of the shared state component, such as the Hazelcast component in this
+ * project:
+ * <ul>
+ * <li>{@link IExpiringSharedState} - sessions are stored with a time to live, so they are removed once they expire
+ * or their absolute expiry passes, whichever is first (see {@link SessionUtil#getDeadline(Session)}), and are held
+ * for no longer than the maximum time to live (see {@link SessionUtil#MAX_SESSION_TTL}). Touching a session on its
+ * owning member restarts its time to live, so an active session is kept for as long as it was when stored, after
+ * each touch; this may keep it for up to that long after its absolute expiry, at which point it is rejected when
+ * validated. Batches of sessions are stored individually, as a batch write cannot set a time to live for each
+ * session.</li>
+ * <li>{@link IBatchSharedState} - batch fetches and deletes use single operations.</li>
+ * <li>{@link IEntryProcessingSharedState} - sessions are touched on the member that owns them.</li>
+ * </ul>
+ * Other components, including those in core apiman, and components implementing copies of these interfaces loaded
+ * by another class loader, are used through {@link ISharedStateComponent} alone. Sessions are then fetched, deleted
+ * and touched one at a time, and are kept until they are deleted, so enable the reaper (see
+ * {@link io.apiman.plugins.session.store.SessionStoreFactory}) to remove expired sessions.
  *
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class SharedStateSessionStoreImpl implements ISessionStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedStateSessionStoreImpl.class);
 
     /**
      * Required as a non-<code>null</code> default value.
@@ -19,24 +55,134 @@ public class SharedStateSessionStoreImpl implements ISessionStore {
     private static final Session DEFAULT_SESSION = new Session();
 
     private ISharedStateComponent sharedState;
+    private boolean binaryCodec;
+    private long maxTimeToLive;
+
+    /**
+     * Set once the {@link TouchSessionEntryProcessor} has failed because it cannot be loaded or serialized by the
+     * cluster, after which sessions are touched by fetching and storing them.
+     */
+    private final AtomicBoolean entryProcessorUnavailable = new AtomicBoolean();
 
     @Override
     public void init(IPolicyContext context) {
         sharedState = context.getComponent(ISharedStateComponent.class);
+        binaryCodec = SessionCodec.isBinaryCodecEnabled();
+        maxTimeToLive = SessionUtil.getMaxTimeToLive();
+
+        if (!(sharedState instanceof IExpiringSharedState) && LOGGER.isInfoEnabled()) {
+            LOGGER.info("Shared state component {} cannot expire properties - sessions are kept until deleted",
+                    sharedState.getClass().getName());
+        }
     }
 
     @Override
     public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
-        sharedState.setProperty(SESSION_DATA_PREFIX, sessionId, session, handler);
+        final Object storedValue = SessionCodec.toStoredValue(session, binaryCodec);
+        if (sharedState instanceof IExpiringSharedState) {
+            final long timeToLive = SessionUtil.getTimeToLive(SessionUtil.getDeadline(session),
+                    TimeUtil.getNowInMillis(), maxTimeToLive);
+            ((IExpiringSharedState) sharedState).setProperty(SESSION_DATA_PREFIX, sessionId, storedValue,
+                    timeToLive, handler);
+        } else {
+            sharedState.setProperty(SESSION_DATA_PREFIX, sessionId, storedValue, handler);
+        }
     }
 
     @Override
     public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
-        sharedState.getProperty(SESSION_DATA_PREFIX, sessionId, DEFAULT_SESSION, handler);
+        sharedState.<Object>getProperty(SESSION_DATA_PREFIX, sessionId, DEFAULT_SESSION, result -> {
+            if (result.isSuccess()) {
+                try {
+                    handler.handle(AsyncResultImpl.create(SessionCodec.fromStoredValue(result.getResult())));
+                } catch (IllegalArgumentException e) {
+                    handler.handle(AsyncResultImpl.<Session>create(e));
+                }
+            } else {
+                handler.handle(AsyncResultImpl.<Session>create(result.getError()));
+            }
+        });
     }
 
     @Override
     public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
         sharedState.clearProperty(SESSION_DATA_PREFIX, sessionId, handler);
     }
+
+    @Override
+    public void touchSession(String sessionId, long newExpiry, IAsyncResultHandler<Void> handler) {
+        if (!(sharedState instanceof IEntryProcessingSharedState) || entryProcessorUnavailable.get()) {
+            ISessionStore.super.touchSession(sessionId, newExpiry, handler);
+            return;
+        }
+
+        ((IEntryProcessingSharedState) sharedState).executeOnProperty(SESSION_DATA_PREFIX, sessionId,
+                new TouchSessionEntryProcessor(newExpiry), result -> {
+                    if (result.isSuccess()) {
+                        handler.handle(AsyncResultImpl.create((Void) null));
+                    } else if (isEntryProcessorUnavailable(result.getError())) {
+                        // the entry processor cannot be loaded or serialized, so don't try it again
+                        if (entryProcessorUnavailable.compareAndSet(false, true)) {
+                            LOGGER.warn("Unable to touch sessions on their owning members - falling back to fetch and store for all sessions",
+                                    result.getError());
+                        }
+                        ISessionStore.super.touchSession(sessionId, newExpiry, handler);
+                    } else {
+                        LOGGER.warn("Unable to touch session with ID '{}' on its owning member - falling back to fetch and store",
+                                sessionId, result.getError());
+                        ISessionStore.super.touchSession(sessionId, newExpiry, handler);
+                    }
+                });
+    }
+
+    /**
+     * @param error the error touching a session
+     * @return {@code true} if the error shows that the entry processor cannot be used by the cluster
+     */
+    private static boolean isEntryProcessorUnavailable(Throwable error) {
+        for (Throwable cause = error; null != cause; cause = cause.getCause()) {
+            if (cause instanceof HazelcastSerializationException || cause instanceof ClassNotFoundException ||
+                    cause instanceof NoClassDefFoundError) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void fetchSessions(Collection<String> sessionIds, IAsyncResultHandler<Map<String, Session>> handler) {
+        if (!(sharedState instanceof IBatchSharedState)) {
+            ISessionStore.super.fetchSessions(sessionIds, handler);
+            return;
+        }
+
+        ((IBatchSharedState) sharedState).<Object>getProperties(SESSION_DATA_PREFIX, sessionIds, result -> {
+            if (result.isSuccess()) {
+                final Map<String, Session> sessions = new HashMap<>(result.getResult().size());
+                try {
+                    result.getResult().forEach((sessionId, storedValue) -> {
+                        final Session session = SessionCodec.fromStoredValue(storedValue);
+                        if (null != session && StringUtils.isNotBlank(session.getSessionId())) {
+                            sessions.put(sessionId, session);
+                        }
+                    });
+                    handler.handle(AsyncResultImpl.create(sessions));
+                } catch (IllegalArgumentException e) {
+                    handler.handle(AsyncResultImpl.<Map<String, Session>>create(e));
+                }
+            } else {
+                handler.handle(AsyncResultImpl.<Map<String, Session>>create(result.getError()));
+            }
+        });
+    }
+
+    @Override
+    public void deleteSessions(Collection<String> sessionIds, IAsyncResultHandler<Void> handler) {
+        if (!(sharedState instanceof IBatchSharedState)) {
+            ISessionStore.super.deleteSessions(sessionIds, handler);
+            return;
+        }
+
+        ((IBatchSharedState) sharedState).clearProperties(SESSION_DATA_PREFIX, sessionIds, handler);
+    }
 }
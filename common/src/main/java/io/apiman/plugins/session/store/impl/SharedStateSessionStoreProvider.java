@@ -0,0 +1,21 @@
+package io.apiman.plugins.session.store.impl;
+
+import io.apiman.plugins.session.store.ISessionStore;
+import io.apiman.plugins.session.store.ISessionStoreProvider;
+
+/**
+ * Provides the {@link SharedStateSessionStoreImpl} as <code>sharedState</code>.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SharedStateSessionStoreProvider implements ISessionStoreProvider {
+    @Override
+    public String getName() {
+        return "sharedState";
+    }
+
+    @Override
+    public ISessionStore createSessionStore() {
+        return new SharedStateSessionStoreImpl();
+    }
+}
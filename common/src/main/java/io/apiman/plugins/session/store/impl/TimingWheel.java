@@ -0,0 +1,188 @@
+package io.apiman.plugins.session.store.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A hierarchical timing wheel, used to expire keys without scanning every entry in a store.
+ * <p>
+ * Scheduling is lock-free: new timers are queued and only placed on the wheel by the thread that advances it.
+ * Advancing is non-blocking: if another thread is already advancing the wheel, the call returns immediately.
+ * Expiry callbacks are invoked outside of any lock.
+ * <p>
+ * Timers fire on the first tick at or after their deadline. Timers beyond the horizon of the wheel are parked
+ * in the outermost level and re-placed when they are cascaded.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+class TimingWheel<K> {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final long SLOT_MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final ExpiryHandler<K> expiryHandler;
+    private final Queue<Timer<K>> scheduled = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock advanceLock = new ReentrantLock();
+    private final List<List<Timer<K>>> slots = new ArrayList<>(LEVELS * SLOTS);
+
+    /**
+     * Guarded by {@link #advanceLock} for writes.
+     */
+    private volatile long currentTick;
+
+    /**
+     * The number of timers on the wheel, guarded by {@link #advanceLock}.
+     */
+    private int timerCount;
+
+    /**
+     * @param tickMillis    the resolution of the wheel, in milliseconds
+     * @param nowMillis     the current time, in milliseconds
+     * @param expiryHandler invoked for each timer that fires
+     */
+    TimingWheel(long tickMillis, long nowMillis, ExpiryHandler<K> expiryHandler) {
+        this.tickMillis = tickMillis;
+        this.expiryHandler = expiryHandler;
+        this.currentTick = nowMillis / tickMillis;
+
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedule a timer for the key.
+     *
+     * @param key            the key
+     * @param deadlineMillis the time at which the timer should fire, in milliseconds
+     */
+    void schedule(K key, long deadlineMillis) {
+        final long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        scheduled.add(new Timer<>(key, deadlineMillis, deadlineTick));
+    }
+
+    /**
+     * Advance the wheel to the current time, firing any timers that are due.
+     *
+     * @param nowMillis the current time, in milliseconds
+     */
+    void advance(long nowMillis) {
+        final long targetTick = nowMillis / tickMillis;
+        if (targetTick <= currentTick || !advanceLock.tryLock()) {
+            return;
+        }
+
+        final List<Timer<K>> due = new ArrayList<>();
+        try {
+            Timer<K> timer;
+            while (null != (timer = scheduled.poll())) {
+                place(timer, due);
+            }
+
+            if (0 == timerCount) {
+                currentTick = targetTick;
+            }
+            while (currentTick < targetTick) {
+                final long tick = currentTick + 1;
+                currentTick = tick;
+                cascade(tick, due);
+                drainSlot(0, tick, due);
+            }
+
+        } finally {
+            advanceLock.unlock();
+        }
+
+        for (Timer<K> expired : due) {
+            expiryHandler.expired(expired.key, expired.deadlineMillis);
+        }
+    }
+
+    /**
+     * Move timers from the outer levels inwards, for each level whose inner level has completed a revolution.
+     */
+    private void cascade(long tick, List<Timer<K>> due) {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+
+            final List<Timer<K>> cascaded = new ArrayList<>(slot(level, tick));
+            drainSlot(level, tick, null);
+            for (Timer<K> timer : cascaded) {
+                place(timer, due);
+            }
+        }
+    }
+
+    /**
+     * Remove all timers from the slot at the given level for the tick, optionally collecting them.
+     */
+    private void drainSlot(int level, long tick, List<Timer<K>> collector) {
+        final List<Timer<K>> slot = slot(level, tick);
+        timerCount -= slot.size();
+        if (null != collector) {
+            collector.addAll(slot);
+        }
+        slot.clear();
+    }
+
+    /**
+     * Place the timer on the wheel relative to the current tick, or collect it if it is already due.
+     */
+    private void place(Timer<K> timer, List<Timer<K>> due) {
+        final long delta = timer.deadlineTick - currentTick;
+        if (delta <= 0) {
+            due.add(timer);
+            return;
+        }
+
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << (SLOT_BITS * (level + 1)))) {
+                slot(level, timer.deadlineTick).add(timer);
+                timerCount++;
+                return;
+            }
+        }
+
+        // beyond the horizon - park in the outermost slot that will be cascaded last
+        slot(LEVELS - 1, currentTick).add(timer);
+        timerCount++;
+    }
+
+    private List<Timer<K>> slot(int level, long tick) {
+        final int index = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        return slots.get(level * SLOTS + index);
+    }
+
+    /**
+     * Invoked when a timer fires.
+     */
+    interface ExpiryHandler<K> {
+        /**
+         * @param key            the key of the timer
+         * @param deadlineMillis the deadline with which the timer was scheduled
+         */
+        void expired(K key, long deadlineMillis);
+    }
+
+    /**
+     * A scheduled timer.
+     */
+    private static class Timer<K> {
+        final K key;
+        final long deadlineMillis;
+        final long deadlineTick;
+
+        private Timer(K key, long deadlineMillis, long deadlineTick) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
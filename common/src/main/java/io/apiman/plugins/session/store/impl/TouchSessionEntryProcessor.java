@@ -0,0 +1,45 @@
+package io.apiman.plugins.session.store.impl;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.util.SessionCodec;
+
+import java.util.Map;
+
+/**
+ * Extends the expiry of a session held in a Hazelcast map, on the member that owns it.
+ * The session is written back in the same form in which it was stored. The expiry is never moved backwards,
+ * so concurrent extensions of the same session cannot shorten it.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+class TouchSessionEntryProcessor extends AbstractEntryProcessor<String, Object> {
+    private static final long serialVersionUID = 1L;
+
+    private final long newExpiry;
+
+    /**
+     * @param newExpiry the new expiry time of the session
+     */
+    TouchSessionEntryProcessor(long newExpiry) {
+        this.newExpiry = newExpiry;
+    }
+
+    /**
+     * @return {@code true} if the session exists, otherwise {@code false}
+     */
+    @Override
+    public Object process(Map.Entry<String, Object> entry) {
+        final Object storedValue = entry.getValue();
+        final Session session = SessionCodec.fromStoredValue(storedValue);
+        if (null == session) {
+            return false;
+        }
+
+        if (newExpiry > session.getExpires()) {
+            session.setExpires(newExpiry);
+            entry.setValue(SessionCodec.toStoredValue(session, storedValue instanceof byte[]));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package io.apiman.plugins.session.store.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome metrics for a session store operation.
+ * <p>
+ * Counters are striped, so recording from many threads does not contend on a single value. Latencies are held
+ * in a histogram with a bucket per power of two microseconds, so percentiles are accurate to within a factor of
+ * two. Reads are not atomic across counters, so a snapshot taken under load may be slightly inconsistent.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    /**
+     * Bucket 0 holds latencies below 1 microsecond; bucket <code>n</code> holds latencies of at least
+     * <code>2^(n-1)</code> microseconds. The last bucket holds everything above about 18 minutes.
+     */
+    private static final int BUCKETS = 32;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder totalLatencyMicros = new LongAdder();
+    private final LongAccumulator maxLatencyMicros = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] latencyBuckets = new LongAdder[BUCKETS];
+
+    public OperationMetrics() {
+        for (int i = 0; i < BUCKETS; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a completed operation.
+     *
+     * @param latencyNanos the time taken by the operation, in nanoseconds
+     * @param success      whether the operation succeeded
+     */
+    public void record(long latencyNanos, boolean success) {
+        final long latencyMicros = Math.max(0, latencyNanos / 1000);
+        count.increment();
+        if (!success) {
+            errors.increment();
+        }
+        totalLatencyMicros.add(latencyMicros);
+        maxLatencyMicros.accumulate(latencyMicros);
+        latencyBuckets[bucketFor(latencyMicros)].increment();
+    }
+
+    /**
+     * Record the outcome of a fetch.
+     *
+     * @param found    the number of sessions found
+     * @param notFound the number of sessions not found
+     */
+    public void recordLookup(int found, int notFound) {
+        if (found > 0) {
+            hits.add(found);
+        }
+        if (notFound > 0) {
+            misses.add(notFound);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getMeanLatencyMicros() {
+        final long total = count.sum();
+        return (0 == total ? 0 : totalLatencyMicros.sum() / total);
+    }
+
+    @Override
+    public long getLatency50thPercentileMicros() {
+        return getLatencyPercentileMicros(50);
+    }
+
+    @Override
+    public long getLatency99thPercentileMicros() {
+        return getLatencyPercentileMicros(99);
+    }
+
+    @Override
+    public long getMaxLatencyMicros() {
+        return maxLatencyMicros.get();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the histogram bucket holding the percentile, in microseconds, capped at the
+     * highest recorded latency
+     */
+    public long getLatencyPercentileMicros(double percentile) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = latencyBuckets[i].sum();
+            total += snapshot[i];
+        }
+        if (0 == total) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return Math.min((1L << i) - 1, getMaxLatencyMicros());
+            }
+        }
+        return getMaxLatencyMicros();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        errors.reset();
+        hits.reset();
+        misses.reset();
+        totalLatencyMicros.reset();
+        maxLatencyMicros.reset();
+        for (LongAdder bucket : latencyBuckets) {
+            bucket.reset();
+        }
+    }
+
+    private static int bucketFor(long latencyMicros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latencyMicros));
+    }
+}
@@ -0,0 +1,53 @@
+package io.apiman.plugins.session.store.metrics;
+
+/**
+ * Exposes the metrics for a session store operation through JMX.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface OperationMetricsMXBean {
+    /**
+     * @return the number of completed operations
+     */
+    long getCount();
+
+    /**
+     * @return the number of operations that failed
+     */
+    long getErrors();
+
+    /**
+     * @return the number of sessions found by fetch operations
+     */
+    long getHits();
+
+    /**
+     * @return the number of sessions not found by fetch operations
+     */
+    long getMisses();
+
+    /**
+     * @return the mean latency, in microseconds
+     */
+    long getMeanLatencyMicros();
+
+    /**
+     * @return the median latency, in microseconds, to within a factor of two
+     */
+    long getLatency50thPercentileMicros();
+
+    /**
+     * @return the 99th percentile latency, in microseconds, to within a factor of two
+     */
+    long getLatency99thPercentileMicros();
+
+    /**
+     * @return the highest latency, in microseconds
+     */
+    long getMaxLatencyMicros();
+
+    /**
+     * Reset all counters to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,119 @@
+package io.apiman.plugins.session.store.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Records the work done by a session reaper.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ReaperMetrics implements ReaperMetricsMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReaperMetrics.class);
+
+    private final LongSupplier indexedSessions;
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder reclaimed = new LongAdder();
+    private final LongAdder rescheduled = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param indexedSessions supplies the current size of the expiry index
+     */
+    public ReaperMetrics(LongSupplier indexedSessions) {
+        this.indexedSessions = indexedSessions;
+    }
+
+    public void recordScanned() {
+        scanned.increment();
+    }
+
+    public void recordReclaimed() {
+        reclaimed.increment();
+    }
+
+    public void recordRescheduled() {
+        rescheduled.increment();
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    @Override
+    public long getIndexedSessions() {
+        return indexedSessions.getAsLong();
+    }
+
+    @Override
+    public long getScannedSessions() {
+        return scanned.sum();
+    }
+
+    @Override
+    public long getReclaimedSessions() {
+        return reclaimed.sum();
+    }
+
+    @Override
+    public long getRescheduledSessions() {
+        return rescheduled.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Register an MBean with the platform MBean server, under
+     * <code>io.apiman.plugins.session:type=SessionReaper,store=&lt;storeName&gt;</code>.
+     * Failure to register is logged, as metrics remain available from this object.
+     *
+     * @param storeName distinguishes this store from those of other policies
+     */
+    public void registerMBean(String storeName) {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName objectName = buildObjectName(storeName);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register session reaper metrics for store: " + storeName, e);
+        }
+    }
+
+    /**
+     * Unregister the MBean registered by {@link #registerMBean(String)}.
+     *
+     * @param storeName the name with which the MBean was registered
+     */
+    public void unregisterMBean(String storeName) {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName objectName = buildObjectName(storeName);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister session reaper metrics for store: " + storeName, e);
+        }
+    }
+
+    private static ObjectName buildObjectName(String storeName) throws MalformedObjectNameException {
+        return new ObjectName(String.format("%s:type=SessionReaper,store=%s",
+                SessionStoreMetrics.JMX_DOMAIN, ObjectName.quote(storeName)));
+    }
+}
@@ -0,0 +1,33 @@
+package io.apiman.plugins.session.store.metrics;
+
+/**
+ * Exposes the metrics for a session reaper through JMX.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface ReaperMetricsMXBean {
+    /**
+     * @return the number of sessions in the expiry index
+     */
+    long getIndexedSessions();
+
+    /**
+     * @return the number of sessions examined after their deadline passed
+     */
+    long getScannedSessions();
+
+    /**
+     * @return the number of expired sessions deleted
+     */
+    long getReclaimedSessions();
+
+    /**
+     * @return the number of examined sessions that had been extended, and were indexed again
+     */
+    long getRescheduledSessions();
+
+    /**
+     * @return the number of sessions that could not be examined or deleted
+     */
+    long getErrors();
+}
@@ -0,0 +1,102 @@
+package io.apiman.plugins.session.store.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds the {@link OperationMetrics} for each {@link SessionStoreOperation} of a session store.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionStoreMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionStoreMetrics.class);
+
+    /**
+     * The JMX domain under which metrics are registered.
+     */
+    public static final String JMX_DOMAIN = "io.apiman.plugins.session";
+
+    private final Map<SessionStoreOperation, OperationMetrics> operations;
+
+    public SessionStoreMetrics() {
+        final Map<SessionStoreOperation, OperationMetrics> metrics = new EnumMap<>(SessionStoreOperation.class);
+        for (SessionStoreOperation operation : SessionStoreOperation.values()) {
+            metrics.put(operation, new OperationMetrics());
+        }
+        this.operations = Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * @param operation the session store operation
+     * @return the metrics for the operation
+     */
+    public OperationMetrics getOperation(SessionStoreOperation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * @return the metrics for every operation
+     */
+    public Map<SessionStoreOperation, OperationMetrics> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Register an MBean for each operation with the platform MBean server, under
+     * <code>io.apiman.plugins.session:type=SessionStore,store=&lt;storeName&gt;,operation=&lt;operation&gt;</code>.
+     * Failure to register is logged, as metrics remain available through {@link #getOperation(SessionStoreOperation)}.
+     *
+     * @param storeName distinguishes this store from those of other policies, which are loaded separately
+     */
+    public void registerMBeans(String storeName) {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        operations.forEach((operation, metrics) -> {
+            try {
+                final ObjectName objectName = buildObjectName(storeName, operation);
+                if (mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.unregisterMBean(objectName);
+                }
+                mBeanServer.registerMBean(metrics, objectName);
+
+            } catch (JMException e) {
+                LOGGER.warn("Unable to register session store metrics for operation: " + operation, e);
+            }
+        });
+    }
+
+    /**
+     * Unregister the MBeans registered by {@link #registerMBeans(String)}.
+     *
+     * @param storeName the name with which the MBeans were registered
+     */
+    public void unregisterMBeans(String storeName) {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (SessionStoreOperation operation : operations.keySet()) {
+            try {
+                final ObjectName objectName = buildObjectName(storeName, operation);
+                if (mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.unregisterMBean(objectName);
+                }
+
+            } catch (JMException e) {
+                LOGGER.warn("Unable to unregister session store metrics for operation: " + operation, e);
+            }
+        }
+    }
+
+    private static ObjectName buildObjectName(String storeName, SessionStoreOperation operation)
+            throws MalformedObjectNameException {
+
+        return new ObjectName(String.format("%s:type=SessionStore,store=%s,operation=%s",
+                JMX_DOMAIN, ObjectName.quote(storeName), operation.getOperationName()));
+    }
+}
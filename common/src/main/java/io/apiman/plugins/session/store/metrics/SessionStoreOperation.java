@@ -0,0 +1,29 @@
+package io.apiman.plugins.session.store.metrics;
+
+/**
+ * The session store operations for which metrics are recorded.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public enum SessionStoreOperation {
+    STORE("store"),
+    FETCH("fetch"),
+    DELETE("delete"),
+    TOUCH("touch"),
+    STORE_BATCH("storeBatch"),
+    FETCH_BATCH("fetchBatch"),
+    DELETE_BATCH("deleteBatch");
+
+    private final String operationName;
+
+    SessionStoreOperation(String operationName) {
+        this.operationName = operationName;
+    }
+
+    /**
+     * @return the name of the operation, as used in JMX object names
+     */
+    public String getOperationName() {
+        return operationName;
+    }
+}
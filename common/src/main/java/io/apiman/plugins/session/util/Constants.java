@@ -7,8 +7,8 @@ package io.apiman.plugins.session.util;
  */
 public final class Constants {
     /**
-     * 12 hours in milliseconds.
-     * TODO: make configurable
+     * The default maximum lifetime of a session: 12 hours in milliseconds.
+     * Set the System property {@link SessionUtil#MAX_SESSION_TTL} to override this.
      */
     public static final long MAX_SESSION_TTL = 43200000;
 
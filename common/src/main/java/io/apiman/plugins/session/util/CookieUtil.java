@@ -2,8 +2,15 @@ package io.apiman.plugins.session.util;
 
 import io.apiman.gateway.engine.beans.ApiRequest;
 import io.apiman.gateway.engine.beans.ApiResponse;
+import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.plugins.session.model.Cookie;
-import org.apache.commons.lang.StringUtils;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Utility methods for handling cookies.
@@ -11,11 +18,16 @@ import org.apache.commons.lang.StringUtils;
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class CookieUtil {
-    private static final String COOKIE_PATH = "Path";
-    private static final String COOKIE_MAX_AGE = "Max-Age";
-    private static final String COOKIE_DOMAIN = "Domain";
-    private static final String COOKIE_SECURE = "Secure";
-    private static final String COOKIE_HTTP_ONLY = "HttpOnly";
+    static final String COOKIE_PATH = "Path";
+    static final String COOKIE_MAX_AGE = "Max-Age";
+    static final String COOKIE_DOMAIN = "Domain";
+    static final String COOKIE_SECURE = "Secure";
+    static final String COOKIE_HTTP_ONLY = "HttpOnly";
+
+    /**
+     * The policy context attribute holding the parsed request cookies.
+     */
+    public static final String ATTRIBUTE_REQUEST_COOKIES = "io.apiman.plugins.session.requestCookies";
 
     /**
      * Adds the given Cookie to the response.
@@ -28,78 +40,207 @@ public class CookieUtil {
     }
 
     /**
-     * Add the 'Set-Cookie' header with the value of the given Cookie.
+     * Add a 'Set-Cookie' header with the value of the given Cookie, keeping any other 'Set-Cookie' headers.
+     * Policies that set the same cookie on every response should compile a {@link SetCookieTemplate} once instead.
      *
      * @param response the service response
      * @param cookie   the cookie to set
      */
     private static void setResponseCookie(ApiResponse response, Cookie cookie) {
-        final StringBuilder sb = new StringBuilder();
-
-        // name and value
-        sb.append(cookie.getName()).append("=").append(cookie.getValue()).append(";");
+        new SetCookieTemplate(cookie).addTo(response, cookie.getValue());
+    }
 
-        // optional
-        if (StringUtils.isNotBlank(cookie.getPath())) {
-            sb.append(" ").append(COOKIE_PATH).append("=").append(cookie.getPath()).append(";");
-        }
-        if (null != cookie.getMaxAge()) {
-            sb.append(" ").append(COOKIE_MAX_AGE).append("=").append(cookie.getMaxAge()).append(";");
-        }
-        if (null != cookie.getDomain()) {
-            sb.append(" ").append(COOKIE_DOMAIN).append("=").append(cookie.getDomain()).append(";");
-        }
-        if (null != cookie.getSecure()) {
-            sb.append(" ").append(COOKIE_SECURE).append(";");
-        }
-        if (null != cookie.getHttpOnly()) {
-            sb.append(" ").append(COOKIE_HTTP_ONLY).append(";");
-        }
+    /**
+     * Build the constant 'Set-Cookie' header value that instructs the browser to remove the cookie with the given
+     * name and path.
+     *
+     * @param cookieName the name of the cookie to remove
+     * @param cookiePath the path of the cookie to remove, or <code>null</code>
+     * @return the header value
+     */
+    public static String buildRemovalHeader(String cookieName, String cookiePath) {
+        final Cookie cookie = new Cookie(cookieName, "");
+        cookie.setPath(cookiePath);
 
-        response.getHeaders().put(Constants.HEADER_SET_COOKIE, sb.toString());
+        /*
+         * A zero value causes the cookie to be deleted by the browser.
+         * Note: Max-Age is supported on most browsers except IE <= 8.
+         * In unsupported browsers, the cookie will behave like a session cookie.
+         */
+        cookie.setMaxAge(0);
+        return new SetCookieTemplate(cookie).format("");
     }
 
     /**
-     * Parse the 'Cookie' request header to extract the value of a cookie with the given name.
+     * Parse the 'Cookie' request headers to extract the value of a cookie with the given name. If the cookie is sent
+     * more than once, the first is returned, taking the headers in the order they were added.
+     * Names are matched ignoring case.
      *
      * @param request    the service request
      * @param cookieName the name of the cookie to extract
      * @return a Cookie containing the value of the named cookie, or <code>null</code> if not found
      */
     public static Cookie getCookie(ApiRequest request, String cookieName) {
-        final String headerValue = request.getHeaders().get(Constants.HEADER_COOKIE);
-        if (StringUtils.isNotBlank(headerValue)) {
-
-            for (String keyValuePair : headerValue.split(";")) {
-                final String[] cookie = keyValuePair.split("=");
-                if (2 == cookie.length) {
-                    // build a Cookie with the given name and value
-                    final String trimmedCookieName = cookie[0].trim();
-                    if (cookieName.equalsIgnoreCase(trimmedCookieName)) {
-                        return new Cookie(trimmedCookieName, cookie[1].trim());
-                    }
+        // the header map returns the most recently added value first
+        final List<String> headerValues = request.getHeaders().getAll(Constants.HEADER_COOKIE);
+        for (ListIterator<String> iterator = headerValues.listIterator(headerValues.size()); iterator.hasPrevious(); ) {
+            final String headerValue = iterator.previous();
+            if (null != headerValue) {
+                final Map.Entry<String, String> cookie = scanCookies(headerValue, cookieName, null);
+                if (null != cookie) {
+                    return new Cookie(cookie.getKey(), cookie.getValue());
                 }
             }
+        }
+        return null;
+    }
+
+    /**
+     * As {@link #getCookie(ApiRequest, String)}, but the request cookies are parsed at most once per request, then
+     * shared with every other policy in the chain through the context attribute {@link #ATTRIBUTE_REQUEST_COOKIES}.
+     * Changes made to the 'Cookie' header after the cookies have been parsed are not seen.
+     *
+     * @param context    the policy context
+     * @param request    the service request
+     * @param cookieName the name of the cookie to extract
+     * @return a Cookie containing the value of the named cookie, or <code>null</code> if not found
+     */
+    public static Cookie getCookie(IPolicyContext context, ApiRequest request, String cookieName) {
+        final Map.Entry<String, String> cookie = getRequestCookies(context, request).get(cookieName);
+        return (null != cookie ? new Cookie(cookie.getKey(), cookie.getValue()) : null);
+    }
 
+    /**
+     * Get the request cookies from the context, parsing them if this is the first time they are needed. As each
+     * policy is loaded separately, the cookies are held using only JDK types.
+     *
+     * @return an immutable map of cookie names and values, keyed by name ignoring case
+     */
+    private static Map<String, Map.Entry<String, String>> getRequestCookies(IPolicyContext context, ApiRequest request) {
+        Map<String, Map.Entry<String, String>> cookies = context.getAttribute(ATTRIBUTE_REQUEST_COOKIES, null);
+        if (null == cookies) {
+            final Map<String, Map.Entry<String, String>> parsed = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            final List<String> headerValues = request.getHeaders().getAll(Constants.HEADER_COOKIE);
+            for (ListIterator<String> iterator = headerValues.listIterator(headerValues.size()); iterator.hasPrevious(); ) {
+                final String headerValue = iterator.previous();
+                if (null != headerValue) {
+                    scanCookies(headerValue, null, parsed);
+                }
+            }
+            cookies = Collections.unmodifiableMap(parsed);
+            context.setAttribute(ATTRIBUTE_REQUEST_COOKIES, cookies);
+        }
+        return cookies;
+    }
+
+    /**
+     * Scan a 'Cookie' header value, in the form <code>name1=value1; name2=value2</code>, for the named cookie.
+     *
+     * @param headerValue the header value
+     * @param cookieName  the name of the cookie to find
+     * @return the cookie, or <code>null</code> if not found
+     */
+    static Cookie findCookie(String headerValue, String cookieName) {
+        final Map.Entry<String, String> cookie = scanCookies(headerValue, cookieName, null);
+        return (null != cookie ? new Cookie(cookie.getKey(), cookie.getValue()) : null);
+    }
+
+    /**
+     * Scan a 'Cookie' header value in place, copying only the names and values that are needed. Values may contain
+     * '=', and surrounding double quotes are removed, as per RFC 6265. Pairs without an '=' are ignored.
+     *
+     * @param headerValue the header value
+     * @param cookieName  the name of the cookie to find, or <code>null</code> to collect every cookie
+     * @param collector   receives every cookie not already present, if no name is given
+     * @return the named cookie, or <code>null</code> if not found or no name is given
+     */
+    private static Map.Entry<String, String> scanCookies(String headerValue, String cookieName,
+                                                         Map<String, Map.Entry<String, String>> collector) {
+        final int length = headerValue.length();
+        int index = 0;
+
+        while (index < length) {
+            // skip the separator and leading whitespace
+            while (index < length && isSeparatorOrWhitespace(headerValue.charAt(index))) {
+                index++;
+            }
+
+            final int nameStart = index;
+            while (index < length && '=' != headerValue.charAt(index) && ';' != headerValue.charAt(index)) {
+                index++;
+            }
+            if (index >= length || ';' == headerValue.charAt(index)) {
+                continue;
+            }
+            final int nameEnd = trimEnd(headerValue, nameStart, index);
+
+            // skip the '='
+            index++;
+            final int valueStart = index;
+            while (index < length && ';' != headerValue.charAt(index)) {
+                index++;
+            }
+
+            final int nameLength = nameEnd - nameStart;
+            if (0 == nameLength) {
+                continue;
+            }
+            if (null == cookieName) {
+                final String name = headerValue.substring(nameStart, nameEnd);
+                if (!collector.containsKey(name)) {
+                    collector.put(name, new AbstractMap.SimpleImmutableEntry<>(name, unquote(headerValue,
+                            trimStart(headerValue, valueStart, index), trimEnd(headerValue, valueStart, index))));
+                }
+
+            } else if (nameLength == cookieName.length() &&
+                    headerValue.regionMatches(true, nameStart, cookieName, 0, nameLength)) {
+
+                return new AbstractMap.SimpleImmutableEntry<>(headerValue.substring(nameStart, nameEnd), unquote(
+                        headerValue, trimStart(headerValue, valueStart, index), trimEnd(headerValue, valueStart, index)));
+            }
         }
         return null;
     }
 
+    private static boolean isSeparatorOrWhitespace(char c) {
+        return ';' == c || ' ' == c || '\t' == c;
+    }
+
+    private static int trimStart(String value, int start, int end) {
+        while (start < end && (' ' == value.charAt(start) || '\t' == value.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String value, int start, int end) {
+        while (end > start && (' ' == value.charAt(end - 1) || '\t' == value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * @return the value between the given indices, without surrounding double quotes
+     */
+    private static String unquote(String value, int start, int end) {
+        if (end - start >= 2 && '"' == value.charAt(start) && '"' == value.charAt(end - 1)) {
+            return value.substring(start + 1, end - 1);
+        }
+        return value.substring(start, end);
+    }
+
     /**
      * Removes the cookie with the given name.
      *
-     * @param response the service response]
+     * @param response the service response
      * @param cookie   the cookie to remove
      */
     public static void removeCookie(ApiResponse response, Cookie cookie) {
         // belt and braces
         cookie.setValue("");
 
-        /*
-         * A zero value causes the cookie to be deleted by the browser.
-         * Note: Max-Age is supported on most browsers except IE <= 8.
-         * In unsupported browsers, the cookie will behave like a session cookie.
-         */
+        // a zero value causes the cookie to be deleted by the browser - see buildRemovalHeader(String, String)
         cookie.setMaxAge(0);
         setResponseCookie(response, cookie);
     }
@@ -0,0 +1,204 @@
+package io.apiman.plugins.session.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A bounded, node-local cache whose entries are discarded once they are older than a maximum age.
+ * <p>
+ * Eviction is approximate LRU: when the cache grows beyond its maximum size, a small sample of entries is
+ * inspected and the least recently accessed one is removed. Samples are taken by a cursor that moves around the
+ * entries from a random starting point, so every entry is a candidate for eviction. This avoids a global
+ * lock on the read path.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class LocalCache<K, V> {
+    /**
+     * The number of entries inspected for each eviction.
+     */
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    private final Map<K, CacheEntry<V>> entries = new ConcurrentHashMap<>();
+    private final long maxAgeMillis;
+    private final int maxSize;
+
+    /**
+     * The position of the eviction sampling, guarded by the cache's monitor.
+     */
+    private Iterator<Map.Entry<K, CacheEntry<V>>> evictionCursor;
+
+    /**
+     * @param maxAgeMillis the maximum age of an entry in milliseconds
+     * @param maxSize      the maximum number of entries held
+     */
+    public LocalCache(long maxAgeMillis, int maxSize) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param key the key of the entry
+     * @return the cached value, or {@code null} if absent or older than the maximum age
+     */
+    public V get(K key) {
+        final CacheEntry<V> entry = entries.get(key);
+        if (null == entry) {
+            return null;
+        }
+
+        final long nowMillis = TimeUtil.getNowInMillis();
+        if (isStale(entry, nowMillis)) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        entry.lastAccess = nowMillis;
+        return entry.value;
+    }
+
+    /**
+     * Cache the value, replacing any existing entry.
+     *
+     * @param key   the key of the entry
+     * @param value the value to cache
+     */
+    public void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, TimeUtil.getNowInMillis()));
+        evictIfNecessary();
+    }
+
+    /**
+     * Cache the value, unless a fresh entry already exists for the key.
+     *
+     * @param key   the key of the entry
+     * @param value the value to cache
+     */
+    public void putIfAbsent(K key, V value) {
+        final CacheEntry<V> newEntry = new CacheEntry<>(value, TimeUtil.getNowInMillis());
+        final CacheEntry<V> existing = entries.putIfAbsent(key, newEntry);
+        if (null != existing && isStale(existing, newEntry.cachedAt)) {
+            entries.replace(key, existing, newEntry);
+        }
+        evictIfNecessary();
+    }
+
+    /**
+     * Replace the value cached for the key, only if it is still the expected value. The entry keeps its original
+     * age.
+     *
+     * @param key           the key of the entry
+     * @param expectedValue the value expected to be cached
+     * @param newValue      the value to cache
+     * @return {@code true} if the value was replaced
+     */
+    public boolean replace(K key, V expectedValue, V newValue) {
+        final CacheEntry<V> entry = entries.get(key);
+        if (null == entry || entry.value != expectedValue) {
+            return false;
+        }
+
+        final CacheEntry<V> newEntry = new CacheEntry<>(newValue, entry.cachedAt);
+        newEntry.lastAccess = entry.lastAccess;
+        return entries.replace(key, entry, newEntry);
+    }
+
+    /**
+     * @param key the key of the entry to discard
+     */
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Discard all entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of entries, including any that are stale but not yet discarded
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean isStale(CacheEntry<V> entry, long nowMillis) {
+        return (nowMillis - entry.cachedAt) >= maxAgeMillis;
+    }
+
+    /**
+     * Remove entries until the cache is within its maximum size, preferring stale entries, then the least recently
+     * accessed entry from a small sample.
+     */
+    private void evictIfNecessary() {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+
+        synchronized (this) {
+            while (entries.size() > maxSize) {
+                final long nowMillis = TimeUtil.getNowInMillis();
+
+                Map.Entry<K, CacheEntry<V>> candidate = null;
+                for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+                    final Map.Entry<K, CacheEntry<V>> sample = nextEvictionSample();
+                    if (null == sample) {
+                        break;
+                    }
+                    if (isStale(sample.getValue(), nowMillis)) {
+                        candidate = sample;
+                        break;
+                    }
+                    if (null == candidate || sample.getValue().lastAccess < candidate.getValue().lastAccess) {
+                        candidate = sample;
+                    }
+                }
+
+                if (null == candidate) {
+                    return;
+                }
+                entries.remove(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    /**
+     * Must be called holding the cache's monitor.
+     *
+     * @return the next entry to sample for eviction, or {@code null} if the cache is empty
+     */
+    private Map.Entry<K, CacheEntry<V>> nextEvictionSample() {
+        if (null == evictionCursor) {
+            // start at a random point, so the same entries are not always sampled first
+            evictionCursor = entries.entrySet().iterator();
+            final int skip = ThreadLocalRandom.current().nextInt(Math.max(1, entries.size()));
+            for (int i = 0; i < skip && evictionCursor.hasNext(); i++) {
+                evictionCursor.next();
+            }
+        }
+        if (!evictionCursor.hasNext()) {
+            // wrap around to the first entry
+            evictionCursor = entries.entrySet().iterator();
+        }
+        return (evictionCursor.hasNext() ? evictionCursor.next() : null);
+    }
+
+    /**
+     * Holds a cached value and its timestamps.
+     */
+    private static class CacheEntry<V> {
+        final V value;
+        final long cachedAt;
+        volatile long lastAccess;
+
+        private CacheEntry(V value, long cachedAt) {
+            this.value = value;
+            this.cachedAt = cachedAt;
+            this.lastAccess = cachedAt;
+        }
+    }
+}
@@ -17,19 +17,29 @@ package io.apiman.plugins.session.util;
 
 import org.apache.commons.lang.StringUtils;
 
-import java.util.MissingResourceException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 /**
  * Formats messages from a ResourceBundle.
+ * <p>
+ * The messages are read from the bundle once, when this class is created. Messages that only use <code>%s</code>
+ * placeholders are split into their literal parts, so they are formatted by concatenation rather than being parsed
+ * by {@link String#format(String, Object...)} each time. As formatting still allocates, callers on hot paths should
+ * only format a message once they know it will be logged.
  *
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class Messages {
     private static final String DEFAULT_BUNDLE_NAME = "messages";
 
-    private final ResourceBundle resourceBundle;
-    private final String messagePrefix;
+    private static final String PLACEHOLDER = "%s";
+
+    private final Map<String, CompiledFormat> formats = new HashMap<>();
 
     /**
      * Creates a new {@link Messages} using the package name of the class as the path and the simple name of the
@@ -39,8 +49,15 @@ public class Messages {
      * @param messagePrefix the message prefix (can be {@code null})
      */
     public Messages(String packageName, String messagePrefix) {
-        this.messagePrefix = (StringUtils.isNotBlank(messagePrefix) ? messagePrefix + "." : "");
-        this.resourceBundle = ResourceBundle.getBundle(packageName + "." + DEFAULT_BUNDLE_NAME);
+        final String prefix = (StringUtils.isNotBlank(messagePrefix) ? messagePrefix + "." : "");
+        final ResourceBundle resourceBundle = ResourceBundle.getBundle(packageName + "." + DEFAULT_BUNDLE_NAME);
+
+        for (Enumeration<String> keys = resourceBundle.getKeys(); keys.hasMoreElements(); ) {
+            final String key = keys.nextElement();
+            if (key.startsWith(prefix)) {
+                formats.put(key.substring(prefix.length()), new CompiledFormat(resourceBundle.getString(key)));
+            }
+        }
     }
 
     /**
@@ -51,11 +68,8 @@ public class Messages {
      * @return the formatted String
      */
     public String format(String key, Object... params) {
-        try {
-            return String.format(resourceBundle.getString(messagePrefix + key), params);
-        } catch (MissingResourceException e) {
-            return '!' + key + '!';
-        }
+        final CompiledFormat format = formats.get(key);
+        return (null != format ? format.format(params) : '!' + key + '!');
     }
 
     /**
@@ -77,4 +91,55 @@ public class Messages {
 
         return sb.toString();
     }
+
+    /**
+     * A message format, split into the literal parts between its placeholders if it uses only <code>%s</code>.
+     */
+    private static class CompiledFormat {
+        private final String pattern;
+
+        /**
+         * The literal parts, or <code>null</code> if the pattern must be formatted by {@link String#format}.
+         */
+        private final String[] parts;
+
+        private CompiledFormat(String pattern) {
+            this.pattern = pattern;
+            this.parts = split(pattern);
+        }
+
+        private static String[] split(String pattern) {
+            final List<String> parts = new ArrayList<>();
+            int start = 0;
+            int index;
+            while ((index = pattern.indexOf('%', start)) >= 0) {
+                if (!pattern.startsWith(PLACEHOLDER, index)) {
+                    // any other conversion, flag or escape
+                    return null;
+                }
+                parts.add(pattern.substring(start, index));
+                start = index + PLACEHOLDER.length();
+            }
+            parts.add(pattern.substring(start));
+            return parts.toArray(new String[parts.size()]);
+        }
+
+        private String format(Object... params) {
+            final int placeholders = (null != parts ? parts.length - 1 : -1);
+            if (placeholders < 0 || (null != params ? params.length : 0) < placeholders) {
+                // let String.format handle anything unusual, including missing arguments
+                return String.format(pattern, params);
+            }
+            if (0 == placeholders) {
+                return parts[0];
+            }
+
+            final StringBuilder sb = new StringBuilder(pattern.length() + 16 * placeholders);
+            sb.append(parts[0]);
+            for (int i = 0; i < placeholders; i++) {
+                sb.append(params[i]).append(parts[i + 1]);
+            }
+            return sb.toString();
+        }
+    }
 }
@@ -0,0 +1,250 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.plugins.session.model.Session;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact, versioned binary encoding for {@link Session}s, avoiding the overhead of Java serialization.
+ * <p>
+ * Layout (version 1):
+ * <pre>
+ * version        : 1 byte
+ * flags          : 1 byte  (bit 0: current, bit 1: session ID present, bit 2: principal present)
+ * sessionId      : varint length + UTF-8 bytes (if present)
+ * principal      : varint length + UTF-8 bytes (if present)
+ * starts         : zigzag varint
+ * expires        : zigzag varint, relative to starts
+ * validityPeriod : zigzag varint
+ * absoluteExpiry : zigzag varint, relative to starts
+ * </pre>
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public final class SessionCodec {
+    /**
+     * Set this System property to {@code true} to have session stores write sessions in the binary encoding.
+     * Stores read both the binary encoding and serialized {@link Session}s regardless of this setting.
+     */
+    public static final String BINARY_CODEC_ENABLED = "io.apiman.plugins.session.ISessionStore.binaryCodec";
+
+    static final byte VERSION_1 = 1;
+
+    private static final int FLAG_CURRENT = 1;
+    private static final int FLAG_SESSION_ID = 1 << 1;
+    private static final int FLAG_PRINCIPAL = 1 << 2;
+
+    private SessionCodec() {
+    }
+
+    /**
+     * @return {@code true} if session stores should write sessions in the binary encoding
+     */
+    public static boolean isBinaryCodecEnabled() {
+        return Boolean.getBoolean(BINARY_CODEC_ENABLED);
+    }
+
+    /**
+     * Encode the Session.
+     *
+     * @param session the Session to encode
+     * @return the encoded Session
+     */
+    public static byte[] encode(Session session) {
+        final byte[] sessionId = toBytes(session.getSessionId());
+        final byte[] principal = toBytes(session.getAuthenticatedPrincipal());
+
+        final long starts = session.getStarts();
+        final long expires = zigzag(session.getExpires() - starts);
+        final long validityPeriod = zigzag(session.getValidityPeriod());
+        final long absoluteExpiry = zigzag(session.getAbsoluteExpiry() - starts);
+
+        int flags = 0;
+        int size = 2;
+        if (session.isCurrent()) {
+            flags |= FLAG_CURRENT;
+        }
+        if (null != sessionId) {
+            flags |= FLAG_SESSION_ID;
+            size += varintSize(sessionId.length) + sessionId.length;
+        }
+        if (null != principal) {
+            flags |= FLAG_PRINCIPAL;
+            size += varintSize(principal.length) + principal.length;
+        }
+        size += varintSize(zigzag(starts)) + varintSize(expires) + varintSize(validityPeriod) + varintSize(absoluteExpiry);
+
+        final Writer writer = new Writer(size);
+        writer.writeByte(VERSION_1);
+        writer.writeByte(flags);
+        if (null != sessionId) {
+            writer.writeBytes(sessionId);
+        }
+        if (null != principal) {
+            writer.writeBytes(principal);
+        }
+        writer.writeVarint(zigzag(starts));
+        writer.writeVarint(expires);
+        writer.writeVarint(validityPeriod);
+        writer.writeVarint(absoluteExpiry);
+        return writer.buffer;
+    }
+
+    /**
+     * Decode a Session.
+     *
+     * @param encoded the encoded Session
+     * @return the decoded Session
+     * @throws IllegalArgumentException if the data is not a supported encoding of a Session
+     */
+    public static Session decode(byte[] encoded) {
+        final Reader reader = new Reader(encoded);
+        final int version = reader.readByte();
+        if (VERSION_1 != version) {
+            throw new IllegalArgumentException("Unsupported session encoding version: " + version);
+        }
+
+        final int flags = reader.readByte();
+        final Session session = new Session();
+        session.setCurrent((flags & FLAG_CURRENT) != 0);
+        if ((flags & FLAG_SESSION_ID) != 0) {
+            session.setSessionId(reader.readString());
+        }
+        if ((flags & FLAG_PRINCIPAL) != 0) {
+            session.setAuthenticatedPrincipal(reader.readString());
+        }
+
+        final long starts = unzigzag(reader.readVarint());
+        session.setStarts(starts);
+        session.setExpires(starts + unzigzag(reader.readVarint()));
+        session.setValidityPeriod(unzigzag(reader.readVarint()));
+        session.setAbsoluteExpiry(starts + unzigzag(reader.readVarint()));
+        return session;
+    }
+
+    /**
+     * Convert a Session into the form in which it should be held by a session store.
+     *
+     * @param session the Session to store
+     * @param binary  whether to use the binary encoding
+     * @return the value to store
+     */
+    public static Object toStoredValue(Session session, boolean binary) {
+        return binary ? encode(session) : session;
+    }
+
+    /**
+     * Convert a value held by a session store back into a Session, accepting either the binary encoding
+     * or a serialized Session.
+     *
+     * @param storedValue the value held by the store (can be {@code null})
+     * @return the Session, or {@code null} if the value was {@code null}
+     * @throws IllegalArgumentException if the value is not a Session in a supported form
+     */
+    public static Session fromStoredValue(Object storedValue) {
+        if (null == storedValue || storedValue instanceof Session) {
+            return (Session) storedValue;
+        } else if (storedValue instanceof byte[]) {
+            return decode((byte[]) storedValue);
+        } else {
+            throw new IllegalArgumentException("Unsupported stored session type: " + storedValue.getClass());
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return (null == value ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes into a buffer of known size.
+     */
+    private static class Writer {
+        final byte[] buffer;
+        int position;
+
+        private Writer(int size) {
+            buffer = new byte[size];
+        }
+
+        void writeByte(int value) {
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    /**
+     * Reads from an encoded buffer.
+     */
+    private static class Reader {
+        final byte[] buffer;
+        int position;
+
+        private Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            checkAvailable(1);
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in encoded session");
+        }
+
+        String readString() {
+            final long length = readVarint();
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Malformed string length in encoded session");
+            }
+            checkAvailable((int) length);
+            final String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+
+        private void checkAvailable(int length) {
+            if (length < 0 || length > buffer.length - position) {
+                throw new IllegalArgumentException("Truncated encoded session");
+            }
+        }
+    }
+}
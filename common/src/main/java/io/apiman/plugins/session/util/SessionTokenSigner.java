@@ -0,0 +1,125 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.plugins.session.model.SessionToken;
+import org.apache.commons.lang.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Signs and verifies {@link SessionToken}s, for session cookies that can be validated without the session store.
+ * <p>
+ * A signed cookie value has the form {@code payload.signature}, where both parts are URL-safe Base64 and the
+ * signature is an HMAC-SHA256 of the payload. Session IDs never contain a {@code '.'}, so signed values can be
+ * distinguished from plain session IDs.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionTokenSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char SEPARATOR = '.';
+    private static final char FIELD_SEPARATOR = '\n';
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * @param signingSecret the secret used to sign tokens
+     */
+    public SessionTokenSigner(String signingSecret) {
+        this.key = new SecretKeySpec(signingSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialise " + ALGORITHM, e);
+            }
+        });
+    }
+
+    /**
+     * @param cookieValue the value of a session cookie
+     * @return {@code true} if the value is a signed token, rather than a plain session ID
+     */
+    public static boolean isSigned(String cookieValue) {
+        return cookieValue.indexOf(SEPARATOR) >= 0;
+    }
+
+    /**
+     * Read the token without verifying its signature. Only use this where a forged token cannot grant access.
+     *
+     * @param cookieValue the signed cookie value
+     * @return the token, or {@code null} if the value is malformed
+     */
+    public static SessionToken parseUnverified(String cookieValue) {
+        final int separator = cookieValue.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        return decodePayload(cookieValue.substring(0, separator));
+    }
+
+    /**
+     * @param token the token to sign
+     * @return the signed cookie value
+     */
+    public String sign(SessionToken token) {
+        final String payload = ENCODER.encodeToString((token.getSessionId() + FIELD_SEPARATOR +
+                Long.toString(token.getIssuedAt(), Character.MAX_RADIX) + FIELD_SEPARATOR +
+                Long.toString(token.getExpires(), Character.MAX_RADIX) + FIELD_SEPARATOR +
+                StringUtils.defaultString(token.getAuthenticatedPrincipal())).getBytes(StandardCharsets.UTF_8));
+
+        return payload + SEPARATOR + ENCODER.encodeToString(computeSignature(payload));
+    }
+
+    /**
+     * @param cookieValue the signed cookie value
+     * @return the token, or {@code null} if the value is malformed or its signature is invalid
+     */
+    public SessionToken verify(String cookieValue) {
+        final int separator = cookieValue.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+
+        final String payload = cookieValue.substring(0, separator);
+        final byte[] signature;
+        try {
+            signature = DECODER.decode(cookieValue.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if (!MessageDigest.isEqual(computeSignature(payload), signature)) {
+            return null;
+        }
+        return decodePayload(payload);
+    }
+
+    private byte[] computeSignature(String payload) {
+        return mac.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static SessionToken decodePayload(String payload) {
+        try {
+            final String[] fields = new String(DECODER.decode(payload), StandardCharsets.UTF_8)
+                    .split(String.valueOf(FIELD_SEPARATOR), 4);
+            if (4 != fields.length || fields[0].isEmpty()) {
+                return null;
+            }
+            return new SessionToken(fields[0], fields[3],
+                    Long.parseLong(fields[1], Character.MAX_RADIX), Long.parseLong(fields[2], Character.MAX_RADIX));
+
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
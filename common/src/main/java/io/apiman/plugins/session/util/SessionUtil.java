@@ -1,5 +1,6 @@
 package io.apiman.plugins.session.util;
 
+import io.apiman.plugins.session.clock.ClockFactory;
 import io.apiman.plugins.session.model.Session;
 
 /**
@@ -8,6 +9,12 @@ import io.apiman.plugins.session.model.Session;
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class SessionUtil {
+    /**
+     * Set this System property to the maximum lifetime of a session, in milliseconds. Sessions are given an
+     * absolute expiry this far in the future, and are held by session stores for no longer than this.
+     */
+    public static final String MAX_SESSION_TTL = "io.apiman.plugins.session.ISessionStore.maxTtl";
+
     /**
      * Build a new Session for the specified principal, and the given ID and validity period.
      *
@@ -18,9 +25,9 @@ public class SessionUtil {
      */
     public static Session buildSession(String sessionId, String authenticatedPrincipal, int validityPeriod) {
         final long validityPeriodMillis = (1000 * validityPeriod);
-        final long nowMillis = TimeUtil.getNowInMillis();
+        final long nowMillis = ClockFactory.getClock().getNowInMillis();
         final long expiresMillis = (nowMillis + validityPeriodMillis);
-        final long absoluteExpiryMillis = (nowMillis + Constants.MAX_SESSION_TTL);
+        final long absoluteExpiryMillis = (nowMillis + getMaxTimeToLive());
 
         final Session session = new Session();
         session.setSessionId(sessionId);
@@ -33,4 +40,37 @@ public class SessionUtil {
 
         return session;
     }
+
+    /**
+     * @return the maximum lifetime of a session, in milliseconds
+     */
+    public static long getMaxTimeToLive() {
+        return Long.getLong(MAX_SESSION_TTL, Constants.MAX_SESSION_TTL);
+    }
+
+    /**
+     * Calculate how long a session store should hold a session.
+     *
+     * @param deadlineMillis      the time after which the session can no longer be used, or zero if it is not set
+     * @param nowMillis           the current time
+     * @param maxTimeToLiveMillis the maximum time to live
+     * @return the time to live in milliseconds, at least one and at most the maximum
+     */
+    public static long getTimeToLive(long deadlineMillis, long nowMillis, long maxTimeToLiveMillis) {
+        if (deadlineMillis <= 0) {
+            return maxTimeToLiveMillis;
+        }
+        return Math.max(1L, Math.min(deadlineMillis - nowMillis, maxTimeToLiveMillis));
+    }
+
+    /**
+     * @param session the session
+     * @return the time after which the session can no longer be used, ignoring any times that are not set
+     */
+    public static long getDeadline(Session session) {
+        if (session.getExpires() <= 0 || session.getAbsoluteExpiry() <= 0) {
+            return Math.max(session.getExpires(), session.getAbsoluteExpiry());
+        }
+        return Math.min(session.getExpires(), session.getAbsoluteExpiry());
+    }
 }
@@ -0,0 +1,69 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.gateway.engine.beans.ApiResponse;
+import io.apiman.plugins.session.model.Cookie;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A 'Set-Cookie' header compiled from the fixed properties of a cookie, such as its name, path and flags, so that
+ * only the value has to be spliced in for each response.
+ * <p>
+ * Templates are immutable, so they can be compiled once when the policy configuration is parsed and shared between
+ * requests.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SetCookieTemplate {
+    private final String prefix;
+    private final String suffix;
+
+    /**
+     * Compile a template from every property of the given cookie except its value.
+     *
+     * @param cookie the cookie whose name and properties are used
+     */
+    public SetCookieTemplate(Cookie cookie) {
+        this.prefix = cookie.getName() + "=";
+
+        final StringBuilder sb = new StringBuilder(";");
+        if (StringUtils.isNotBlank(cookie.getPath())) {
+            sb.append(" ").append(CookieUtil.COOKIE_PATH).append("=").append(cookie.getPath()).append(";");
+        }
+        if (null != cookie.getMaxAge()) {
+            sb.append(" ").append(CookieUtil.COOKIE_MAX_AGE).append("=").append(cookie.getMaxAge()).append(";");
+        }
+        if (null != cookie.getDomain()) {
+            sb.append(" ").append(CookieUtil.COOKIE_DOMAIN).append("=").append(cookie.getDomain()).append(";");
+        }
+        if (Boolean.TRUE.equals(cookie.getSecure())) {
+            sb.append(" ").append(CookieUtil.COOKIE_SECURE).append(";");
+        }
+        if (Boolean.TRUE.equals(cookie.getHttpOnly())) {
+            sb.append(" ").append(CookieUtil.COOKIE_HTTP_ONLY).append(";");
+        }
+        this.suffix = sb.toString();
+    }
+
+    /**
+     * @param value the cookie value
+     * @return the 'Set-Cookie' header value for the cookie with the given value
+     */
+    public String format(String value) {
+        if (null == value) {
+            value = "";
+        }
+        return new StringBuilder(prefix.length() + value.length() + suffix.length())
+                .append(prefix).append(value).append(suffix).toString();
+    }
+
+    /**
+     * Add a 'Set-Cookie' header for the cookie with the given value to the response. Any other 'Set-Cookie' headers
+     * already on the response are kept.
+     *
+     * @param response the service response
+     * @param value    the cookie value
+     */
+    public void addTo(ApiResponse response, String value) {
+        response.getHeaders().add(Constants.HEADER_SET_COOKIE, format(value));
+    }
+}
@@ -1,19 +1,18 @@
 package io.apiman.plugins.session.util;
 
-import java.util.GregorianCalendar;
-import java.util.Locale;
+import io.apiman.plugins.session.clock.ClockFactory;
 
 /**
- * Utility methods for handling times/dates.
+ * Utility methods for handling times/dates, reading the time from the {@link ClockFactory#getClock() clock}.
  *
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class TimeUtil {
     public static long getNowInMillis() {
-        return GregorianCalendar.getInstance(Locale.getDefault()).getTimeInMillis();
+        return ClockFactory.getClock().getNowInMillis();
     }
 
     public static boolean isAfterNow(long millis) {
-        return (millis > getNowInMillis());
+        return ClockFactory.getClock().isAfterNow(millis);
     }
 }
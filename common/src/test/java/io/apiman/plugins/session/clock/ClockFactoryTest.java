@@ -0,0 +1,139 @@
+package io.apiman.plugins.session.clock;
+
+import io.apiman.plugins.session.clock.impl.CoarseClock;
+import io.apiman.plugins.session.clock.impl.SystemClock;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ClockFactory}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ClockFactoryTest {
+    private static final String COARSE_CLOCK_TICK_MILLIS = "io.apiman.plugins.session.IClock.coarse.tickMillis";
+
+    @After
+    public void tearDown() {
+        ClockFactory.setClock(null);
+    }
+
+    /**
+     * Expects that the system clock is used by default, and that it is created once.
+     */
+    @Test
+    public void testDefaultClock() {
+        ClockFactory.setClock(null);
+        final IClock clock = ClockFactory.getClock();
+        assertTrue(clock instanceof SystemClock);
+        assertSame(clock, ClockFactory.getClock());
+
+        final long before = System.currentTimeMillis();
+        final long nowMillis = clock.getNowInMillis();
+        assertTrue(nowMillis >= before && nowMillis <= System.currentTimeMillis());
+    }
+
+    /**
+     * Expects that a replacement clock is used by {@link TimeUtil}, and that the previous clock is returned.
+     */
+    @Test
+    public void testSetClock() {
+        final IClock original = ClockFactory.getClock();
+        final IClock fixed = () -> 1000L;
+
+        assertSame(original, ClockFactory.setClock(fixed));
+        assertEquals(1000L, TimeUtil.getNowInMillis());
+        assertTrue(TimeUtil.isAfterNow(1001L));
+        assertFalse(TimeUtil.isAfterNow(1000L));
+
+        assertSame(fixed, ClockFactory.setClock(null));
+        assertNotSame(fixed, ClockFactory.getClock());
+    }
+
+    /**
+     * Expects that a replaced clock is closed if it is {@link AutoCloseable}, and that only the configured clock is
+     * closed by {@link ClockFactory#closeClock()}.
+     */
+    @Test
+    public void testReplacedClockClosed() {
+        final ClosableClock closable = new ClosableClock();
+        ClockFactory.setClock(closable);
+        assertNull(ClockFactory.setClock(() -> 1000L));
+        assertTrue(closable.closed);
+
+        ClockFactory.closeClock();
+        assertEquals(1000L, TimeUtil.getNowInMillis());
+
+        System.setProperty(COARSE_CLOCK_TICK_MILLIS, "1000");
+        try {
+            ClockFactory.setClock(null);
+            final IClock coarse = ClockFactory.getClock();
+            assertTrue(coarse instanceof CoarseClock);
+
+            ClockFactory.closeClock();
+            assertNotSame(coarse, ClockFactory.getClock());
+        } finally {
+            System.clearProperty(COARSE_CLOCK_TICK_MILLIS);
+        }
+    }
+
+    /**
+     * Expects that each coarse clock has its own ticker thread, which stops once the clock is closed.
+     */
+    @Test
+    public void testCoarseClockThreadStopped() throws Exception {
+        final long threadsBefore = countTickerThreads();
+        final CoarseClock first = new CoarseClock(1000);
+        final CoarseClock second = new CoarseClock(1000);
+        assertEquals(threadsBefore + 2, countTickerThreads());
+
+        first.close();
+        second.close();
+        for (int i = 0; i < 500 && countTickerThreads() > threadsBefore; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(threadsBefore, countTickerThreads());
+    }
+
+    private static long countTickerThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && "coarse-clock".equals(thread.getName()))
+                .count();
+    }
+
+    /**
+     * Expects that the coarse clock is updated by its ticker, and stops when closed.
+     */
+    @Test
+    public void testCoarseClock() throws Exception {
+        try (CoarseClock clock = new CoarseClock(5)) {
+            final long start = clock.getNowInMillis();
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (clock.getNowInMillis() == start && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(clock.getNowInMillis() > start);
+            assertTrue(clock.getNowInMillis() <= System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Records whether it has been closed.
+     */
+    private static class ClosableClock implements IClock, AutoCloseable {
+        private boolean closed;
+
+        @Override
+        public long getNowInMillis() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.apiman.plugins.session.id.impl;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PooledSessionIdGenerator}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PooledSessionIdGeneratorTest {
+    /**
+     * Expects that the pool is filled in the background, and refilled once drained.
+     */
+    @Test
+    public void testPoolRefilled() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final PooledSessionIdGenerator generator = new PooledSessionIdGenerator(
+                () -> String.valueOf(counter.incrementAndGet()), 10);
+
+        awaitPoolSize(generator, 10);
+
+        final Set<String> sessionIds = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            assertTrue(sessionIds.add(generator.generateSessionId()));
+        }
+
+        // the pool is only refilled once it falls to half of its capacity, so may not be full
+        awaitPoolSize(generator, 6);
+    }
+
+    /**
+     * Expects that closing the generator stops the background thread, and that IDs are still generated.
+     */
+    @Test
+    public void testClose() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final PooledSessionIdGenerator generator = new PooledSessionIdGenerator(
+                () -> String.valueOf(counter.incrementAndGet()), 10);
+
+        generator.close();
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (generator.isRefilling() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(generator.isRefilling());
+
+        for (int i = 0; i < 25; i++) {
+            assertNotNull(generator.generateSessionId());
+        }
+    }
+
+    private static void awaitPoolSize(PooledSessionIdGenerator generator, int minimumSize) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (generator.getPoolSize() < minimumSize && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(generator.getPoolSize() >= minimumSize);
+    }
+}
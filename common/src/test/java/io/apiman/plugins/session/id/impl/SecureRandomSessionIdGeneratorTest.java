@@ -0,0 +1,69 @@
+package io.apiman.plugins.session.id.impl;
+
+import org.junit.Test;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SecureRandomSessionIdGenerator}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SecureRandomSessionIdGeneratorTest {
+    /**
+     * Expects that session IDs are URL-safe, hold 128 bits and are unique.
+     */
+    @Test
+    public void testGenerateSessionId() {
+        final SecureRandomSessionIdGenerator generator = new SecureRandomSessionIdGenerator();
+
+        final Set<String> sessionIds = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            final String sessionId = generator.generateSessionId();
+            assertEquals(22, sessionId.length());
+            assertTrue(sessionId, sessionId.matches("[A-Za-z0-9_-]+"));
+            assertEquals(SecureRandomSessionIdGenerator.SESSION_ID_BYTES, Base64.getUrlDecoder().decode(sessionId).length);
+            assertTrue(sessionIds.add(sessionId));
+        }
+    }
+
+    /**
+     * Expects that each thread's generator is a separate, independently seeded instance, rather than the platform
+     * default, which is shared between threads.
+     */
+    @Test
+    public void testPerThreadGenerator() {
+        final SecureRandom first = SecureRandomSessionIdGenerator.createRandom();
+        final SecureRandom second = SecureRandomSessionIdGenerator.createRandom();
+        assertEquals(SecureRandomSessionIdGenerator.ALGORITHM, first.getAlgorithm());
+
+        final byte[] firstBytes = new byte[SecureRandomSessionIdGenerator.SESSION_ID_BYTES];
+        final byte[] secondBytes = new byte[SecureRandomSessionIdGenerator.SESSION_ID_BYTES];
+        first.nextBytes(firstBytes);
+        second.nextBytes(secondBytes);
+        assertFalse(Arrays.equals(firstBytes, secondBytes));
+    }
+
+    /**
+     * Expects that generated IDs and UUIDs are well formed, but other values are not.
+     */
+    @Test
+    public void testIsWellFormed() {
+        final SecureRandomSessionIdGenerator generator = new SecureRandomSessionIdGenerator();
+        assertTrue(generator.isWellFormed(generator.generateSessionId()));
+        assertTrue(generator.isWellFormed(UUID.randomUUID().toString()));
+
+        assertFalse(generator.isWellFormed(""));
+        assertFalse(generator.isWellFormed("short"));
+        assertFalse(generator.isWellFormed("not a session id at all"));
+        assertFalse(generator.isWellFormed("<script>alert(1)</script>"));
+        assertFalse(generator.isWellFormed(new String(new char[65]).replace('\0', 'a')));
+    }
+}
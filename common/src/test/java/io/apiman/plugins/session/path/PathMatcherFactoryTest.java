@@ -0,0 +1,144 @@
+package io.apiman.plugins.session.path;
+
+import io.apiman.plugins.session.path.impl.ExactPathMatcher;
+import io.apiman.plugins.session.path.impl.PathIndexMatcher;
+import io.apiman.plugins.session.path.impl.PrefixPathMatcher;
+import io.apiman.plugins.session.path.impl.RegexPathMatcher;
+import io.apiman.plugins.session.path.impl.SuffixPathMatcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PathMatcherFactory}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PathMatcherFactoryTest {
+    private static final String[] PATHS = {
+            "", "/", "/login", "/login/", "/logout", "/Login", "/api", "/api/", "/api/users", "/api/users/1",
+            "/apiv2", "/app/index.html", "/app/indexxhtml", "/static/app.js", "/login.html", "/a$b", "/api/a\nb",
+            "\n/login", "/login\n",
+    };
+
+    /**
+     * Expects that each matcher gives the same result as the regular expression it was compiled from.
+     */
+    private static void assertEquivalent(String pattern) {
+        final IPathMatcher matcher = PathMatcherFactory.compile(pattern);
+        final Pattern regex = Pattern.compile(pattern);
+        for (String path : PATHS) {
+            assertEquals(String.format("Pattern '%s' (%s) matching '%s'", pattern, matcher, path),
+                    regex.matcher(path).matches(), matcher.matches(path));
+        }
+    }
+
+    /**
+     * Expects that literal patterns, and literals followed or preceded by '.*', are matched without a regular
+     * expression.
+     */
+    @Test
+    public void testClassification() {
+        assertTrue(PathMatcherFactory.compile("/login") instanceof ExactPathMatcher);
+        assertTrue(PathMatcherFactory.compile("^/login$") instanceof ExactPathMatcher);
+        assertTrue(PathMatcherFactory.compile("/login\\.html") instanceof ExactPathMatcher);
+        assertTrue(PathMatcherFactory.compile("/api/.*") instanceof PrefixPathMatcher);
+        assertTrue(PathMatcherFactory.compile(".*") instanceof PrefixPathMatcher);
+        assertTrue(PathMatcherFactory.compile(".*\\.js") instanceof SuffixPathMatcher);
+        assertTrue(PathMatcherFactory.compile("/login.html") instanceof RegexPathMatcher);
+        assertTrue(PathMatcherFactory.compile("/api/.*/1") instanceof RegexPathMatcher);
+        assertTrue(PathMatcherFactory.compile("/log(in|out)") instanceof RegexPathMatcher);
+        assertTrue(PathMatcherFactory.compile("/api/\\d+") instanceof RegexPathMatcher);
+    }
+
+    /**
+     * Expects that every kind of matcher agrees with java.util.regex.
+     */
+    @Test
+    public void testEquivalence() {
+        for (String pattern : new String[]{
+                "/login", "^/login$", "/login\\.html", "/login.html", "/a\\$b", "/a$b", "", "^$", "^",
+                "/api/.*", "/api.*", ".*", "^.*$", ".*\\.js", ".*/", "/api/.*/1", "/log(in|out)", "/api/\\d+",
+                "/app/index.html", "(?i)/login",
+        }) {
+            assertEquivalent(pattern);
+        }
+    }
+
+    /**
+     * Expects that each distinct pattern is compiled once and shared.
+     */
+    @Test
+    public void testInterned() {
+        final IPathMatcher first = PathMatcherFactory.getPathMatcher("/interned/.*");
+        assertSame(first, PathMatcherFactory.getPathMatcher(new String("/interned/.*")));
+        assertNotSame(first, PathMatcherFactory.getPathMatcher("/interned/other"));
+    }
+
+    /**
+     * Expects that an index of patterns matches a path if, and only if, any of the regular expressions match it.
+     */
+    @Test
+    public void testIndexEquivalence() {
+        final List<String> patterns = Arrays.asList("/login", "/logout", "/api/.*", "/app/.*", ".*\\.js", ".*/",
+                "/log(in|out)\\.html", "/api/\\d+", "^/a\\$b$");
+        final IPathMatcher index = PathMatcherFactory.compileIndex(patterns);
+        assertTrue(index instanceof PathIndexMatcher);
+
+        final List<Pattern> regexes = new ArrayList<>();
+        patterns.forEach(pattern -> regexes.add(Pattern.compile(pattern)));
+
+        final List<String> paths = new ArrayList<>(Arrays.asList(PATHS));
+        paths.addAll(Arrays.asList("/login.html", "/logout.html", "/api/12", "/ap", "/app", "/app/", "/a.js\n",
+                "\n/a.js", "/js", ".js", "/api\n/x"));
+        for (String path : paths) {
+            final boolean expected = regexes.stream().anyMatch(regex -> regex.matcher(path).matches());
+            assertEquals(String.format("Index matching '%s'", path), expected, index.matches(path));
+        }
+    }
+
+    /**
+     * Expects that an index of many routes matches each of them, and nothing else.
+     */
+    @Test
+    public void testIndexManyRoutes() {
+        final List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            patterns.add("/service" + i + "/resource");
+            patterns.add("/prefix" + i + "/.*");
+        }
+        final IPathMatcher index = PathMatcherFactory.getPathMatcher(null, patterns);
+
+        for (int i = 0; i < 250; i++) {
+            assertTrue(index.matches("/service" + i + "/resource"));
+            assertTrue(index.matches("/prefix" + i + "/anything/at/all"));
+            assertFalse(index.matches("/service" + i + "/resource/more"));
+            assertFalse(index.matches("/prefix" + i));
+        }
+        assertFalse(index.matches("/service250/resource"));
+        assertFalse(index.matches(""));
+    }
+
+    /**
+     * Expects that the single pattern and the list are combined, and that blank patterns are ignored.
+     */
+    @Test
+    public void testCombinedPatterns() {
+        assertNull(PathMatcherFactory.getPathMatcher(null, null));
+        assertNull(PathMatcherFactory.getPathMatcher(" ", Arrays.asList("", null)));
+        assertSame(PathMatcherFactory.getPathMatcher("/login"), PathMatcherFactory.getPathMatcher("/login", null));
+        assertSame(PathMatcherFactory.getPathMatcher("/login"),
+                PathMatcherFactory.getPathMatcher(null, Arrays.asList("/login", "/login")));
+
+        final IPathMatcher combined = PathMatcherFactory.getPathMatcher("/login", Arrays.asList("/logout"));
+        assertSame(combined, PathMatcherFactory.getPathMatcher("/login", Arrays.asList("/logout")));
+        assertTrue(combined.matches("/login"));
+        assertTrue(combined.matches("/logout"));
+        assertFalse(combined.matches("/log"));
+    }
+}
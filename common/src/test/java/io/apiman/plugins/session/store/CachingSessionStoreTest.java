@@ -0,0 +1,213 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.plugins.session.clock.ClockFactory;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.store.impl.InMemorySessionStoreImpl;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CachingSessionStore}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class CachingSessionStoreTest {
+    /**
+     * The current time, only moved by the test, so expiry is tested without sleeping.
+     */
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final AtomicInteger delegateFetches = new AtomicInteger();
+
+    /**
+     * If set, the delegate reads sessions immediately, but only completes its fetches once the test runs them.
+     */
+    private volatile boolean deferFetches;
+    private final List<Runnable> deferredFetches = new CopyOnWriteArrayList<>();
+    private InMemorySessionStoreImpl delegate;
+    private CachingSessionStore store;
+
+    @Before
+    public void setUp() {
+        ClockFactory.setClock(clock::get);
+
+        // batch fetches are made through fetchSession
+        delegate = new InMemorySessionStoreImpl() {
+            @Override
+            public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+                delegateFetches.incrementAndGet();
+                if (deferFetches) {
+                    super.fetchSession(sessionId, result -> deferredFetches.add(() -> handler.handle(result)));
+                } else {
+                    super.fetchSession(sessionId, handler);
+                }
+            }
+        };
+        store = new CachingSessionStore(delegate, 1000, 100);
+    }
+
+    @After
+    public void tearDown() {
+        ClockFactory.setClock(null);
+    }
+
+    private static Session buildSession(String sessionId, String principal) {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setAuthenticatedPrincipal(principal);
+        session.setExpires(nowMillis + 60000);
+        session.setAbsoluteExpiry(nowMillis + 60000);
+        return session;
+    }
+
+    private Session fetch(String sessionId) {
+        final AtomicReference<Session> fetched = new AtomicReference<>();
+        store.fetchSession(sessionId, result -> fetched.set(result.getResult()));
+        return fetched.get();
+    }
+
+    /**
+     * Expects that a stored session is read back without the delegate.
+     */
+    @Test
+    public void testStoredSessionCached() {
+        store.storeSession("a", buildSession("a", "apiman"), result -> assertTrue(result.isSuccess()));
+
+        assertEquals("apiman", fetch("a").getAuthenticatedPrincipal());
+        assertEquals(0, delegateFetches.get());
+    }
+
+    /**
+     * Expects that a cache miss falls through to the delegate, and the result is cached.
+     */
+    @Test
+    public void testFallthroughOnMiss() {
+        delegate.storeSession("a", buildSession("a", "apiman"), result -> assertTrue(result.isSuccess()));
+
+        assertEquals("apiman", fetch("a").getAuthenticatedPrincipal());
+        assertEquals(1, delegateFetches.get());
+
+        assertEquals("apiman", fetch("a").getAuthenticatedPrincipal());
+        assertEquals(1, delegateFetches.get());
+
+        // missing sessions are not cached
+        assertNull(fetch("unknown").getSessionId());
+        assertNull(fetch("unknown").getSessionId());
+        assertEquals(3, delegateFetches.get());
+    }
+
+    /**
+     * Expects that changes made through another node are read once the cached session reaches its maximum age.
+     */
+    @Test
+    public void testMaxAge() {
+        store.storeSession("a", buildSession("a", "first"), result -> assertTrue(result.isSuccess()));
+        delegate.storeSession("a", buildSession("a", "second"), result -> assertTrue(result.isSuccess()));
+
+        assertEquals("first", fetch("a").getAuthenticatedPrincipal());
+
+        clock.addAndGet(1000);
+        assertEquals("second", fetch("a").getAuthenticatedPrincipal());
+        assertEquals(1, delegateFetches.get());
+    }
+
+    /**
+     * Expects that deleted sessions are invalidated in the cache.
+     */
+    @Test
+    public void testInvalidation() {
+        store.storeSessions(Collections.singletonMap("a", buildSession("a", "apiman")),
+                result -> assertTrue(result.isSuccess()));
+        store.storeSession("b", buildSession("b", "apiman"), result -> assertTrue(result.isSuccess()));
+
+        store.deleteSession("a", result -> assertTrue(result.isSuccess()));
+        assertNull(fetch("a").getSessionId());
+
+        store.deleteSessions(Collections.singletonList("b"), result -> assertTrue(result.isSuccess()));
+        assertNull(fetch("b").getSessionId());
+        assertEquals(2, delegateFetches.get());
+    }
+
+    /**
+     * Expects that a session deleted while it is being fetched from the delegate is not cached.
+     */
+    @Test
+    public void testDeletedDuringFetch() {
+        delegate.storeSession("a", buildSession("a", "apiman"), result -> assertTrue(result.isSuccess()));
+        delegate.storeSession("b", buildSession("b", "apiman"), result -> assertTrue(result.isSuccess()));
+
+        deferFetches = true;
+        final AtomicReference<Session> fetched = new AtomicReference<>();
+        store.fetchSession("a", result -> fetched.set(result.getResult()));
+        final AtomicReference<Map<String, Session>> batch = new AtomicReference<>();
+        store.fetchSessions(Collections.singletonList("b"), result -> batch.set(result.getResult()));
+
+        store.deleteSession("a", result -> assertTrue(result.isSuccess()));
+        store.deleteSessions(Collections.singletonList("b"), result -> assertTrue(result.isSuccess()));
+        deferFetches = false;
+        deferredFetches.forEach(Runnable::run);
+
+        // the fetches return the sessions they read, but don't cache them
+        assertEquals("a", fetched.get().getSessionId());
+        assertEquals("b", batch.get().get("b").getSessionId());
+        assertNull(fetch("a").getSessionId());
+        assertNull(fetch("b").getSessionId());
+        assertEquals(4, delegateFetches.get());
+    }
+
+    /**
+     * Expects that modifying a stored or fetched session does not change the cached session.
+     */
+    @Test
+    public void testCachedSessionNotShared() {
+        final Session stored = buildSession("a", "apiman");
+        store.storeSession("a", stored, result -> assertTrue(result.isSuccess()));
+        stored.setExpires(0);
+
+        final Session fetched = fetch("a");
+        assertNotSame(stored, fetched);
+        assertNotEquals(0, fetched.getExpires());
+        fetched.setExpires(0);
+
+        assertNotSame(fetched, fetch("a"));
+        assertNotEquals(0, fetch("a").getExpires());
+
+        final AtomicReference<Map<String, Session>> batch = new AtomicReference<>();
+        store.fetchSessions(Arrays.asList("a"), result -> batch.set(result.getResult()));
+        batch.get().get("a").setExpires(0);
+        assertNotEquals(0, fetch("a").getExpires());
+    }
+
+    /**
+     * Expects that touching a session updates the expiry of the cached session, without modifying sessions
+     * previously fetched.
+     */
+    @Test
+    public void testTouchSession() {
+        final Session session = buildSession("a", "apiman");
+        store.storeSession("a", session, result -> assertTrue(result.isSuccess()));
+        final Session before = fetch("a");
+        final long originalExpiry = before.getExpires();
+
+        final long newExpiry = originalExpiry + 60000;
+        store.touchSession("a", newExpiry, result -> assertTrue(result.isSuccess()));
+
+        assertEquals(originalExpiry, before.getExpires());
+        assertEquals(newExpiry, fetch("a").getExpires());
+        assertEquals(0, delegateFetches.get());
+    }
+}
@@ -0,0 +1,101 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.store.impl.InMemorySessionStoreImpl;
+import io.apiman.plugins.session.store.metrics.OperationMetrics;
+import io.apiman.plugins.session.store.metrics.SessionStoreMetrics;
+import io.apiman.plugins.session.store.metrics.SessionStoreOperation;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link InstrumentedSessionStore}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class InstrumentedSessionStoreTest {
+    private static Session buildSession(String sessionId) {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setExpires(nowMillis + 60000);
+        session.setAbsoluteExpiry(nowMillis + 60000);
+        return session;
+    }
+
+    /**
+     * Expects that each operation, and the outcome of each fetch, is recorded.
+     */
+    @Test
+    public void testOperationsRecorded() {
+        final InstrumentedSessionStore store = new InstrumentedSessionStore(new InMemorySessionStoreImpl());
+        store.storeSession("a", buildSession("a"), result -> assertTrue(result.isSuccess()));
+        store.fetchSession("a", result -> assertTrue(result.isSuccess()));
+        store.fetchSession("b", result -> assertTrue(result.isSuccess()));
+        store.fetchSessions(Arrays.asList("a", "b", "c"), result -> assertTrue(result.isSuccess()));
+        store.deleteSession("a", result -> assertTrue(result.isSuccess()));
+
+        final SessionStoreMetrics metrics = store.getMetrics();
+        assertEquals(1, metrics.getOperation(SessionStoreOperation.STORE).getCount());
+        assertEquals(1, metrics.getOperation(SessionStoreOperation.DELETE).getCount());
+        assertEquals(0, metrics.getOperation(SessionStoreOperation.TOUCH).getCount());
+
+        final OperationMetrics fetch = metrics.getOperation(SessionStoreOperation.FETCH);
+        assertEquals(2, fetch.getCount());
+        assertEquals(1, fetch.getHits());
+        assertEquals(1, fetch.getMisses());
+
+        final OperationMetrics fetchBatch = metrics.getOperation(SessionStoreOperation.FETCH_BATCH);
+        assertEquals(1, fetchBatch.getCount());
+        assertEquals(1, fetchBatch.getHits());
+        assertEquals(2, fetchBatch.getMisses());
+    }
+
+    /**
+     * Expects that failed operations are recorded as errors.
+     */
+    @Test
+    public void testErrorsRecorded() {
+        final InstrumentedSessionStore store = new InstrumentedSessionStore(new InMemorySessionStoreImpl() {
+            @Override
+            public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+                handler.handle(AsyncResultImpl.<Session>create(new RuntimeException("store unavailable")));
+            }
+        });
+        store.fetchSession("a", result -> assertFalse(result.isSuccess()));
+
+        final OperationMetrics fetch = store.getMetrics().getOperation(SessionStoreOperation.FETCH);
+        assertEquals(1, fetch.getCount());
+        assertEquals(1, fetch.getErrors());
+        assertEquals(0, fetch.getHits() + fetch.getMisses());
+    }
+
+    /**
+     * Expects that metrics are exposed through JMX until the store is closed.
+     */
+    @Test
+    public void testMBeansRegistered() throws Exception {
+        final InstrumentedSessionStore store = new InstrumentedSessionStore(new InMemorySessionStoreImpl());
+        store.registerMBeans("test");
+        store.fetchSession("a", result -> assertTrue(result.isSuccess()));
+
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(
+                SessionStoreMetrics.JMX_DOMAIN + ":type=SessionStore,store=\"test\",operation=fetch");
+
+        assertEquals(1L, mBeanServer.getAttribute(objectName, "Count"));
+        assertEquals(1L, mBeanServer.getAttribute(objectName, "Misses"));
+
+        store.close();
+        assertFalse(mBeanServer.isRegistered(objectName));
+    }
+}
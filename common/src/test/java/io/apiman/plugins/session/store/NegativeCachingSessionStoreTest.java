@@ -0,0 +1,85 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.store.impl.InMemorySessionStoreImpl;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link NegativeCachingSessionStore}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class NegativeCachingSessionStoreTest {
+    private final AtomicInteger delegateFetches = new AtomicInteger();
+    private NegativeCachingSessionStore store;
+
+    @Before
+    public void setUp() {
+        // batch fetches are made through fetchSession
+        final ISessionStore delegate = new InMemorySessionStoreImpl() {
+            @Override
+            public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+                delegateFetches.incrementAndGet();
+                super.fetchSession(sessionId, handler);
+            }
+        };
+        store = new NegativeCachingSessionStore(delegate, 60000, 100);
+    }
+
+    private static Session buildSession(String sessionId) {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setExpires(nowMillis + 60000);
+        session.setAbsoluteExpiry(nowMillis + 60000);
+        return session;
+    }
+
+    private Session fetch(String sessionId) {
+        final AtomicReference<Session> fetched = new AtomicReference<>();
+        store.fetchSession(sessionId, result -> fetched.set(result.getResult()));
+        return fetched.get();
+    }
+
+    /**
+     * Expects that repeated lookups of a missing session are answered without the delegate, until it is stored.
+     */
+    @Test
+    public void testMissRemembered() {
+        assertNull(fetch("a").getSessionId());
+        assertNull(fetch("a").getSessionId());
+        assertEquals(1, delegateFetches.get());
+
+        store.storeSession("a", buildSession("a"), result -> assertTrue(result.isSuccess()));
+        assertEquals("a", fetch("a").getSessionId());
+        assertEquals(2, delegateFetches.get());
+    }
+
+    /**
+     * Expects that batch lookups only pass session IDs not known to be missing to the delegate.
+     */
+    @Test
+    public void testBatchMissRemembered() {
+        store.storeSession("a", buildSession("a"), result -> assertTrue(result.isSuccess()));
+        assertNull(fetch("b").getSessionId());
+
+        final AtomicReference<Map<String, Session>> fetched = new AtomicReference<>();
+        store.fetchSessions(Arrays.asList("a", "b", "c"), result -> fetched.set(result.getResult()));
+        assertEquals(1, fetched.get().size());
+        assertEquals("a", fetched.get().get("a").getSessionId());
+        assertEquals(3, delegateFetches.get());
+
+        assertNull(fetch("c").getSessionId());
+        assertEquals(3, delegateFetches.get());
+    }
+}
@@ -0,0 +1,208 @@
+package io.apiman.plugins.session.store;
+
+import io.apiman.gateway.engine.async.AsyncResultImpl;
+import io.apiman.gateway.engine.async.IAsyncResultHandler;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.plugins.session.model.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ReapingSessionStore}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ReapingSessionStoreTest {
+    private final AtomicLong clock = new AtomicLong(1000);
+    private MapSessionStore delegate;
+    private ReapingSessionStore store;
+
+    @Before
+    public void setUp() {
+        delegate = new MapSessionStore();
+        store = new ReapingSessionStore(delegate, 0, 3, clock::get);
+        store.init(null);
+    }
+
+    private void storeSession(String sessionId, long expires) {
+        final Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setExpires(expires);
+        session.setAbsoluteExpiry(100000);
+        store.storeSession(sessionId, session, result -> assertTrue(result.isSuccess()));
+    }
+
+    /**
+     * Expects that only sessions whose deadline has passed are deleted, in order of deadline.
+     */
+    @Test
+    public void testExpiredSessionsReaped() {
+        storeSession("c", 10000);
+        storeSession("a", 2000);
+        storeSession("b", 3000);
+        assertEquals(3, store.getIndexSize());
+
+        clock.set(2500);
+        assertEquals(1, store.reap());
+        assertFalse(delegate.sessions.containsKey("a"));
+        assertTrue(delegate.sessions.containsKey("b"));
+
+        clock.set(5000);
+        assertEquals(1, store.reap());
+        assertEquals(0, store.reap());
+        assertEquals(1, delegate.sessions.size());
+        assertEquals(1, store.getIndexSize());
+
+        assertEquals(2, store.getMetrics().getReclaimedSessions());
+        assertEquals(2, store.getMetrics().getScannedSessions());
+        assertEquals(1, store.getMetrics().getIndexedSessions());
+    }
+
+    /**
+     * Expects that no more than the budgeted number of sessions are examined on each tick.
+     */
+    @Test
+    public void testBudget() {
+        for (int i = 0; i < 10; i++) {
+            storeSession("session-" + i, 2000 + i);
+        }
+
+        clock.set(5000);
+        assertEquals(3, store.reap());
+        assertEquals(7, delegate.sessions.size());
+        assertEquals(3, store.reap());
+        assertEquals(3, store.reap());
+        assertEquals(1, store.reap());
+        assertEquals(0, store.reap());
+        assertTrue(delegate.sessions.isEmpty());
+        assertEquals(10, store.getMetrics().getReclaimedSessions());
+    }
+
+    /**
+     * Expects that a session extended since it was indexed is indexed again, rather than deleted.
+     */
+    @Test
+    public void testExtendedSessionRescheduled() {
+        storeSession("a", 2000);
+        store.touchSession("a", 6000, result -> assertTrue(result.isSuccess()));
+
+        clock.set(3000);
+        assertEquals(1, store.reap());
+        assertTrue(delegate.sessions.containsKey("a"));
+        assertEquals(1, store.getMetrics().getRescheduledSessions());
+        assertEquals(1, store.getIndexSize());
+
+        clock.set(7000);
+        assertEquals(1, store.reap());
+        assertFalse(delegate.sessions.containsKey("a"));
+    }
+
+    /**
+     * Expects that deleted sessions, and sessions without a deadline, are not indexed.
+     */
+    @Test
+    public void testNotIndexed() {
+        storeSession("deleted", 2000);
+        store.deleteSession("deleted", result -> assertTrue(result.isSuccess()));
+
+        final Session session = new Session();
+        session.setSessionId("no-deadline");
+        store.storeSession("no-deadline", session, result -> assertTrue(result.isSuccess()));
+
+        assertEquals(0, store.getIndexSize());
+        clock.set(Long.MAX_VALUE);
+        assertEquals(0, store.reap());
+        assertTrue(delegate.sessions.containsKey("no-deadline"));
+    }
+
+    /**
+     * Expects that sessions fetched through this store, such as those stored by other nodes, are indexed.
+     */
+    @Test
+    public void testFetchedSessionsIndexed() {
+        final Session session = new Session();
+        session.setSessionId("remote");
+        session.setExpires(2000);
+        session.setAbsoluteExpiry(100000);
+        delegate.sessions.put("remote", session);
+
+        store.fetchSession("remote", result -> assertEquals("remote", result.getResult().getSessionId()));
+        assertEquals(1, store.getIndexSize());
+
+        clock.set(3000);
+        assertEquals(1, store.reap());
+        assertFalse(delegate.sessions.containsKey("remote"));
+    }
+
+    /**
+     * Expects that each store reaps on its own thread, which stops once the store is closed.
+     */
+    @Test
+    public void testThreadStoppedOnClose() throws Exception {
+        final long threadsBefore = countReaperThreads();
+        final MapSessionStore scheduledDelegate = new MapSessionStore();
+        final ReapingSessionStore first = new ReapingSessionStore(scheduledDelegate, 10, 3, clock::get);
+        final ReapingSessionStore second = new ReapingSessionStore(new MapSessionStore(), 10, 3, clock::get);
+        first.init(null);
+        second.init(null);
+        assertEquals(threadsBefore + 2, countReaperThreads());
+
+        final Session session = new Session();
+        session.setSessionId("expired");
+        session.setExpires(500);
+        session.setAbsoluteExpiry(100000);
+        first.storeSession("expired", session, result -> assertTrue(result.isSuccess()));
+        for (int i = 0; i < 500 && scheduledDelegate.sessions.containsKey("expired"); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(scheduledDelegate.sessions.containsKey("expired"));
+
+        first.close();
+        second.close();
+        for (int i = 0; i < 500 && countReaperThreads() > threadsBefore; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(threadsBefore, countReaperThreads());
+    }
+
+    private static long countReaperThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && "session-reaper".equals(thread.getName()))
+                .count();
+    }
+
+    /**
+     * Holds sessions until they are deleted.
+     */
+    private static class MapSessionStore implements ISessionStore {
+        private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+        @Override
+        public void init(IPolicyContext context) {
+            // no op
+        }
+
+        @Override
+        public void storeSession(String sessionId, Session session, IAsyncResultHandler<Void> handler) {
+            sessions.put(sessionId, session);
+            handler.handle(AsyncResultImpl.create((Void) null));
+        }
+
+        @Override
+        public void fetchSession(String sessionId, IAsyncResultHandler<Session> handler) {
+            handler.handle(AsyncResultImpl.create(sessions.getOrDefault(sessionId, new Session())));
+        }
+
+        @Override
+        public void deleteSession(String sessionId, IAsyncResultHandler<Void> handler) {
+            sessions.remove(sessionId);
+            handler.handle(AsyncResultImpl.create((Void) null));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package io.apiman.plugins.session.store.impl;
+
+import io.apiman.plugins.session.clock.ClockFactory;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link InMemorySessionStoreImpl}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class InMemorySessionStoreImplTest {
+    /**
+     * The current time, only moved by the test, so expiry is tested without sleeping.
+     */
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    private InMemorySessionStoreImpl store;
+
+    @Before
+    public void setUp() {
+        ClockFactory.setClock(clock::get);
+        System.setProperty(InMemorySessionStoreImpl.EXPIRY_TICK_MILLIS, "1");
+        store = new InMemorySessionStoreImpl();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(InMemorySessionStoreImpl.EXPIRY_TICK_MILLIS);
+        ClockFactory.setClock(null);
+    }
+
+    private static Session buildSession(String sessionId, long expires, long absoluteExpiry) {
+        final Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setExpires(expires);
+        session.setAbsoluteExpiry(absoluteExpiry);
+        return session;
+    }
+
+    private Session fetch(String sessionId) {
+        final AtomicReference<Session> fetched = new AtomicReference<>();
+        store.fetchSession(sessionId, result -> fetched.set(result.getResult()));
+        return fetched.get();
+    }
+
+    /**
+     * Expects that sessions can be stored, fetched and deleted.
+     */
+    @Test
+    public void testStoreFetchDelete() {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        store.storeSession("a", buildSession("a", nowMillis + 60000, nowMillis + 60000), result -> assertTrue(result.isSuccess()));
+        assertEquals("a", fetch("a").getSessionId());
+
+        store.deleteSession("a", result -> assertTrue(result.isSuccess()));
+        assertNull(fetch("a").getSessionId());
+        assertNull(fetch("unknown").getSessionId());
+    }
+
+    /**
+     * Expects that changes to a stored or fetched session do not affect the store, so callers can extend the sessions
+     * they fetch without synchronising with other requests.
+     */
+    @Test
+    public void testSessionsCopied() {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Session session = buildSession("a", nowMillis + 60000, nowMillis + 60000);
+        store.storeSession("a", session, result -> assertTrue(result.isSuccess()));
+
+        session.setExpires(nowMillis + 10);
+        final Session fetched = fetch("a");
+        assertEquals(nowMillis + 60000, fetched.getExpires());
+        assertNotSame(fetched, fetch("a"));
+
+        fetched.setExpires(nowMillis + 10);
+        store.touchSession("a", nowMillis + 120000, result -> assertTrue(result.isSuccess()));
+        assertEquals(nowMillis + 10, fetched.getExpires());
+        assertEquals(nowMillis + 120000, fetch("a").getExpires());
+
+        clock.addAndGet(100);
+        assertEquals("a", fetch("a").getSessionId());
+    }
+
+    /**
+     * Expects that an unknown session is fetched as a new empty session each time.
+     */
+    @Test
+    public void testUnknownSession() {
+        final Session unknown = fetch("unknown");
+        assertNull(unknown.getSessionId());
+
+        unknown.setSessionId("changed");
+        assertNull(fetch("unknown").getSessionId());
+    }
+
+    /**
+     * Expects that sessions are removed once either their expiry or absolute expiry has passed.
+     */
+    @Test
+    public void testExpiredSessionsRemoved() {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        store.storeSession("expires", buildSession("expires", nowMillis + 10, nowMillis + 60000), result -> {
+        });
+        store.storeSession("absolute", buildSession("absolute", nowMillis + 60000, nowMillis + 10), result -> {
+        });
+        store.storeSession("current", buildSession("current", nowMillis + 60000, nowMillis + 60000), result -> {
+        });
+        assertEquals(3, store.size());
+
+        clock.addAndGet(50);
+        assertNull(fetch("expires").getSessionId());
+        assertNull(fetch("absolute").getSessionId());
+        assertEquals("current", fetch("current").getSessionId());
+        assertEquals(1, store.size());
+    }
+
+    /**
+     * Expects that a session whose expiry is extended is not removed at its original expiry.
+     */
+    @Test
+    public void testExtendedSessionRetained() {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        store.storeSession("a", buildSession("a", nowMillis + 10, nowMillis + 60000), result -> {
+        });
+        store.storeSession("a", buildSession("a", nowMillis + 60000, nowMillis + 60000), result -> {
+        });
+
+        clock.addAndGet(50);
+        assertEquals("a", fetch("a").getSessionId());
+        assertEquals(1, store.size());
+    }
+
+    /**
+     * Expects that the default batch operations store, fetch and delete each session.
+     */
+    @Test
+    public void testBatchOperations() {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final Map<String, Session> sessions = new HashMap<>();
+        sessions.put("a", buildSession("a", nowMillis + 60000, nowMillis + 60000));
+        sessions.put("b", buildSession("b", nowMillis + 60000, nowMillis + 60000));
+        store.storeSessions(sessions, result -> assertTrue(result.isSuccess()));
+
+        final AtomicReference<Map<String, Session>> fetched = new AtomicReference<>();
+        store.fetchSessions(Arrays.asList("a", "b", "unknown"), result -> fetched.set(result.getResult()));
+        assertEquals(2, fetched.get().size());
+        assertEquals("a", fetched.get().get("a").getSessionId());
+
+        store.deleteSessions(Arrays.asList("a", "b"), result -> assertTrue(result.isSuccess()));
+        store.fetchSessions(Arrays.asList("a", "b"), result -> fetched.set(result.getResult()));
+        assertTrue(fetched.get().isEmpty());
+    }
+
+    /**
+     * Expects that touching a session extends its expiry, and that it is not removed at its original expiry.
+     */
+    @Test
+    public void testTouchSession() {
+        final long nowMillis = TimeUtil.getNowInMillis();
+        store.storeSession("a", buildSession("a", nowMillis + 10, nowMillis + 60000), result -> {
+        });
+        store.touchSession("a", nowMillis + 60000, result -> assertTrue(result.isSuccess()));
+        store.touchSession("unknown", nowMillis + 60000, result -> assertTrue(result.isSuccess()));
+
+        clock.addAndGet(50);
+        assertEquals(nowMillis + 60000, fetch("a").getExpires());
+        assertNull(fetch("unknown").getSessionId());
+        assertEquals(1, store.size());
+    }
+}
@@ -0,0 +1,96 @@
+package io.apiman.plugins.session.store.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link TimingWheel}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class TimingWheelTest {
+    private static final long TICK_MILLIS = 10;
+    private static final long START_MILLIS = 1485648000000L;
+
+    private List<String> expired;
+    private TimingWheel<String> wheel;
+
+    @Before
+    public void setUp() {
+        expired = new ArrayList<>();
+        wheel = new TimingWheel<>(TICK_MILLIS, START_MILLIS, (key, deadlineMillis) -> expired.add(key));
+    }
+
+    /**
+     * Expects that timers fire on the first tick at or after their deadline, and not before.
+     */
+    @Test
+    public void testFiresAtDeadline() {
+        wheel.schedule("a", START_MILLIS + 25);
+        wheel.schedule("b", START_MILLIS + 30);
+
+        wheel.advance(START_MILLIS + 20);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(START_MILLIS + 30);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains("a"));
+        assertTrue(expired.contains("b"));
+    }
+
+    /**
+     * Expects that timers in the outer levels of the wheel are cascaded and fire at their deadline.
+     */
+    @Test
+    public void testCascadesOuterLevels() {
+        final long[] deadlines = {
+                START_MILLIS + 64 * TICK_MILLIS + 5,
+                START_MILLIS + 4096 * TICK_MILLIS + 5,
+                START_MILLIS + 300000 * TICK_MILLIS + 5,
+        };
+        for (int i = 0; i < deadlines.length; i++) {
+            wheel.schedule(String.valueOf(i), deadlines[i]);
+        }
+        wheel.advance(START_MILLIS + TICK_MILLIS);
+
+        for (int i = 0; i < deadlines.length; i++) {
+            wheel.advance(deadlines[i] - TICK_MILLIS);
+            assertEquals(i, expired.size());
+
+            wheel.advance(deadlines[i] + TICK_MILLIS);
+            assertEquals(i + 1, expired.size());
+            assertEquals(String.valueOf(i), expired.get(i));
+        }
+    }
+
+    /**
+     * Expects that timers beyond the horizon of the wheel still fire at their deadline.
+     */
+    @Test
+    public void testBeyondHorizon() {
+        final long deadline = START_MILLIS + (1L << 26) * TICK_MILLIS;
+        wheel.schedule("a", deadline);
+        wheel.advance(START_MILLIS + TICK_MILLIS);
+
+        wheel.advance(deadline - TICK_MILLIS);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(deadline);
+        assertEquals(1, expired.size());
+    }
+
+    /**
+     * Expects that timers whose deadline has already passed fire on the next advance.
+     */
+    @Test
+    public void testPastDeadline() {
+        wheel.schedule("a", START_MILLIS - 1000);
+        wheel.advance(START_MILLIS + TICK_MILLIS);
+        assertEquals(1, expired.size());
+    }
+}
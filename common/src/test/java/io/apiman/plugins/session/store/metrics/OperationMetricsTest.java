@@ -0,0 +1,60 @@
+package io.apiman.plugins.session.store.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link OperationMetrics}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class OperationMetricsTest {
+    /**
+     * Expects that counts, mean and maximum latency are recorded, and percentiles fall within a factor of two.
+     */
+    @Test
+    public void testRecord() {
+        final OperationMetrics metrics = new OperationMetrics();
+        for (int i = 0; i < 98; i++) {
+            metrics.record(TimeUnit.MICROSECONDS.toNanos(100), true);
+        }
+        metrics.record(TimeUnit.MICROSECONDS.toNanos(5000), false);
+        metrics.record(TimeUnit.MICROSECONDS.toNanos(10000), false);
+        metrics.recordLookup(3, 1);
+
+        assertEquals(100, metrics.getCount());
+        assertEquals(2, metrics.getErrors());
+        assertEquals(3, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+        assertEquals(248, metrics.getMeanLatencyMicros());
+        assertEquals(10000, metrics.getMaxLatencyMicros());
+
+        final long median = metrics.getLatency50thPercentileMicros();
+        assertTrue(String.valueOf(median), median >= 100 && median < 200);
+
+        final long p99 = metrics.getLatency99thPercentileMicros();
+        assertTrue(String.valueOf(p99), p99 >= 5000 && p99 < 10000);
+        assertEquals(10000, metrics.getLatencyPercentileMicros(100));
+    }
+
+    /**
+     * Expects that all counters are cleared by a reset.
+     */
+    @Test
+    public void testReset() {
+        final OperationMetrics metrics = new OperationMetrics();
+        metrics.record(1000, false);
+        metrics.recordLookup(1, 1);
+        metrics.reset();
+
+        assertEquals(0, metrics.getCount());
+        assertEquals(0, metrics.getErrors());
+        assertEquals(0, metrics.getHits());
+        assertEquals(0, metrics.getMisses());
+        assertEquals(0, metrics.getMaxLatencyMicros());
+        assertEquals(0, metrics.getLatency99thPercentileMicros());
+    }
+}
@@ -0,0 +1,99 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.gateway.engine.beans.ApiRequest;
+import io.apiman.gateway.engine.beans.util.HeaderMap;
+import io.apiman.gateway.engine.policy.IPolicyContext;
+import io.apiman.gateway.engine.policy.PolicyContextImpl;
+import io.apiman.plugins.session.model.Cookie;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CookieUtil}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class CookieUtilTest {
+    private static ApiRequest buildRequest(String... cookieHeaders) {
+        final ApiRequest request = new ApiRequest();
+        request.setHeaders(new HeaderMap());
+        for (String cookieHeader : cookieHeaders) {
+            request.getHeaders().add(Constants.HEADER_COOKIE, cookieHeader);
+        }
+        return request;
+    }
+
+    private static String getValue(String cookieHeader, String cookieName) {
+        final Cookie cookie = CookieUtil.findCookie(cookieHeader, cookieName);
+        return (null != cookie ? cookie.getValue() : null);
+    }
+
+    /**
+     * Expects that the named cookie is found regardless of its position and surrounding whitespace.
+     */
+    @Test
+    public void testFindCookie() {
+        final String header = "_ga=GA1.2.3; Session = abc123 ;_gid=GA1.2.4;last=xyz";
+        assertEquals("GA1.2.3", getValue(header, "_ga"));
+        assertEquals("abc123", getValue(header, "Session"));
+        assertEquals("abc123", getValue(header, "session"));
+        assertEquals("xyz", getValue(header, "last"));
+        assertNull(getValue(header, "sess"));
+        assertNull(getValue(header, "Session2"));
+        assertEquals("Session", CookieUtil.findCookie(header, "session").getName());
+    }
+
+    /**
+     * Expects that values containing '=', quoted values and empty values are returned intact.
+     */
+    @Test
+    public void testValues() {
+        final String header = "token=YWJj==; quoted=\"a b\"; empty=; flag; after=1";
+        assertEquals("YWJj==", getValue(header, "token"));
+        assertEquals("a b", getValue(header, "quoted"));
+        assertEquals("", getValue(header, "empty"));
+        assertNull(getValue(header, "flag"));
+        assertEquals("1", getValue(header, "after"));
+        assertNull(getValue("", "token"));
+        assertNull(getValue(";;  ; =orphan", "token"));
+    }
+
+    /**
+     * Expects that the first matching cookie is returned, across multiple Cookie headers.
+     */
+    @Test
+    public void testGetCookieMultipleHeaders() {
+        final ApiRequest request = buildRequest("_ga=1; _gid=2", "session=first", "session=second");
+        assertEquals("first", CookieUtil.getCookie(request, "session").getValue());
+        assertEquals("2", CookieUtil.getCookie(request, "_gid").getValue());
+        assertNull(CookieUtil.getCookie(request, "missing"));
+        assertNull(CookieUtil.getCookie(buildRequest(), "session"));
+    }
+
+    /**
+     * Expects that request cookies are parsed once per request, then read from the policy context.
+     */
+    @Test
+    public void testGetCookieFromContext() {
+        final ApiRequest request = buildRequest("_ga=1; Session=first; session=duplicate", "other=2");
+        final IPolicyContext context = new PolicyContextImpl(null, null);
+
+        final Cookie cookie = CookieUtil.getCookie(context, request, "session");
+        assertEquals("Session", cookie.getName());
+        assertEquals("first", cookie.getValue());
+        assertEquals("2", CookieUtil.getCookie(context, request, "OTHER").getValue());
+        assertNull(CookieUtil.getCookie(context, request, "missing"));
+
+        final Map<?, ?> cookies = context.getAttribute(CookieUtil.ATTRIBUTE_REQUEST_COOKIES, null);
+        assertEquals(3, cookies.size());
+
+        // the parsed cookies are reused, and are not affected by changes to the returned Cookie
+        cookie.setValue("changed");
+        request.getHeaders().put(Constants.HEADER_COOKIE, "session=replaced");
+        assertEquals("first", CookieUtil.getCookie(context, request, "session").getValue());
+        assertEquals("replaced", CookieUtil.getCookie(new PolicyContextImpl(null, null), request, "session").getValue());
+    }
+}
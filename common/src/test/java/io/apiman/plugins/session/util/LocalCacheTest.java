@@ -0,0 +1,159 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.plugins.session.clock.ClockFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link LocalCache}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class LocalCacheTest {
+    /**
+     * The current time, only moved by the test, so expiry is tested without sleeping.
+     */
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    @Before
+    public void setUp() {
+        ClockFactory.setClock(clock::get);
+    }
+
+    @After
+    public void tearDown() {
+        ClockFactory.setClock(null);
+    }
+
+    /**
+     * Expects that entries are discarded once they reach the maximum age.
+     */
+    @Test
+    public void testMaxAge() {
+        final LocalCache<String, String> cache = new LocalCache<>(1000, 10);
+        cache.put("a", "value");
+
+        clock.addAndGet(999);
+        assertEquals("value", cache.get("a"));
+
+        clock.addAndGet(1);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Expects that a fresh entry is not replaced by putIfAbsent, but a stale one is.
+     */
+    @Test
+    public void testPutIfAbsent() {
+        final LocalCache<String, String> cache = new LocalCache<>(1000, 10);
+        cache.put("a", "first");
+        cache.putIfAbsent("a", "second");
+        assertEquals("first", cache.get("a"));
+
+        clock.addAndGet(1000);
+        cache.putIfAbsent("a", "third");
+        assertEquals("third", cache.get("a"));
+    }
+
+    /**
+     * Expects that the cache does not grow beyond its maximum size, and that the least recently accessed entries
+     * are evicted first.
+     */
+    @Test
+    public void testMaxSize() {
+        final LocalCache<Integer, Integer> cache = new LocalCache<>(60000, 4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, i);
+            clock.incrementAndGet();
+        }
+
+        // entry 0 is the least recently accessed once the others are read
+        for (int i = 1; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+        clock.incrementAndGet();
+        cache.put(4, 4);
+
+        assertEquals(4, cache.size());
+        assertNull(cache.get(0));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+
+        for (int i = 5; i < 1000; i++) {
+            cache.put(i, i);
+            assertTrue(cache.size() <= 4);
+        }
+    }
+
+    /**
+     * Expects that entries which are never read again are eventually evicted, wherever they are held.
+     */
+    @Test
+    public void testEvictionSamplesAllEntries() {
+        final int maxSize = 64;
+        final LocalCache<Integer, Integer> cache = new LocalCache<>(60000, maxSize);
+        for (int i = 0; i < maxSize; i++) {
+            cache.put(i, i);
+        }
+
+        // each newer entry is more recently accessed than all of the original entries
+        for (int i = maxSize; i < maxSize * 16; i++) {
+            clock.incrementAndGet();
+            cache.put(i, i);
+        }
+
+        int retained = 0;
+        for (int i = 0; i < maxSize; i++) {
+            if (null != cache.get(i)) {
+                retained++;
+            }
+        }
+        assertEquals(0, retained);
+    }
+
+    /**
+     * Expects that invalidated and cleared entries are discarded.
+     */
+    @Test
+    public void testInvalidation() {
+        final LocalCache<String, String> cache = new LocalCache<>(60000, 10);
+        cache.put("a", "value");
+        cache.put("b", "value");
+
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals("value", cache.get("b"));
+
+        cache.clear();
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Expects that a value is only replaced if it is still the expected value, and that it keeps its original age.
+     */
+    @Test
+    public void testReplace() {
+        final LocalCache<String, String> cache = new LocalCache<>(1000, 10);
+        final String first = "first";
+        cache.put("a", first);
+
+        assertFalse(cache.replace("a", new String("other"), "second"));
+        assertEquals("first", cache.get("a"));
+
+        clock.addAndGet(500);
+        assertTrue(cache.replace("a", first, "second"));
+        assertEquals("second", cache.get("a"));
+        assertFalse(cache.replace("b", first, "second"));
+
+        clock.addAndGet(500);
+        assertNull(cache.get("a"));
+    }
+}
@@ -0,0 +1,55 @@
+package io.apiman.plugins.session.util;
+
+import org.junit.Test;
+
+import java.util.MissingFormatArgumentException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Messages}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class MessagesTest {
+    private static final Messages MESSAGES = new Messages("io.apiman.plugins.session.util", "MessagesTest");
+
+    /**
+     * Expects that precompiled messages are formatted exactly as String.format would.
+     */
+    @Test
+    public void testFormat() {
+        assertEquals("Attempting cookie validation", MESSAGES.format("NoArguments"));
+        assertEquals("Attempting cookie validation", MESSAGES.format("NoArguments", "ignored"));
+        assertEquals("Session with ID 'abc' was valid", MESSAGES.format("OneArgument", "abc"));
+        assertEquals("Session with ID 'null' was valid", MESSAGES.format("OneArgument", (Object) null));
+        assertEquals("Setting session cookie XSESSION=42", MESSAGES.format("TwoArguments", "XSESSION", 42));
+        assertEquals("50% of sessions for 'apiman'", MESSAGES.format("OtherConversion", 50, "apiman"));
+    }
+
+    /**
+     * Expects that missing arguments are rejected, as with String.format.
+     */
+    @Test(expected = MissingFormatArgumentException.class)
+    public void testFormatMissingArgument() {
+        MESSAGES.format("TwoArguments", "XSESSION");
+    }
+
+    /**
+     * Expects that unknown keys, and keys with another prefix, are marked as missing.
+     */
+    @Test
+    public void testMissingKey() {
+        assertEquals("!Unknown!", MESSAGES.format("Unknown"));
+        assertEquals("!Other.Key!", MESSAGES.format("Other.Key"));
+    }
+
+    /**
+     * Expects that each argument is formatted in turn.
+     */
+    @Test
+    public void testFormatEach() {
+        assertEquals("Cookie name not set, Path matcher not set",
+                MESSAGES.formatEach("ConfigNotSet", new String[]{"Cookie name", "Path matcher"}));
+    }
+}
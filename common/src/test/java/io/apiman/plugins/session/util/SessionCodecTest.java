@@ -0,0 +1,136 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.plugins.session.model.Session;
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SessionCodec}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionCodecTest {
+    /**
+     * A session encoded with version 1 of the binary encoding - must always remain readable.
+     */
+    private static final String VERSION_1_SESSION = "01072435663163306162342d396531622d346334652d386433342d306237" +
+            "663363316532613737066170696d616e80d0abf8bc5680d30e80d30e80b89929";
+
+    private static byte[] parseHex(String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static Session buildSession() {
+        final Session session = new Session();
+        session.setSessionId("5f1c0ab4-9e1b-4c4e-8d34-0b7f3c1e2a77");
+        session.setAuthenticatedPrincipal("apiman");
+        session.setStarts(1485648000000L);
+        session.setExpires(1485648120000L);
+        session.setValidityPeriod(120000L);
+        session.setAbsoluteExpiry(1485691200000L);
+        session.setCurrent(true);
+        return session;
+    }
+
+    private static void assertSessionEquals(Session expected, Session actual) {
+        assertEquals(expected.getSessionId(), actual.getSessionId());
+        assertEquals(expected.getAuthenticatedPrincipal(), actual.getAuthenticatedPrincipal());
+        assertEquals(expected.getStarts(), actual.getStarts());
+        assertEquals(expected.getExpires(), actual.getExpires());
+        assertEquals(expected.getValidityPeriod(), actual.getValidityPeriod());
+        assertEquals(expected.getAbsoluteExpiry(), actual.getAbsoluteExpiry());
+        assertEquals(expected.isCurrent(), actual.isCurrent());
+    }
+
+    /**
+     * Expects that a Session survives encoding and decoding unchanged.
+     */
+    @Test
+    public void testRoundTrip() {
+        final Session session = buildSession();
+        assertSessionEquals(session, SessionCodec.decode(SessionCodec.encode(session)));
+    }
+
+    /**
+     * Expects that empty, non-ASCII and extreme values survive encoding and decoding unchanged.
+     */
+    @Test
+    public void testRoundTripEdgeCases() {
+        final Session empty = new Session();
+        assertSessionEquals(empty, SessionCodec.decode(SessionCodec.encode(empty)));
+
+        final Session session = buildSession();
+        session.setAuthenticatedPrincipal("über-用户-😀");
+        session.setCurrent(false);
+        session.setStarts(Long.MAX_VALUE);
+        session.setExpires(Long.MIN_VALUE);
+        session.setValidityPeriod(-1);
+        session.setAbsoluteExpiry(0);
+        assertSessionEquals(session, SessionCodec.decode(SessionCodec.encode(session)));
+    }
+
+    /**
+     * Expects that data written by version 1 of the encoding can still be read.
+     */
+    @Test
+    public void testDecodeVersion1() {
+        final Session decoded = SessionCodec.decode(parseHex(VERSION_1_SESSION));
+        assertSessionEquals(buildSession(), decoded);
+    }
+
+    /**
+     * Expects that stores can read both serialized Sessions and the binary encoding.
+     */
+    @Test
+    public void testFromStoredValue() {
+        final Session session = buildSession();
+        assertNull(SessionCodec.fromStoredValue(null));
+        assertSame(session, SessionCodec.fromStoredValue(SessionCodec.toStoredValue(session, false)));
+        assertSessionEquals(session, SessionCodec.fromStoredValue(SessionCodec.toStoredValue(session, true)));
+
+        final Object legacy = SerializationUtils.deserialize(SerializationUtils.serialize(session));
+        assertSessionEquals(session, SessionCodec.fromStoredValue(legacy));
+    }
+
+    /**
+     * Expects that unknown versions and truncated data are rejected.
+     */
+    @Test
+    public void testDecodeInvalid() {
+        final byte[] encoded = SessionCodec.encode(buildSession());
+
+        final byte[] unknownVersion = encoded.clone();
+        unknownVersion[0] = 99;
+        try {
+            SessionCodec.decode(unknownVersion);
+            fail(IllegalArgumentException.class + " expected");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        final byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        try {
+            SessionCodec.decode(truncated);
+            fail(IllegalArgumentException.class + " expected");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    /**
+     * Expects that the binary encoding is considerably smaller than Java serialization.
+     */
+    @Test
+    public void testEncodedSizeSmallerThanSerialized() {
+        final Session session = buildSession();
+        final int encodedSize = SessionCodec.encode(session).length;
+        final int serializedSize = SerializationUtils.serialize(session).length;
+        assertTrue(String.format("Encoded size %s should be less than a third of serialized size %s",
+                encodedSize, serializedSize), encodedSize * 3 < serializedSize);
+    }
+}
@@ -0,0 +1,70 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.plugins.session.model.SessionToken;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SessionTokenSigner}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionTokenSignerTest {
+    private static final String SECRET = "53cre7";
+
+    private static SessionToken buildToken() {
+        return new SessionToken("5f1c0ab4-9e1b-4c4e-8d34-0b7f3c1e2a77", "über-apiman", 1485648000000L,
+                1485648060000L);
+    }
+
+    private static void assertTokenEquals(SessionToken expected, SessionToken actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getSessionId(), actual.getSessionId());
+        assertEquals(expected.getAuthenticatedPrincipal(), actual.getAuthenticatedPrincipal());
+        assertEquals(expected.getIssuedAt(), actual.getIssuedAt());
+        assertEquals(expected.getExpires(), actual.getExpires());
+    }
+
+    /**
+     * Expects that a signed token is verified and survives unchanged.
+     */
+    @Test
+    public void testSignAndVerify() {
+        final SessionToken token = buildToken();
+        final String signed = new SessionTokenSigner(SECRET).sign(token);
+
+        assertTrue(SessionTokenSigner.isSigned(signed));
+        assertFalse(SessionTokenSigner.isSigned(token.getSessionId()));
+        assertTokenEquals(token, new SessionTokenSigner(SECRET).verify(signed));
+        assertTokenEquals(token, SessionTokenSigner.parseUnverified(signed));
+    }
+
+    /**
+     * Expects that tokens with a modified payload or signature, or signed with another secret, are rejected.
+     */
+    @Test
+    public void testVerifyInvalid() {
+        final SessionTokenSigner signer = new SessionTokenSigner(SECRET);
+        final String signed = signer.sign(buildToken());
+        final int separator = signed.indexOf('.');
+
+        final String otherPayload = new SessionTokenSigner(SECRET).sign(new SessionToken("other", "apiman", 0, 1));
+        assertNull(signer.verify(otherPayload.substring(0, otherPayload.indexOf('.')) + signed.substring(separator)));
+        assertNull(signer.verify(signed.substring(0, separator + 1) + "AAAA"));
+        assertNull(signer.verify(signed.substring(0, separator + 1) + "!!!"));
+        assertNull(new SessionTokenSigner("other-secret").verify(signed));
+        assertNull(signer.verify("no-separator"));
+        assertNull(SessionTokenSigner.parseUnverified("!!!.AAAA"));
+    }
+
+    /**
+     * Expects that a token is due for renewal once half of its lifetime has elapsed.
+     */
+    @Test
+    public void testDueForRenewal() {
+        final SessionToken token = buildToken();
+        assertFalse(token.isDueForRenewal(token.getIssuedAt() + 29999));
+        assertTrue(token.isDueForRenewal(token.getIssuedAt() + 30000));
+    }
+}
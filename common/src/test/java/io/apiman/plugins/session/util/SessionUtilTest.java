@@ -0,0 +1,58 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.plugins.session.model.Session;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SessionUtil}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SessionUtilTest {
+    /**
+     * Expects that the time to live runs until the deadline, capped at the maximum, and is never zero.
+     */
+    @Test
+    public void testGetTimeToLive() {
+        assertEquals(5000, SessionUtil.getTimeToLive(15000, 10000, 60000));
+        assertEquals(60000, SessionUtil.getTimeToLive(100000, 10000, 60000));
+        assertEquals(1, SessionUtil.getTimeToLive(5000, 10000, 60000));
+        assertEquals(60000, SessionUtil.getTimeToLive(0, 10000, 60000));
+    }
+
+    /**
+     * Expects that the deadline is the earlier of the expiry and absolute expiry, ignoring any that are not set.
+     */
+    @Test
+    public void testGetDeadline() {
+        final Session session = new Session();
+        assertEquals(0, SessionUtil.getDeadline(session));
+
+        session.setAbsoluteExpiry(20000);
+        assertEquals(20000, SessionUtil.getDeadline(session));
+
+        session.setExpires(15000);
+        assertEquals(15000, SessionUtil.getDeadline(session));
+
+        session.setExpires(25000);
+        assertEquals(20000, SessionUtil.getDeadline(session));
+    }
+
+    /**
+     * Expects that new sessions are given an absolute expiry using the configured maximum time to live.
+     */
+    @Test
+    public void testConfiguredMaxTimeToLive() {
+        System.setProperty(SessionUtil.MAX_SESSION_TTL, "60000");
+        try {
+            final Session session = SessionUtil.buildSession("session", "apiman", 30);
+            assertEquals(60000, session.getAbsoluteExpiry() - session.getStarts());
+            assertEquals(30000, session.getExpires() - session.getStarts());
+        } finally {
+            System.clearProperty(SessionUtil.MAX_SESSION_TTL);
+        }
+        assertEquals(Constants.MAX_SESSION_TTL, SessionUtil.getMaxTimeToLive());
+    }
+}
@@ -0,0 +1,86 @@
+package io.apiman.plugins.session.util;
+
+import io.apiman.gateway.engine.beans.ApiResponse;
+import io.apiman.gateway.engine.beans.util.HeaderMap;
+import io.apiman.plugins.session.model.Cookie;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SetCookieTemplate}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SetCookieTemplateTest {
+    private static ApiResponse buildResponse() {
+        final ApiResponse response = new ApiResponse();
+        response.setHeaders(new HeaderMap());
+        return response;
+    }
+
+    /**
+     * Expects that the value is spliced between the name and the precompiled properties.
+     */
+    @Test
+    public void testFormat() {
+        final Cookie cookie = new Cookie();
+        cookie.setName("session");
+        cookie.setPath("/app");
+        cookie.setSecure(true);
+        cookie.setHttpOnly(true);
+
+        final SetCookieTemplate template = new SetCookieTemplate(cookie);
+        assertEquals("session=abc123; Path=/app; Secure; HttpOnly;", template.format("abc123"));
+        assertEquals("session=; Path=/app; Secure; HttpOnly;", template.format(null));
+
+        final Cookie parsed = CookieUtil.parseResponseCookie(template.format("xyz"));
+        assertEquals("session", parsed.getName());
+        assertEquals("xyz", parsed.getValue());
+        assertEquals("/app", parsed.getPath());
+        assertTrue(parsed.getSecure());
+        assertTrue(parsed.getHttpOnly());
+    }
+
+    /**
+     * Expects that unset or false properties are omitted.
+     */
+    @Test
+    public void testFormatMinimal() {
+        final Cookie cookie = new Cookie();
+        cookie.setName("session");
+        cookie.setSecure(false);
+
+        assertEquals("session=abc123;", new SetCookieTemplate(cookie).format("abc123"));
+    }
+
+    /**
+     * Expects that the removal header expires the cookie immediately.
+     */
+    @Test
+    public void testRemovalHeader() {
+        assertEquals("session=; Path=/app; Max-Age=0;", CookieUtil.buildRemovalHeader("session", "/app"));
+        assertEquals("session=; Max-Age=0;", CookieUtil.buildRemovalHeader("session", null));
+    }
+
+    /**
+     * Expects that each cookie is added as a separate header, rather than replacing those already set.
+     */
+    @Test
+    public void testMultipleHeaders() {
+        final ApiResponse response = buildResponse();
+
+        final Cookie other = new Cookie("other", "value");
+        CookieUtil.addResponseCookie(response, other);
+        new SetCookieTemplate(new Cookie("session", null)).addTo(response, "abc123");
+        CookieUtil.removeCookie(response, new Cookie("old", "xyz"));
+
+        final List<String> headers = response.getHeaders().getAll(Constants.HEADER_SET_COOKIE);
+        assertEquals(3, headers.size());
+        assertTrue(headers.contains("other=value;"));
+        assertTrue(headers.contains("session=abc123;"));
+        assertTrue(headers.contains("old=; Max-Age=0;"));
+    }
+}
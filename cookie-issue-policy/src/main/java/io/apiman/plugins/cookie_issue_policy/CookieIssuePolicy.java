@@ -18,8 +18,11 @@ import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.plugins.cookie_issue_policy.beans.CookieIssueConfigBean;
 import io.apiman.plugins.session.beans.ResponseBehaviour;
 import io.apiman.plugins.session.exception.InvalidConfigurationException;
+import io.apiman.plugins.session.id.SessionIdGeneratorFactory;
 import io.apiman.plugins.session.model.Cookie;
 import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.path.IPathMatcher;
+import io.apiman.plugins.session.path.PathMatcherFactory;
 import io.apiman.plugins.session.store.ISessionStore;
 import io.apiman.plugins.session.store.SessionStoreFactory;
 import io.apiman.plugins.session.util.*;
@@ -31,8 +34,6 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
-import java.util.regex.Pattern;
 
 /**
  * Policy that issues a cookie in the response.
@@ -46,8 +47,6 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
     private static final String ATTRIBUTE_SESSION_ID = CookieIssuePolicy.class.getCanonicalName() + ".sessionId";
     private static final String ATTRIBUTE_SKIP = CookieIssuePolicy.class.getCanonicalName() + ".skipPolicy";
 
-    private Pattern pathMatcher;
-
     /**
      * See {@link AbstractMappedPolicy#getConfigurationClass()}
      */
@@ -69,7 +68,7 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
                 .validate("Cookie name", config.getCookieName())
                 .validate("Session validity period", config.getValidityPeriod())
                 .validate("Response behaviour", config.getResponseBehaviour())
-                .validate("Path matcher", config.getPathMatcher())
+                .validate("Path matcher", config::hasPathMatcher)
                 .validate("API response JWT field name", config.getJwtFieldName())
                 .validate("JWT signing secret", config.getSigningSecret())
                 .validate("Redirect URL", () -> {
@@ -83,8 +82,12 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
                     "ConfigNotSet", validator.getValidationErrors()));
         }
 
-        // precompile path matcher for performance
-        pathMatcher = Pattern.compile(config.getPathMatcher());
+        // precompile path matcher for performance, holding it with the configuration it belongs to
+        config.setCompiledPathMatcher(PathMatcherFactory.getPathMatcher(
+                config.getPathMatcher(), config.getPathMatchers()));
+
+        // only the session ID varies between responses
+        config.setCookieTemplate(buildCookieTemplate(config));
 
         return config;
     }
@@ -97,7 +100,8 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
                            IPolicyChain<ApiRequest> chain) {
 
         // skip if path matcher is not use, or request URL doesn't match
-        if (null == pathMatcher || !pathMatcher.matcher(request.getDestination()).matches()) {
+        final IPathMatcher pathMatcher = config.getCompiledPathMatcher();
+        if (null == pathMatcher || !pathMatcher.matches(request.getDestination())) {
             context.setAttribute(ATTRIBUTE_SKIP, true);
         }
 
@@ -129,14 +133,13 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
             return;
         }
 
-        final Cookie cookie = generateCookie(config);
+        final String sessionId = SessionIdGeneratorFactory.getSessionIdGenerator().generateSessionId();
 
         // remember ID
-        final String sessionId = cookie.getValue();
         context.setAttribute(ATTRIBUTE_SESSION_ID, sessionId);
 
         // set the response cookie
-        CookieUtil.addResponseCookie(response, cookie);
+        config.getCookieTemplate().addTo(response, sessionId);
 
         LOGGER.info(MESSAGES.format("ApiResponseCodeValid",
                 config.getApiResponseCode(), config.getCookieName(), sessionId));
@@ -238,7 +241,7 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
 
                         } finally {
                             if (!sessionValid) {
-                                invalidateSession(sessionId, context);
+                                invalidateSession(sessionId, context, config);
                             }
                         }
 
@@ -253,17 +256,18 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
     }
 
     /**
-     * Generate a new Cookie from the config.
+     * Compile the template for the session cookie from the config.
      *
      * @param config the policy configuration
-     * @return a Cookie
+     * @return the 'Set-Cookie' header template
      */
-    private static Cookie generateCookie(CookieIssueConfigBean config) {
-        final Cookie cookie = new Cookie(config.getCookieName(), UUID.randomUUID().toString());
+    private static SetCookieTemplate buildCookieTemplate(CookieIssueConfigBean config) {
+        final Cookie cookie = new Cookie();
+        cookie.setName(config.getCookieName());
         cookie.setPath(config.getCookiePath());
         cookie.setSecure(config.getCookieSecure());
         cookie.setHttpOnly(config.getCookieHttpOnly());
-        return cookie;
+        return new SetCookieTemplate(cookie);
     }
 
     /**
@@ -271,7 +275,7 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
      *
      * @param context                the policy context
      * @param config                 the policy configuration
-     * @param sessionId              the ID of the session generated in {@link #generateCookie(CookieIssueConfigBean)}
+     * @param sessionId              the ID of the session issued in the response cookie
      * @param authenticatedPrincipal the authenticated principal extracted from the API response
      */
     private static void storeSessionData(IPolicyContext context, CookieIssueConfigBean config, final String sessionId,
@@ -281,7 +285,7 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
         final Session sessionData = SessionUtil.buildSession(sessionId, authenticatedPrincipal, config.getValidityPeriod());
         LOGGER.debug(MESSAGES.format("StoringSessionData", sessionId, sessionData));
 
-        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context);
+        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context, config.getSessionStore());
         sessionStore.storeSession(sessionId, sessionData, result -> {
             if (result.isSuccess()) {
                 LOGGER.info(MESSAGES.format(
@@ -299,9 +303,12 @@ public class CookieIssuePolicy extends AbstractMappedDataPolicy<CookieIssueConfi
      *
      * @param sessionId the ID of the session
      * @param context   the policy context
+     * @param config    the policy configuration
      */
-    private void invalidateSession(final String sessionId, final IPolicyContext context) {
-        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context);
+    private void invalidateSession(final String sessionId, final IPolicyContext context,
+                                   final CookieIssueConfigBean config) {
+
+        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context, config.getSessionStore());
         sessionStore.deleteSession(sessionId, result -> {
             if (result.isSuccess()) {
                 // session data removed
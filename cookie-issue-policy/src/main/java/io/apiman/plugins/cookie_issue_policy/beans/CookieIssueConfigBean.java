@@ -1,7 +1,9 @@
 package io.apiman.plugins.cookie_issue_policy.beans;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.apiman.plugins.session.beans.AbstractCookieConfigBean;
+import io.apiman.plugins.session.util.SetCookieTemplate;
 
 /**
  * Configuration object for the Cookie Issue policy.
@@ -32,6 +34,12 @@ public class CookieIssueConfigBean extends AbstractCookieConfigBean {
     @JsonProperty
     private String requiredIssuer;
 
+    /**
+     * The 'Set-Cookie' header template, compiled when the configuration is parsed.
+     */
+    @JsonIgnore
+    private SetCookieTemplate cookieTemplate;
+
     public Integer getApiResponseCode() {
         return apiResponseCode;
     }
@@ -103,4 +111,12 @@ public class CookieIssueConfigBean extends AbstractCookieConfigBean {
     public void setRequiredIssuer(String requiredIssuer) {
         this.requiredIssuer = requiredIssuer;
     }
+
+    public SetCookieTemplate getCookieTemplate() {
+        return cookieTemplate;
+    }
+
+    public void setCookieTemplate(SetCookieTemplate cookieTemplate) {
+        this.cookieTemplate = cookieTemplate;
+    }
 }
@@ -17,19 +17,26 @@ import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.plugins.cookie_remove_policy.beans.CookieRemoveConfigBean;
 import io.apiman.plugins.session.beans.ResponseBehaviour;
 import io.apiman.plugins.session.exception.InvalidConfigurationException;
+import io.apiman.plugins.session.id.SessionIdGeneratorFactory;
 import io.apiman.plugins.session.model.Cookie;
+import io.apiman.plugins.session.model.SessionToken;
+import io.apiman.plugins.session.path.IPathMatcher;
+import io.apiman.plugins.session.path.PathMatcherFactory;
 import io.apiman.plugins.session.store.ISessionStore;
+import io.apiman.plugins.session.store.RevokedSessions;
 import io.apiman.plugins.session.store.SessionStoreFactory;
 import io.apiman.plugins.session.util.ConfigValidator;
 import io.apiman.plugins.session.util.Constants;
 import io.apiman.plugins.session.util.CookieUtil;
 import io.apiman.plugins.session.util.Messages;
+import io.apiman.plugins.session.util.SessionTokenSigner;
+import io.apiman.plugins.session.util.SessionUtil;
+import io.apiman.plugins.session.util.TimeUtil;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.HttpURLConnection;
-import java.util.regex.Pattern;
 
 /**
  * Policy that removes a cookie.
@@ -42,8 +49,6 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
     private static final String ATTRIBUTE_REMOVE_COOKIE = CookieRemovePolicy.class.getCanonicalName() + ".removeCookie";
     private static final String ATTRIBUTE_SKIP = CookieRemovePolicy.class.getCanonicalName() + ".skipPolicy";
 
-    private Pattern pathMatcher;
-
     /**
      * See {@link AbstractMappedPolicy#getConfigurationClass()}
      */
@@ -66,7 +71,7 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
                 .validate("Skip backend call setting", config.getSkipBackendCall())
                 .validate("Force cookie removal setting", config.getForceCookieRemoval())
                 .validate("Response behaviour", config.getResponseBehaviour())
-                .validate("Path matcher", config.getPathMatcher())
+                .validate("Path matcher", config::hasPathMatcher)
                 .validate("Redirect URL", () -> {
                     // redirect URL should be set
                     return (ResponseBehaviour.PassThrough.equals(config.getResponseBehaviour()) ||
@@ -78,8 +83,16 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
                     "ConfigNotSet", validator.getValidationErrors()));
         }
 
-        // precompile path matcher for performance
-        pathMatcher = Pattern.compile(config.getPathMatcher());
+        // precompile path matcher for performance, holding it with the configuration it belongs to
+        config.setCompiledPathMatcher(PathMatcherFactory.getPathMatcher(
+                config.getPathMatcher(), config.getPathMatchers()));
+
+        // the removal header does not depend on the request
+        config.setRemovalHeader(CookieUtil.buildRemovalHeader(config.getCookieName(), config.getCookiePath()));
+
+        if (StringUtils.isNotBlank(config.getSigningSecret())) {
+            config.setTokenSigner(new SessionTokenSigner(config.getSigningSecret()));
+        }
 
         return config;
     }
@@ -92,7 +105,8 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
                            IPolicyChain<ApiRequest> chain) {
 
         // skip if path matcher is not use, or request URL doesn't match
-        if (null == pathMatcher || !pathMatcher.matcher(request.getDestination()).matches()) {
+        final IPathMatcher pathMatcher = config.getCompiledPathMatcher();
+        if (null == pathMatcher || !pathMatcher.matches(request.getDestination())) {
             LOGGER.debug(MESSAGES.format("PathMatchFalse"));
 
             context.setAttribute(ATTRIBUTE_SKIP, true);
@@ -100,7 +114,7 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
             return;
         }
 
-        Cookie cookie = CookieUtil.getCookie(request, config.getCookieName());
+        Cookie cookie = CookieUtil.getCookie(context, request, config.getCookieName());
 
         // cookie is absent - force removal anyway?
         if (null == cookie && config.getForceCookieRemoval()) {
@@ -117,16 +131,26 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
             // mark cookie for removal
             context.setAttribute(ATTRIBUTE_REMOVE_COOKIE, cookie);
 
-            final String sessionId = cookie.getValue();
-            if (StringUtils.isEmpty(sessionId)) {
+            // the cookie value is either the session ID or a signed token holding it
+            final String cookieValue = cookie.getValue();
+            final boolean signed = (StringUtils.isNotEmpty(cookieValue) && SessionTokenSigner.isSigned(cookieValue));
+            final SessionToken token = (signed ? readToken(config, cookieValue) : null);
+            final String sessionId = (signed ? (null != token ? token.getSessionId() : null) : cookieValue);
+
+            if (StringUtils.isEmpty(cookieValue)) {
                 // cookie is empty - continue
                 LOGGER.warn(MESSAGES.format("CookieEmpty", config.getCookieName()));
                 doContinue(request, context, config, chain);
 
+            } else if (null == sessionId || !SessionIdGeneratorFactory.getSessionIdGenerator().isWellFormed(sessionId)) {
+                // don't invalidate or revoke anything named by a forged or malformed cookie - continue
+                LOGGER.warn(MESSAGES.format("CookieInvalid", config.getCookieName()));
+                doContinue(request, context, config, chain);
+
             } else {
                 if (config.getInvalidateSession()) {
                     LOGGER.debug(MESSAGES.format("AttemptingInvalidation", sessionId));
-                    invalidateSession(sessionId, request, context, chain, config);
+                    invalidateSession(sessionId, token, request, context, chain, config);
 
                 } else {
                     LOGGER.debug(MESSAGES.format("InvalidationDisabled", sessionId));
@@ -217,6 +241,18 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
         }
     }
 
+    /**
+     * Read the signed token from the cookie, verifying its signature if a signing secret is configured.
+     *
+     * @param config      the policy configuration
+     * @param cookieValue the signed cookie value
+     * @return the token, or <code>null</code> if it is malformed or its signature is invalid
+     */
+    private SessionToken readToken(CookieRemoveConfigBean config, String cookieValue) {
+        final SessionTokenSigner tokenSigner = config.getTokenSigner();
+        return (null != tokenSigner ? tokenSigner.verify(cookieValue) : SessionTokenSigner.parseUnverified(cookieValue));
+    }
+
     /**
      * Either continue the policy chain or skip, depending on the policy configuration.
      *
@@ -249,32 +285,49 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
      * @param cookie   the cookie to remove
      */
     private void removeCookie(ApiResponse response, CookieRemoveConfigBean config, Cookie cookie) {
-        // align cookie properties to ensure deletion
-        cookie.setPath(config.getCookiePath());
-
-        // invalidate cookie in the response
         LOGGER.debug(MESSAGES.format("AttemptingRemoval"));
-        CookieUtil.removeCookie(response, cookie);
+
+        if (config.getCookieName().equals(cookie.getName())) {
+            // invalidate cookie in the response
+            response.getHeaders().add(Constants.HEADER_SET_COOKIE, config.getRemovalHeader());
+
+        } else {
+            // the request cookie name differs in case from the configured name, so remove the cookie as it was sent
+            cookie.setPath(config.getCookiePath());
+            CookieUtil.removeCookie(response, cookie);
+        }
     }
 
     /**
      * Invalidate session data for the given session, then manipulate the chain accordingly.
+     * If the session cookie was a signed token, and its signature was verified, the session is also revoked until
+     * the token expires. Unverified tokens can be forged, so they are never revoked.
      *
      * @param sessionId the ID of the session
+     * @param token     the signed token from the session cookie, or <code>null</code> if the cookie was unsigned
      * @param request   the service request
      * @param context   the policy context
      * @param chain     the policy chain
      * @param config    the policy configuration
      */
-    private void invalidateSession(final String sessionId, final ApiRequest request, final IPolicyContext context,
-                                   final IPolicyChain<ApiRequest> chain, final CookieRemoveConfigBean config) {
+    private void invalidateSession(final String sessionId, final SessionToken token, final ApiRequest request,
+                                   final IPolicyContext context, final IPolicyChain<ApiRequest> chain,
+                                   final CookieRemoveConfigBean config) {
 
-        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context);
+        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context, config.getSessionStore());
         sessionStore.deleteSession(sessionId, result -> {
             if (result.isSuccess()) {
                 // session data removed
                 LOGGER.info(MESSAGES.format("SessionInvalidated", sessionId));
-                doContinue(request, context, config, chain);
+
+                if (null != token && null != config.getTokenSigner()) {
+                    revokeSession(sessionId, token, request, context, chain, config);
+                } else {
+                    if (null != token) {
+                        LOGGER.warn(MESSAGES.format("RevocationSkipped", sessionId));
+                    }
+                    doContinue(request, context, config, chain);
+                }
 
             } else {
                 // failed to remove session data
@@ -288,4 +341,37 @@ public class CookieRemovePolicy extends AbstractMappedDataPolicy<CookieRemoveCon
             }
         });
     }
+
+    /**
+     * Revoke the session until the signed token holding it expires, then manipulate the chain accordingly.
+     *
+     * @param sessionId the ID of the session
+     * @param token     the verified signed token from the session cookie
+     * @param request   the service request
+     * @param context   the policy context
+     * @param chain     the policy chain
+     * @param config    the policy configuration
+     */
+    private void revokeSession(final String sessionId, final SessionToken token, final ApiRequest request,
+                               final IPolicyContext context, final IPolicyChain<ApiRequest> chain,
+                               final CookieRemoveConfigBean config) {
+
+        // bound how long the revocation is retained, whatever the token's expiry
+        final long retainUntil = Math.min(token.getExpires(), TimeUtil.getNowInMillis() + SessionUtil.getMaxTimeToLive());
+
+        RevokedSessions.revoke(context, sessionId, retainUntil, result -> {
+            if (result.isSuccess()) {
+                LOGGER.info(MESSAGES.format("SessionRevoked", sessionId));
+                doContinue(request, context, config, chain);
+
+            } else {
+                final String failureMessage = MESSAGES.format("SessionRevocationFailed", sessionId);
+                LOGGER.error(failureMessage, result.getError());
+
+                // policy failure
+                chain.doFailure(new PolicyFailure(PolicyFailureType.Other,
+                        HttpURLConnection.HTTP_INTERNAL_ERROR, failureMessage));
+            }
+        });
+    }
 }
@@ -1,7 +1,9 @@
 package io.apiman.plugins.cookie_remove_policy.beans;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.apiman.plugins.session.beans.AbstractCookieConfigBean;
+import io.apiman.plugins.session.util.SessionTokenSigner;
 
 /**
  * Configuration object for the Cookie Remove policy.
@@ -17,6 +19,25 @@ public class CookieRemoveConfigBean extends AbstractCookieConfigBean {
     @JsonProperty
     private Boolean forceCookieRemoval;
 
+    /**
+     * The secret used by the Cookie Validator Policy to sign session cookies. A signed session cookie is only
+     * revoked if this is set and the cookie's signature is valid.
+     */
+    @JsonProperty
+    private String signingSecret;
+
+    /**
+     * The constant 'Set-Cookie' header that removes the cookie, built when the configuration is parsed.
+     */
+    @JsonIgnore
+    private String removalHeader;
+
+    /**
+     * Verifies signed cookies with {@link #signingSecret}, if it is set, created when the configuration is parsed.
+     */
+    @JsonIgnore
+    private SessionTokenSigner tokenSigner;
+
     public Boolean getInvalidateSession() {
         return invalidateSession;
     }
@@ -40,4 +61,28 @@ public class CookieRemoveConfigBean extends AbstractCookieConfigBean {
     public void setForceCookieRemoval(Boolean forceCookieRemoval) {
         this.forceCookieRemoval = forceCookieRemoval;
     }
+
+    public String getSigningSecret() {
+        return signingSecret;
+    }
+
+    public void setSigningSecret(String signingSecret) {
+        this.signingSecret = signingSecret;
+    }
+
+    public String getRemovalHeader() {
+        return removalHeader;
+    }
+
+    public void setRemovalHeader(String removalHeader) {
+        this.removalHeader = removalHeader;
+    }
+
+    public SessionTokenSigner getTokenSigner() {
+        return tokenSigner;
+    }
+
+    public void setTokenSigner(SessionTokenSigner tokenSigner) {
+        this.tokenSigner = tokenSigner;
+    }
 }
@@ -4,9 +4,12 @@ import io.apiman.plugins.cookie_remove_policy.backend.FailBackEndApi;
 import io.apiman.plugins.session.exception.InvalidConfigurationException;
 import io.apiman.plugins.session.model.Cookie;
 import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.model.SessionToken;
 import io.apiman.plugins.session.test.CommonTestUtil;
 import io.apiman.plugins.session.util.Constants;
 import io.apiman.plugins.session.util.CookieUtil;
+import io.apiman.plugins.session.util.SessionTokenSigner;
+import io.apiman.plugins.session.util.TimeUtil;
 import io.apiman.test.policies.*;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
@@ -200,6 +203,94 @@ public class CookieRemovePolicyTest extends ApimanPolicyTest {
         callAndExpect302Redirect();
     }
 
+    /**
+     * Expects the Session held by a signed cookie is removed, but that the session is not revoked, as the signed
+     * cookie cannot be verified without the signing secret.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "passthrough-config.json")
+    @BackEndApi(EchoBackEndApi.class)
+    public void testLogoutSuccessSignedCookie() throws Throwable {
+        // test data - session expires in 60s
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+        // send request with signed cookie
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE,
+                CommonTestUtil.buildSignedCookieHeader(originalSession, nowMillis, nowMillis + 60000));
+
+        final PolicyTestResponse response = send(request);
+        assertEquals(HttpURLConnection.HTTP_OK, response.code());
+
+        // verify the session was invalidated, but not revoked
+        verifySessionInvalidated(originalSession, response);
+        assertFalse(CommonTestUtil.isRevoked(originalSession.getSessionId()));
+    }
+
+    /**
+     * Expects that a signed cookie is verified when the signing secret is configured, so a forged cookie neither
+     * invalidates nor revokes the session it names.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "signed-cookie-config.json")
+    @BackEndApi(EchoBackEndApi.class)
+    public void testLogoutIgnoreForgedSignedCookie() throws Throwable {
+        // test data - session expires in 60s
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+        // sign with a different secret
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final String forged = new SessionTokenSigner("not-the-secret").sign(new SessionToken(
+                originalSession.getSessionId(), CommonTestUtil.AUTHENTICATED_PRINICPAL, nowMillis, nowMillis + 60000));
+
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE, CommonTestUtil.COOKIE_NAME + "=" + forged + ";");
+
+        final PolicyTestResponse response = send(request);
+        assertEquals(HttpURLConnection.HTTP_OK, response.code());
+
+        // verify the session was neither invalidated nor revoked
+        assertEquals(originalSession.getSessionId(),
+                CommonTestUtil.fetchSession(originalSession.getSessionId()).getSessionId());
+        assertFalse(CommonTestUtil.isRevoked(originalSession.getSessionId()));
+
+        // a validly signed cookie is revoked
+        final PolicyTestRequest validRequest = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        validRequest.header(Constants.HEADER_COOKIE,
+                CommonTestUtil.buildSignedCookieHeader(originalSession, nowMillis, nowMillis + 60000));
+
+        verifySessionInvalidated(originalSession, send(validRequest));
+        assertTrue(CommonTestUtil.isRevoked(originalSession.getSessionId()));
+    }
+
+    /**
+     * Expects that a signed cookie naming a malformed session ID is not revoked, even if its signature is valid, so
+     * the revocations cannot be filled with arbitrary values.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "signed-cookie-config.json")
+    @BackEndApi(EchoBackEndApi.class)
+    public void testLogoutIgnoreMalformedSessionId() throws Throwable {
+        final String malformedId = "not,a:session-id";
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final String token = new SessionTokenSigner(CommonTestUtil.COOKIE_SIGNING_SECRET).sign(new SessionToken(
+                malformedId, CommonTestUtil.AUTHENTICATED_PRINICPAL, nowMillis, nowMillis + 60000));
+
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE, CommonTestUtil.COOKIE_NAME + "=" + token + ";");
+
+        final PolicyTestResponse response = send(request);
+        assertEquals(HttpURLConnection.HTTP_OK, response.code());
+        assertFalse(CommonTestUtil.isRevoked(malformedId));
+    }
+
     /**
      * Expects the Session is unchanged as the request does not contain a Cookie with a valid session ID. The response
      * should not contain a 'Set-Cookie' header.
@@ -13,10 +13,16 @@ import io.apiman.gateway.engine.policy.IPolicyContext;
 import io.apiman.plugins.cookie_validate_policy.beans.CookieValidateConfigBean;
 import io.apiman.plugins.cookie_validate_policy.model.ValidationResult;
 import io.apiman.plugins.session.beans.ValidationType;
+import io.apiman.plugins.session.clock.ClockFactory;
 import io.apiman.plugins.session.exception.InvalidConfigurationException;
+import io.apiman.plugins.session.id.SessionIdGeneratorFactory;
 import io.apiman.plugins.session.model.Cookie;
 import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.model.SessionToken;
+import io.apiman.plugins.session.path.IPathMatcher;
+import io.apiman.plugins.session.path.PathMatcherFactory;
 import io.apiman.plugins.session.store.ISessionStore;
+import io.apiman.plugins.session.store.RevokedSessions;
 import io.apiman.plugins.session.store.SessionStoreFactory;
 import io.apiman.plugins.session.util.*;
 import org.apache.commons.lang.StringUtils;
@@ -24,7 +30,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.HttpURLConnection;
-import java.util.regex.Pattern;
 
 /**
  * Policy that validates a cookie in the request.
@@ -35,8 +40,8 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
     private static final Logger LOGGER = LoggerFactory.getLogger(CookieValidatePolicy.class);
     private static final Messages MESSAGES = new Messages("io.apiman.plugins.cookie_validate_policy", "CookieValidatePolicy");
     private static final String ATTRIBUTE_SKIP = CookieValidatePolicy.class.getCanonicalName() + ".skipPolicy";
-
-    private Pattern pathMatcher;
+    private static final String ATTRIBUTE_SIGNED_COOKIE = CookieValidatePolicy.class.getCanonicalName() + ".signedCookie";
+    private static final int DEFAULT_SIGNED_COOKIE_VALIDITY = 60;
 
     /**
      * See {@link AbstractMappedPolicy#getConfigurationClass()}
@@ -55,12 +60,21 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
 
         // validate configuration
         final ConfigValidator validator = ConfigValidator.build()
-                .validate("Path matcher", config.getPathMatcher())
+                .validate("Path matcher", config::hasPathMatcher)
                 .validate("Validation type", config.getValidationType())
                 .validate("Cookie name", () -> {
                     // cookie name should be set
                     return (ValidationType.NoValidation.equals(config.getValidationType()) ||
                             StringUtils.isNotBlank(config.getCookieName()));
+                })
+                .validate("Extension granularity between 0 and 100", () -> {
+                    // optional, but must be a percentage
+                    return (null == config.getExtensionGranularity() ||
+                            (config.getExtensionGranularity() >= 0 && config.getExtensionGranularity() <= 100));
+                })
+                .validate("Signed cookie validity greater than 0", () -> {
+                    // optional, but must be positive
+                    return (null == config.getSignedCookieValidity() || config.getSignedCookieValidity() > 0);
                 });
 
         if (!validator.isValid()) {
@@ -68,8 +82,24 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
                     "ConfigNotSet", validator.getValidationErrors()));
         }
 
-        // precompile path matcher for performance
-        pathMatcher = Pattern.compile(config.getPathMatcher());
+        // precompile path matcher for performance, holding it with the configuration it belongs to
+        config.setCompiledPathMatcher(PathMatcherFactory.getPathMatcher(
+                config.getPathMatcher(), config.getPathMatchers()));
+
+        // the signer is held with the configuration, as the policy instance is shared between APIs
+        if (StringUtils.isNotBlank(config.getSigningSecret())) {
+            config.setTokenSigner(new SessionTokenSigner(config.getSigningSecret()));
+        }
+
+        if (StringUtils.isNotBlank(config.getCookieName())) {
+            // only the signed token varies between reissued cookies
+            final Cookie cookie = new Cookie();
+            cookie.setName(config.getCookieName());
+            cookie.setPath(config.getCookiePath());
+            cookie.setSecure(config.getCookieSecure());
+            cookie.setHttpOnly(config.getCookieHttpOnly());
+            config.setCookieTemplate(new SetCookieTemplate(cookie));
+        }
 
         return config;
     }
@@ -82,8 +112,11 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
                            IPolicyChain<ApiRequest> chain) {
 
         // skip if path matcher is not use, or request URL doesn't match
-        if (null == pathMatcher || !pathMatcher.matcher(request.getDestination()).matches()) {
-            LOGGER.debug(MESSAGES.format("PathMatchFalse"));
+        final IPathMatcher pathMatcher = config.getCompiledPathMatcher();
+        if (null == pathMatcher || !pathMatcher.matches(request.getDestination())) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(MESSAGES.format("PathMatchFalse"));
+            }
 
             context.setAttribute(ATTRIBUTE_SKIP, true);
             chain.doApply(request);
@@ -94,17 +127,30 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
         final ValidationType validationType = config.getValidationType();
         if (ValidationType.NoValidation.equals(validationType)) {
             // no validation - continue request to back-end
-            LOGGER.debug(MESSAGES.format("NoValidation"));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(MESSAGES.format("NoValidation"));
+            }
             chain.doApply(request);
 
         } else if (ValidationType.ValidationRequired.equals(validationType) || ValidationType.ValidationOptional.equals(validationType)) {
             // validate the session
-            LOGGER.debug(MESSAGES.format("AttemptingValidation"));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(MESSAGES.format("AttemptingValidation"));
+            }
 
-            final Cookie cookie = CookieUtil.getCookie(request, config.getCookieName());
+            final Cookie cookie = CookieUtil.getCookie(context, request, config.getCookieName());
             if (null != cookie && !StringUtils.isEmpty(cookie.getValue())) {
-                // the cookie value is the session ID
-                validateSession(request, context, config, chain, cookie.getValue(), validationType);
+                if (null != config.getTokenSigner() && SessionTokenSigner.isSigned(cookie.getValue())) {
+                    // the cookie value is a signed token
+                    validateSignedCookie(request, context, config, chain, cookie.getValue(), validationType);
+
+                } else if (SessionIdGeneratorFactory.getSessionIdGenerator().isWellFormed(cookie.getValue())) {
+                    // the cookie value is the session ID
+                    validateSession(request, context, config, chain, cookie.getValue(), validationType);
+
+                } else {
+                    handleInvalidSession(request, chain, validationType, ValidationResult.MalformedSessionId, null);
+                }
 
             } else {
                 if (ValidationType.ValidationOptional.equals(validationType)) {
@@ -126,6 +172,74 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
         }
     }
 
+    /**
+     * See {@link AbstractMappedPolicy#doApply(ApiResponse, IPolicyContext, Object, IPolicyChain)}
+     */
+    @Override
+    protected void doApply(ApiResponse response, IPolicyContext context, CookieValidateConfigBean config,
+                           IPolicyChain<ApiResponse> chain) {
+
+        // reissue the session cookie as a signed token
+        final String signedCookie = context.getAttribute(ATTRIBUTE_SIGNED_COOKIE, null);
+        if (null != signedCookie) {
+            config.getCookieTemplate().addTo(response, signedCookie);
+        }
+
+        chain.doApply(response);
+    }
+
+    /**
+     * Validate a signed session cookie without consulting the session store, unless the cookie has expired or is
+     * due for renewal, or its revocation could not be checked, in which case the session it holds is validated
+     * against the session store.
+     *
+     * @param request        the service request
+     * @param context        the policy context
+     * @param config         the cookie validator configuration bean
+     * @param chain          the policy chain
+     * @param cookieValue    the signed cookie value
+     * @param validationType the type of validation required
+     */
+    private void validateSignedCookie(final ApiRequest request, final IPolicyContext context,
+                                      final CookieValidateConfigBean config, final IPolicyChain<ApiRequest> chain,
+                                      final String cookieValue, final ValidationType validationType) {
+
+        final SessionToken token = config.getTokenSigner().verify(cookieValue);
+        if (null == token) {
+            handleInvalidSession(request, chain, validationType, ValidationResult.SignedCookieInvalid, null);
+            return;
+        }
+
+        final String sessionId = token.getSessionId();
+        RevokedSessions.isRevoked(context, sessionId, result -> {
+            if (!result.isSuccess()) {
+                // don't rely on the signed cookie unless it is known not to be revoked
+                LOGGER.error(MESSAGES.format("ErrorReadingRevocation", sessionId), result.getError());
+                validateSession(request, context, config, chain, sessionId, validationType);
+
+            } else if (result.getResult()) {
+                handleInvalidSession(request, chain, validationType, ValidationResult.SessionRevoked, sessionId);
+
+            } else {
+                final long nowMillis = ClockFactory.getClock().getNowInMillis();
+                if (nowMillis < token.getExpires() && !token.isDueForRenewal(nowMillis)) {
+                    // valid signed cookie - continue request to back-end
+                    request.getHeaders().put(config.getAuthHeaderName(), token.getAuthenticatedPrincipal());
+                    if (LOGGER.isInfoEnabled()) {
+                        LOGGER.info(MESSAGES.format("SignedCookieValid", sessionId));
+                    }
+                    chain.doApply(request);
+
+                } else {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug(MESSAGES.format("RenewingSignedCookie", sessionId));
+                    }
+                    validateSession(request, context, config, chain, sessionId, validationType);
+                }
+            }
+        });
+    }
+
     /**
      * Validate the session with the given ID.
      *
@@ -141,33 +255,65 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
                                  final String sessionId, final ValidationType validationType) {
 
         // look up the session by its ID
-        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context);
+        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context, config.getSessionStore());
         sessionStore.fetchSession(sessionId, result -> {
             final ValidationResult validationResult = verifyResult(result, sessionId, request, context, config);
 
             if (validationResult.isSuccess()) {
                 // valid session - continue request to back-end
-                LOGGER.info(validationResult.getMessage());
+                logValidSession(validationResult, sessionId);
                 chain.doApply(request);
 
             } else {
-                if (ValidationType.ValidationOptional.equals(validationType)) {
-                    // permit invalid session - continue request to back-end
-                    LOGGER.info(MESSAGES.format("ValidationOptional.IgnoreInvalidSession",
-                            validationResult.getMessage()));
+                handleInvalidSession(request, chain, validationType, validationResult, sessionId);
+            }
+        });
+    }
 
-                    chain.doApply(request);
+    /**
+     * Log that a session was valid, formatting the message only if it will be logged.
+     *
+     * @param validationResult the result of the validation
+     * @param sessionId        the ID of the session
+     */
+    static void logValidSession(ValidationResult validationResult, String sessionId) {
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(MESSAGES.format(validationResult.getMessageKey(), sessionId));
+        }
+    }
 
-                } else {
-                    // 401 as session invalid or not found
-                    LOGGER.warn(validationResult.getMessage());
+    /**
+     * Either permit or reject a request with an invalid session, depending on the validation type.
+     *
+     * @param request          the service request
+     * @param chain            the policy chain
+     * @param validationType   the type of validation required
+     * @param validationResult the reason the session is invalid
+     * @param sessionId        the ID of the session, or <code>null</code> if not known
+     */
+    private void handleInvalidSession(ApiRequest request, IPolicyChain<ApiRequest> chain,
+                                      ValidationType validationType, ValidationResult validationResult,
+                                      String sessionId) {
+
+        if (ValidationType.ValidationOptional.equals(validationType)) {
+            // permit invalid session - continue request to back-end
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info(MESSAGES.format("ValidationOptional.IgnoreInvalidSession",
+                        MESSAGES.format(validationResult.getMessageKey(), sessionId)));
+            }
 
-                    // return a generic error message - don't tell the client why the failure occurred
-                    chain.doFailure(new PolicyFailure(PolicyFailureType.Authentication,
-                            HttpURLConnection.HTTP_UNAUTHORIZED, Constants.GENERIC_AUTH_FAILURE));
-                }
+            chain.doApply(request);
+
+        } else {
+            // 401 as session invalid or not found
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn(MESSAGES.format(validationResult.getMessageKey(), sessionId));
             }
-        });
+
+            // return a generic error message - don't tell the client why the failure occurred
+            chain.doFailure(new PolicyFailure(PolicyFailureType.Authentication,
+                    HttpURLConnection.HTTP_UNAUTHORIZED, Constants.GENERIC_AUTH_FAILURE));
+        }
     }
 
     /**
@@ -196,8 +342,7 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
             }
 
             // session not present
-            validationResult = new ValidationResult(false,
-                    MESSAGES.format("MissingSessionData", sessionId));
+            validationResult = ValidationResult.MissingSessionData;
         }
 
         return validationResult;
@@ -219,58 +364,121 @@ public class CookieValidatePolicy extends AbstractMappedPolicy<CookieValidateCon
             LOGGER.trace(MESSAGES.format("ValidatingSession", sessionData));
         }
 
+        // read the clock once for the whole validation
+        final long nowMillis = ClockFactory.getClock().getNowInMillis();
+
         if (sessionId.equals(sessionData.getSessionId())) {
             if (sessionData.isCurrent()) {
-                if (TimeUtil.isAfterNow(sessionData.getExpires())) {
-                    if (TimeUtil.isAfterNow(sessionData.getAbsoluteExpiry())) {
+                if (sessionData.getExpires() > nowMillis) {
+                    if (sessionData.getAbsoluteExpiry() > nowMillis) {
                         // session is valid - update session data
-                        extendSession(context, sessionData);
+                        if (isExtensionDue(sessionData, config, nowMillis)) {
+                            extendSession(context, config, sessionData, nowMillis);
+                        }
 
                         // set the authenticated principal as a header in the request passed on to the API
                         request.getHeaders().put(config.getAuthHeaderName(), sessionData.getAuthenticatedPrincipal());
 
-                        return new ValidationResult(true,
-                                MESSAGES.format("CookieValidationSucceededSessionValid", sessionId));
+                        if (null != config.getTokenSigner()) {
+                            issueSignedCookie(context, config, sessionData, nowMillis);
+                        }
+
+                        return ValidationResult.SessionValid;
 
                     } else {
-                        return new ValidationResult(false,
-                                MESSAGES.format("SessionExceededAbsoluteExpiry", sessionId));
+                        return ValidationResult.SessionExceededAbsoluteExpiry;
                     }
 
                 } else {
-                    return new ValidationResult(false,
-                            MESSAGES.format("SessionExpired", sessionId));
+                    return ValidationResult.SessionExpired;
                 }
 
             } else {
-                return new ValidationResult(false,
-                        MESSAGES.format("SessionTerminated", sessionId));
+                return ValidationResult.SessionTerminated;
             }
 
         } else {
-            return new ValidationResult(false,
-                    MESSAGES.format("SessionIdMismatch", sessionId));
+            return ValidationResult.SessionIdMismatch;
+        }
+    }
+
+    /**
+     * Determine whether the session should be extended. The time the session was last extended is derived from its
+     * expiry and validity period. With an extension granularity of <code>n</code> percent, the session is extended
+     * once <code>n</code> percent of its validity period has elapsed since then, so a session may expire up to
+     * <code>n</code> percent of its validity period after the most recent request.
+     *
+     * @param sessionData the session to extend
+     * @param config      the policy configuration
+     * @param nowMillis   the current time
+     * @return <code>true</code> if the session should be extended, otherwise <code>false</code>
+     */
+    private boolean isExtensionDue(Session sessionData, CookieValidateConfigBean config, long nowMillis) {
+        final Integer granularity = config.getExtensionGranularity();
+        if (null == granularity || granularity <= 0) {
+            return true;
+        }
+
+        final long lastExtended = (sessionData.getExpires() - sessionData.getValidityPeriod());
+        final long elapsed = (nowMillis - lastExtended);
+        if (elapsed * 100 >= sessionData.getValidityPeriod() * granularity) {
+            return true;
         }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(MESSAGES.format("ExtensionNotDue", sessionData.getSessionId(), elapsed));
+        }
+        return false;
+    }
+
+    /**
+     * Sign a token for the session, to be set as the session cookie in the response.
+     * The token is accepted until the session would expire without further requests, up to the signed cookie
+     * validity period, after which the session is validated against the session store again.
+     *
+     * @param context     the policy context
+     * @param config      the policy configuration
+     * @param sessionData the valid session
+     * @param nowMillis   the current time
+     */
+    private void issueSignedCookie(IPolicyContext context, CookieValidateConfigBean config, Session sessionData,
+                                   long nowMillis) {
+        final int validity = (null != config.getSignedCookieValidity()
+                ? config.getSignedCookieValidity() : DEFAULT_SIGNED_COOKIE_VALIDITY);
+
+        final long expires = Math.min(nowMillis + (1000L * validity),
+                Math.min(sessionData.getExpires(), sessionData.getAbsoluteExpiry()));
+
+        final SessionToken token = new SessionToken(sessionData.getSessionId(),
+                sessionData.getAuthenticatedPrincipal(), nowMillis, expires);
+
+        context.setAttribute(ATTRIBUTE_SIGNED_COOKIE, config.getTokenSigner().sign(token));
     }
 
     /**
      * Extend the session with a new expiry time.
      *
      * @param context     the policy context
+     * @param config      the policy configuration
      * @param sessionData the session to extend
+     * @param nowMillis   the current time
      */
-    private void extendSession(final IPolicyContext context, final Session sessionData) {
-        final long newExpiry = (TimeUtil.getNowInMillis() + sessionData.getValidityPeriod());
+    private void extendSession(final IPolicyContext context, final CookieValidateConfigBean config,
+                               final Session sessionData, final long nowMillis) {
+        final long newExpiry = (nowMillis + sessionData.getValidityPeriod());
         sessionData.setExpires(newExpiry);
 
-        LOGGER.debug(MESSAGES.format("ExtendingSession", sessionData.getSessionId(), newExpiry));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(MESSAGES.format("ExtendingSession", sessionData.getSessionId(), newExpiry));
+        }
 
-        // store updated session data
-        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context);
-        sessionStore.storeSession(sessionData.getSessionId(), sessionData, result -> {
+        // update the expiry of the stored session
+        final ISessionStore sessionStore = SessionStoreFactory.getSessionStore(context, config.getSessionStore());
+        sessionStore.touchSession(sessionData.getSessionId(), newExpiry, result -> {
             if (result.isSuccess()) {
-                LOGGER.info(MESSAGES.format(
-                        "UpdatedSessionData", sessionData.getSessionId(), sessionData));
+                if (LOGGER.isInfoEnabled()) {
+                    LOGGER.info(MESSAGES.format("UpdatedSessionData", sessionData.getSessionId(), sessionData));
+                }
             } else {
                 LOGGER.error(MESSAGES.format("ErrorUpdatingSessionData",
                         sessionData.getSessionId(), sessionData), result.getError());
@@ -1,8 +1,11 @@
 package io.apiman.plugins.cookie_validate_policy.beans;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.apiman.plugins.session.beans.AbstractSessionConfigBean;
 import io.apiman.plugins.session.beans.ValidationType;
+import io.apiman.plugins.session.util.SessionTokenSigner;
+import io.apiman.plugins.session.util.SetCookieTemplate;
 
 /**
  * Configuration object for the Cookie Validator policy.
@@ -18,6 +21,56 @@ public class CookieValidateConfigBean extends AbstractSessionConfigBean {
     @JsonProperty
     private String authHeaderName;
 
+    /**
+     * The percentage of the validity period that must elapse since the session was last extended
+     * before it is extended again.
+     */
+    @JsonProperty
+    private Integer extensionGranularity;
+
+    /**
+     * If set, sessions validated against the session store are reissued as cookies signed with this secret,
+     * which are then validated without the session store.
+     */
+    @JsonProperty
+    private String signingSecret;
+
+    /**
+     * The maximum period, in seconds, for which a signed cookie is accepted without consulting the session store.
+     */
+    @JsonProperty
+    private Integer signedCookieValidity;
+
+    /**
+     * The path of reissued signed cookies, which should match the path set by the Cookie Issue policy.
+     */
+    @JsonProperty
+    private String cookiePath;
+
+    /**
+     * Whether reissued signed cookies are only sent over secure connections.
+     */
+    @JsonProperty
+    private Boolean cookieSecure;
+
+    /**
+     * Whether reissued signed cookies are hidden from scripts.
+     */
+    @JsonProperty
+    private Boolean cookieHttpOnly;
+
+    /**
+     * The 'Set-Cookie' header template for signed cookies, compiled when the configuration is parsed.
+     */
+    @JsonIgnore
+    private SetCookieTemplate cookieTemplate;
+
+    /**
+     * Signs and verifies cookies with {@link #signingSecret}, if it is set, created when the configuration is parsed.
+     */
+    @JsonIgnore
+    private SessionTokenSigner tokenSigner;
+
     /**
      * @return the type of validation to perform
      */
@@ -47,4 +100,68 @@ public class CookieValidateConfigBean extends AbstractSessionConfigBean {
     public void setAuthHeaderName(String authHeaderName) {
         this.authHeaderName = authHeaderName;
     }
+
+    public Integer getExtensionGranularity() {
+        return extensionGranularity;
+    }
+
+    public void setExtensionGranularity(Integer extensionGranularity) {
+        this.extensionGranularity = extensionGranularity;
+    }
+
+    public String getSigningSecret() {
+        return signingSecret;
+    }
+
+    public void setSigningSecret(String signingSecret) {
+        this.signingSecret = signingSecret;
+    }
+
+    public Integer getSignedCookieValidity() {
+        return signedCookieValidity;
+    }
+
+    public void setSignedCookieValidity(Integer signedCookieValidity) {
+        this.signedCookieValidity = signedCookieValidity;
+    }
+
+    public String getCookiePath() {
+        return cookiePath;
+    }
+
+    public void setCookiePath(String cookiePath) {
+        this.cookiePath = cookiePath;
+    }
+
+    public Boolean getCookieSecure() {
+        return cookieSecure;
+    }
+
+    public void setCookieSecure(Boolean cookieSecure) {
+        this.cookieSecure = cookieSecure;
+    }
+
+    public Boolean getCookieHttpOnly() {
+        return cookieHttpOnly;
+    }
+
+    public void setCookieHttpOnly(Boolean cookieHttpOnly) {
+        this.cookieHttpOnly = cookieHttpOnly;
+    }
+
+    public SetCookieTemplate getCookieTemplate() {
+        return cookieTemplate;
+    }
+
+    public void setCookieTemplate(SetCookieTemplate cookieTemplate) {
+        this.cookieTemplate = cookieTemplate;
+    }
+
+    public SessionTokenSigner getTokenSigner() {
+        return tokenSigner;
+    }
+
+    public void setTokenSigner(SessionTokenSigner tokenSigner) {
+        this.tokenSigner = tokenSigner;
+    }
 }
@@ -2,23 +2,36 @@ package io.apiman.plugins.cookie_validate_policy.model;
 
 /**
  * The result of validating the session.
+ * <p>
+ * Each result holds the key of its message, which takes the session ID as its only argument. The message is only
+ * formatted if it is going to be logged.
  *
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
-public class ValidationResult {
+public enum ValidationResult {
+    SessionValid(true, "CookieValidationSucceededSessionValid"),
+    MissingSessionData(false, "MissingSessionData"),
+    MalformedSessionId(false, "MalformedSessionId"),
+    SignedCookieInvalid(false, "SignedCookieInvalid"),
+    SessionRevoked(false, "SessionRevoked"),
+    SessionIdMismatch(false, "SessionIdMismatch"),
+    SessionTerminated(false, "SessionTerminated"),
+    SessionExpired(false, "SessionExpired"),
+    SessionExceededAbsoluteExpiry(false, "SessionExceededAbsoluteExpiry");
+
     private final boolean success;
-    private final String message;
+    private final String messageKey;
 
-    public ValidationResult(boolean success, String message) {
+    ValidationResult(boolean success, String messageKey) {
         this.success = success;
-        this.message = message;
+        this.messageKey = messageKey;
     }
 
     public boolean isSuccess() {
         return success;
     }
 
-    public String getMessage() {
-        return message;
+    public String getMessageKey() {
+        return messageKey;
     }
 }
@@ -2,10 +2,14 @@ package io.apiman.plugins.cookie_validate_policy;
 
 import io.apiman.gateway.engine.beans.PolicyFailureType;
 import io.apiman.plugins.cookie_validate_policy.backend.RequiresAuthHeaderBackEndApi;
+import io.apiman.plugins.cookie_validate_policy.beans.CookieValidateConfigBean;
 import io.apiman.plugins.session.exception.InvalidConfigurationException;
 import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.model.SessionToken;
 import io.apiman.plugins.session.test.CommonTestUtil;
+import io.apiman.plugins.session.test.VirtualClock;
 import io.apiman.plugins.session.util.Constants;
+import io.apiman.plugins.session.util.SessionTokenSigner;
 import io.apiman.plugins.session.util.TimeUtil;
 import io.apiman.test.policies.*;
 import org.junit.Test;
@@ -136,6 +140,49 @@ public class CookieValidatePolicyTest extends ApimanPolicyTest {
         assertTrue(updatedSession.getExpires() > originalSession.getExpires());
     }
 
+    /**
+     * Expect that a policy with an extension granularity does not extend a session until the configured
+     * percentage of its validity period has elapsed since it was last extended.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "extension-granularity-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testExtensionGranularityNotDue() throws Throwable {
+        // test data - session was extended moments ago, expiring in 60s
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+        // make request
+        final Session updatedSession = makeSessionRequest(originalSession, true);
+
+        // verify expiry not updated - the session still expires 60s after it was last extended
+        assertEquals(originalSession.getExpires(), updatedSession.getExpires());
+    }
+
+    /**
+     * Expect that a policy with an extension granularity extends a session once the configured
+     * percentage of its validity period has elapsed since it was last extended.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "extension-granularity-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testExtensionGranularityDue() throws Throwable {
+        // test data - session was last extended 40s ago, so expires in 20s
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+        originalSession.setExpires(TimeUtil.getNowInMillis() + 20000);
+        CommonTestUtil.storeSession(CommonTestUtil.deepCopy(originalSession));
+
+        // make request
+        final Session updatedSession = makeSessionRequest(originalSession, true);
+
+        // verify expiry updated to a full validity period from now
+        assertTrue(updatedSession.getExpires() > originalSession.getExpires());
+        assertTrue(updatedSession.getExpires() >= TimeUtil.getNowInMillis() + 50000);
+    }
+
     /**
      * Expect that a policy with the configuration of 'ValidationOptional' still permits the request
      * to the back-end service even if the session cookie is not present.
@@ -199,6 +246,31 @@ public class CookieValidatePolicyTest extends ApimanPolicyTest {
         sendAndExpect401(request, originalSession);
     }
 
+    /**
+     * Expect that a policy with the configuration of 'ValidationRequired' rejects the request with a 401 status
+     * once a valid session reaches its expiry, using a virtual clock instead of waiting.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "standard-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testAuthenticatedRequestFailureSessionExpiresOnVirtualClock() throws Throwable {
+        try (VirtualClock clock = VirtualClock.install()) {
+            // test data - session expires in 60s
+            final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+            // move past the expiry
+            clock.advance(61000);
+
+            // send request with cookie
+            final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+            request.header(Constants.HEADER_COOKIE, CommonTestUtil.buildCookieHeader(originalSession));
+
+            sendAndExpect401(request, originalSession);
+        }
+    }
+
     /**
      * Expect that a policy with the configuration of 'ValidationRequired' rejects the request with a 401 status
      * if the session is terminated.
@@ -245,6 +317,26 @@ public class CookieValidatePolicyTest extends ApimanPolicyTest {
         sendAndExpect401(request, originalSession);
     }
 
+    /**
+     * Expect that a policy with the configuration of 'ValidationRequired' rejects the request with a 401 code
+     * if the session cookie does not hold a well formed session ID.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "standard-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testAuthenticatedRequestFailureMalformedSessionId() throws Throwable {
+        // test data - session expires in 60s
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+        // send request with a cookie that could not hold a session ID
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE, CommonTestUtil.COOKIE_NAME + "=not!a$session;");
+
+        sendAndExpect401(request, originalSession);
+    }
+
     /**
      * Expects that a ConfigurationException is thrown as the policy is not configured correctly.
      *
@@ -264,4 +356,193 @@ public class CookieValidatePolicyTest extends ApimanPolicyTest {
         send(request);
         fail(InvalidConfigurationException.class + " expected");
     }
+
+    /**
+     * Expect that a configuration whose only path matchers are blank is rejected, rather than skipping validation
+     * for every request.
+     *
+     * @throws Throwable
+     */
+    @Test(expected = InvalidConfigurationException.class)
+    @Configuration("{\"validationType\": \"ValidationRequired\", \"cookieName\": \"XSESSION\", \"pathMatchers\": [\" \", \"\"]}")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testAuthenticatedRequestExceptionBlankPathMatchers() throws Throwable {
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        send(request);
+        fail(InvalidConfigurationException.class + " expected");
+    }
+
+    /**
+     * Expect that a session validated against the session store is reissued as a signed cookie.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "signed-cookie-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testSignedCookieIssued() throws Throwable {
+        // test data - session expires in 60s
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE, CommonTestUtil.buildCookieHeader(originalSession));
+
+        final PolicyTestResponse response = send(request);
+        assertEquals(HttpURLConnection.HTTP_OK, response.code());
+
+        // the cookie should hold a token for the session, signed with the configured secret
+        final String cookieHeader = response.header(Constants.HEADER_SET_COOKIE);
+        assertNotNull(cookieHeader);
+        assertTrue(cookieHeader.startsWith(CommonTestUtil.COOKIE_NAME + "="));
+        assertTrue(cookieHeader.contains("Path=/;"));
+
+        final String cookieValue = cookieHeader.substring(CommonTestUtil.COOKIE_NAME.length() + 1,
+                cookieHeader.indexOf(';'));
+
+        final SessionToken token = new SessionTokenSigner(CommonTestUtil.COOKIE_SIGNING_SECRET).verify(cookieValue);
+        assertNotNull(token);
+        assertEquals(originalSession.getSessionId(), token.getSessionId());
+        assertEquals(CommonTestUtil.AUTHENTICATED_PRINICPAL, token.getAuthenticatedPrincipal());
+        assertTrue(TimeUtil.isAfterNow(token.getExpires()));
+    }
+
+    /**
+     * Expect that a valid signed cookie is accepted without consulting the session store.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "signed-cookie-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testSignedCookieValidatedWithoutSessionStore() throws Throwable {
+        // test data - session is removed from the store, so only the signed cookie can be used
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+        CommonTestUtil.deleteSession(originalSession.getSessionId());
+
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE,
+                CommonTestUtil.buildSignedCookieHeader(originalSession, nowMillis, nowMillis + 60000));
+
+        final PolicyTestResponse response = send(request);
+        assertEquals(HttpURLConnection.HTTP_OK, response.code());
+
+        // the cookie is not reissued
+        assertNull(response.header(Constants.HEADER_SET_COOKIE));
+    }
+
+    /**
+     * Expect that a signed cookie due for renewal is validated against the session store.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "signed-cookie-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testSignedCookieDueForRenewal() throws Throwable {
+        // test data - session is terminated, but the signed cookie has not yet expired
+        final Session originalSession = CommonTestUtil.insertTestSession(60, false);
+
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE,
+                CommonTestUtil.buildSignedCookieHeader(originalSession, nowMillis - 50000, nowMillis + 10000));
+
+        sendAndExpect401(request, originalSession);
+    }
+
+    /**
+     * Expect that a signed cookie with an invalid signature is rejected.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "signed-cookie-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testSignedCookieTampered() throws Throwable {
+        // test data - session expires in 60s
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+        // sign with a different secret
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final String forged = new SessionTokenSigner("not-the-secret").sign(new SessionToken(
+                originalSession.getSessionId(), CommonTestUtil.AUTHENTICATED_PRINICPAL, nowMillis, nowMillis + 60000));
+
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE, CommonTestUtil.COOKIE_NAME + "=" + forged + ";");
+
+        sendAndExpect401(request, originalSession);
+    }
+
+    /**
+     * Expect that a signed cookie for a revoked session is rejected.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "signed-cookie-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testSignedCookieRevoked() throws Throwable {
+        // test data - session expires in 60s, but has been revoked
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+        CommonTestUtil.revokeSession(originalSession.getSessionId());
+
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, RESOURCE);
+        request.header(Constants.HEADER_COOKIE,
+                CommonTestUtil.buildSignedCookieHeader(originalSession, nowMillis, nowMillis + 60000));
+
+        sendAndExpect401(request, originalSession);
+    }
+
+    /**
+     * Expect that a policy configured with a list of path matchers validates requests to any of the listed paths,
+     * and passes other requests straight to the back-end service.
+     *
+     * @throws Throwable
+     */
+    @Test
+    @Configuration(classpathConfigFile = "path-matchers-config.json")
+    @BackEndApi(RequiresAuthHeaderBackEndApi.class)
+    public void testPathMatchers() throws Throwable {
+        final Session originalSession = CommonTestUtil.insertTestSession(60, true);
+
+        // matched paths require a session
+        for (String path : new String[]{RESOURCE, "/index.html", "/api/v2/users"}) {
+            final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, path);
+            sendAndExpect401(request, originalSession);
+        }
+
+        // other paths skip the policy, so reach the back-end service without the authenticated principal
+        final PolicyTestRequest request = PolicyTestRequest.build(PolicyTestRequestType.GET, "/other/resource");
+        final PolicyTestResponse response = send(request);
+        assertEquals(HttpURLConnection.HTTP_UNAUTHORIZED, response.code());
+    }
+
+    /**
+     * Expect that each configuration parsed by a policy instance keeps its own signing secret, as one instance
+     * serves every API using the policy.
+     */
+    @Test
+    @Configuration(classpathConfigFile = "standard-config.json")
+    public void testSigningSecretHeldPerConfiguration() {
+        final CookieValidatePolicy policy = new CookieValidatePolicy();
+        final CookieValidateConfigBean signed = policy.parseConfiguration(
+                "{\"validationType\": \"ValidationRequired\", \"cookieName\": \"XSESSION\", " +
+                        "\"signingSecret\": \"" + CommonTestUtil.COOKIE_SIGNING_SECRET + "\", \"pathMatcher\": \".*\"}");
+        final CookieValidateConfigBean otherSecret = policy.parseConfiguration(
+                "{\"validationType\": \"ValidationRequired\", \"cookieName\": \"XSESSION\", " +
+                        "\"signingSecret\": \"another-secret\", \"pathMatcher\": \".*\"}");
+        final CookieValidateConfigBean unsigned = policy.parseConfiguration(
+                "{\"validationType\": \"ValidationRequired\", \"cookieName\": \"XSESSION\", \"pathMatcher\": \".*\"}");
+
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final String cookieValue = new SessionTokenSigner(CommonTestUtil.COOKIE_SIGNING_SECRET).sign(
+                new SessionToken("abcdefghijklmnopqrstuv", CommonTestUtil.AUTHENTICATED_PRINICPAL, nowMillis,
+                        nowMillis + 60000));
+
+        assertNotNull(signed.getTokenSigner().verify(cookieValue));
+        assertNull(otherSecret.getTokenSigner().verify(cookieValue));
+        assertNull(unsigned.getTokenSigner());
+    }
 }
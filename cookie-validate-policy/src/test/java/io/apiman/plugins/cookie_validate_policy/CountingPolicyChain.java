@@ -0,0 +1,38 @@
+package io.apiman.plugins.cookie_validate_policy;
+
+import io.apiman.gateway.engine.beans.ApiRequest;
+import io.apiman.gateway.engine.beans.PolicyFailure;
+import io.apiman.gateway.engine.policy.IPolicyChain;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Counts the requests passed on and the policy failures, for tests that apply the policy without a policy engine.
+ * Fails on a skipped request or an error.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+class CountingPolicyChain implements IPolicyChain<ApiRequest> {
+    int applied;
+    int failures;
+
+    @Override
+    public void doApply(ApiRequest request) {
+        applied++;
+    }
+
+    @Override
+    public void doSkip(ApiRequest request) {
+        fail("Request skipped");
+    }
+
+    @Override
+    public void doFailure(PolicyFailure failure) {
+        failures++;
+    }
+
+    @Override
+    public void throwError(Throwable error) {
+        throw new AssertionError(error);
+    }
+}
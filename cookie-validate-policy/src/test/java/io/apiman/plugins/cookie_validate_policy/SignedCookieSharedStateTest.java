@@ -0,0 +1,104 @@
+package io.apiman.plugins.cookie_validate_policy;
+
+import io.apiman.gateway.engine.beans.ApiRequest;
+import io.apiman.plugins.cookie_validate_policy.beans.CookieValidateConfigBean;
+import io.apiman.plugins.session.model.SessionToken;
+import io.apiman.plugins.session.store.RevokedSessions;
+import io.apiman.plugins.session.store.SessionStoreFactory;
+import io.apiman.plugins.session.store.impl.InMemorySessionStoreImpl;
+import io.apiman.plugins.session.test.CommonTestUtil;
+import io.apiman.plugins.session.test.ObservableSharedStateComponent;
+import io.apiman.plugins.session.test.TestPolicyContext;
+import io.apiman.plugins.session.util.Constants;
+import io.apiman.plugins.session.util.SessionTokenSigner;
+import io.apiman.plugins.session.util.TimeUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that signed session cookies are validated without reading the shared state, when it can be observed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SignedCookieSharedStateTest {
+    private static final String SESSION_STORE_IMPL = "io.apiman.plugins.session.ISessionStore";
+    private static final String SESSION_ID = "abcdefghijklmnopqrstuv";
+    private static final String CONFIG = "{" +
+            "\"validationType\": \"ValidationRequired\"," +
+            "\"cookieName\": \"XSESSION\"," +
+            "\"authHeaderName\": \"X-Authenticated-Principal\"," +
+            "\"signingSecret\": \"" + CommonTestUtil.COOKIE_SIGNING_SECRET + "\"," +
+            "\"pathMatcher\": \".*\"" +
+            "}";
+
+    private ObservableSharedStateComponent sharedState;
+    private TestPolicyContext context;
+    private CookieValidatePolicy policy;
+    private CookieValidateConfigBean config;
+    private ApiRequest request;
+    private CountingPolicyChain chain;
+
+    @Before
+    public void setUp() {
+        // the session store is empty, so a request only succeeds if it is validated using the signed cookie
+        System.setProperty(SESSION_STORE_IMPL, InMemorySessionStoreImpl.class.getCanonicalName());
+        sharedState = new ObservableSharedStateComponent();
+        context = new TestPolicyContext(sharedState);
+
+        policy = new CookieValidatePolicy();
+        config = policy.parseConfiguration(CONFIG);
+
+        final long nowMillis = TimeUtil.getNowInMillis();
+        final String cookieValue = new SessionTokenSigner(CommonTestUtil.COOKIE_SIGNING_SECRET).sign(
+                new SessionToken(SESSION_ID, CommonTestUtil.AUTHENTICATED_PRINICPAL, nowMillis, nowMillis + 60000));
+
+        request = new ApiRequest();
+        request.setDestination("/");
+        request.getHeaders().put(Constants.HEADER_COOKIE, "XSESSION=" + cookieValue);
+        chain = new CountingPolicyChain();
+    }
+
+    @After
+    public void tearDown() {
+        sharedState.close();
+        SessionStoreFactory.closeSessionStores(context);
+        System.clearProperty(SESSION_STORE_IMPL);
+    }
+
+    /**
+     * Expects that a valid signed cookie is accepted without reading the shared state.
+     */
+    @Test
+    public void testValidSignedCookie() {
+        for (int i = 0; i < 3; i++) {
+            context.clearAttributes();
+            policy.apply(request, context, config, chain);
+        }
+
+        assertEquals(3, chain.applied);
+        assertEquals(0, chain.failures);
+        assertEquals(CommonTestUtil.AUTHENTICATED_PRINICPAL, request.getHeaders().get("X-Authenticated-Principal"));
+        assertEquals(0, sharedState.getPropertyReads());
+    }
+
+    /**
+     * Expects that a signed cookie is rejected once revoked, without reading the shared state.
+     */
+    @Test
+    public void testRevokedSignedCookie() {
+        policy.apply(request, context, config, chain);
+        assertEquals(1, chain.applied);
+
+        RevokedSessions.revoke(context, SESSION_ID, TimeUtil.getNowInMillis() + 60000,
+                result -> assertTrue(result.isSuccess()));
+
+        context.clearAttributes();
+        policy.apply(request, context, config, chain);
+        assertEquals(1, chain.applied);
+        assertEquals(1, chain.failures);
+        assertEquals(0, sharedState.getPropertyReads());
+    }
+}
@@ -0,0 +1,152 @@
+package io.apiman.plugins.cookie_validate_policy;
+
+import io.apiman.gateway.engine.beans.ApiRequest;
+import io.apiman.gateway.engine.impl.InMemorySharedStateComponent;
+import io.apiman.plugins.cookie_validate_policy.beans.CookieValidateConfigBean;
+import io.apiman.plugins.cookie_validate_policy.model.ValidationResult;
+import io.apiman.plugins.session.model.Session;
+import io.apiman.plugins.session.store.SessionStoreFactory;
+import io.apiman.plugins.session.store.impl.InMemorySessionStoreImpl;
+import io.apiman.plugins.session.test.TestPolicyContext;
+import io.apiman.plugins.session.util.Constants;
+import io.apiman.plugins.session.util.SessionUtil;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a successful validation does not format messages that will not be logged.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ValidationResultAllocationTest {
+    private static final String SESSION_STORE_IMPL = "io.apiman.plugins.session.ISessionStore";
+    private static final int ITERATIONS = 10000;
+    private static final int MEASUREMENTS = 5;
+    private static final String SESSION_ID = "5f1c0ab4-9e1b-4c4e-8d34-0b7f3c1e2a77";
+
+    /**
+     * Validating a valid session allocates about 600 bytes, with compressed object pointers. Formatting any of the
+     * messages on that path that include the session ID allocates more than 500 bytes, so would exceed this.
+     */
+    private static final long MAX_BYTES_PER_VALIDATION = 800;
+    private static final String CONFIG = "{" +
+            "\"validationType\": \"ValidationRequired\"," +
+            "\"cookieName\": \"XSESSION\"," +
+            "\"authHeaderName\": \"X-Authenticated-Principal\"," +
+            "\"extensionGranularity\": 50," +
+            "\"pathMatcher\": \".*\"" +
+            "}";
+
+    private TestPolicyContext context;
+
+    @Before
+    public void setUp() {
+        System.setProperty(SESSION_STORE_IMPL, InMemorySessionStoreImpl.class.getCanonicalName());
+        context = new TestPolicyContext(new InMemorySharedStateComponent());
+
+        final Session session = SessionUtil.buildSession(SESSION_ID, "apiman", 60);
+        session.setCurrent(true);
+        SessionStoreFactory.getSessionStore(context).storeSession(SESSION_ID, session,
+                result -> assertTrue(result.isSuccess()));
+    }
+
+    @After
+    public void tearDown() {
+        SessionStoreFactory.closeSessionStores(context);
+        System.clearProperty(SESSION_STORE_IMPL);
+    }
+
+    /**
+     * Run the task several times, so that one-off allocations by the JVM, such as while compiling the task, are not
+     * counted against it.
+     *
+     * @return the fewest bytes allocated by the current thread during a run of the task
+     */
+    private static long measureAllocatedBytes(Runnable task) {
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        long fewestBytes = Long.MAX_VALUE;
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            final long before = threadBean.getThreadAllocatedBytes(threadId);
+            task.run();
+            fewestBytes = Math.min(fewestBytes, threadBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return fewestBytes;
+    }
+
+    /**
+     * Expects that validating a valid session against the session store stays within its allocation budget when
+     * logging is disabled, so that no messages are formatted only to be discarded.
+     */
+    @Test
+    public void testValidSessionDoesNotFormatMessages() throws Exception {
+        Assume.assumeFalse("DEBUG logging must be disabled",
+                LoggerFactory.getLogger(CookieValidatePolicy.class).isDebugEnabled());
+        Assume.assumeTrue("Thread allocation measurement not supported",
+                ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        Assume.assumeTrue("Compressed object pointers must be in use", ManagementFactory
+                .getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                .getVMOption("UseCompressedOops").getValue().equals("true"));
+
+        final CookieValidatePolicy policy = new CookieValidatePolicy();
+        final CookieValidateConfigBean config = policy.parseConfiguration(CONFIG);
+        final ApiRequest request = new ApiRequest();
+        request.setDestination("/");
+        request.getHeaders().put(Constants.HEADER_COOKIE, "XSESSION=" + SESSION_ID);
+        final CountingPolicyChain chain = new CountingPolicyChain();
+
+        final Runnable validating = () -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                context.clearAttributes();
+                policy.apply(request, context, config, chain);
+            }
+        };
+
+        // warm up
+        validating.run();
+        assertEquals(ITERATIONS, chain.applied);
+        assertEquals(0, chain.failures);
+
+        final long bytesPerValidation = measureAllocatedBytes(validating) / ITERATIONS;
+        assertEquals(ITERATIONS * (MEASUREMENTS + 1), chain.applied);
+        assertEquals(0, chain.failures);
+        assertEquals("apiman", request.getHeaders().get("X-Authenticated-Principal"));
+        assertTrue(String.format("Validation should allocate less than %s bytes, but allocated %s bytes",
+                MAX_BYTES_PER_VALIDATION, bytesPerValidation), bytesPerValidation < MAX_BYTES_PER_VALIDATION);
+    }
+
+    /**
+     * Expects that logging a valid session allocates nothing when the message would be discarded.
+     */
+    @Test
+    public void testLogValidSessionDoesNotAllocate() {
+        Assume.assumeFalse("INFO logging must be disabled",
+                LoggerFactory.getLogger(CookieValidatePolicy.class).isInfoEnabled());
+        Assume.assumeTrue("Thread allocation measurement not supported",
+                ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+        final Runnable logging = () -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                CookieValidatePolicy.logValidSession(ValidationResult.SessionValid, SESSION_ID);
+            }
+        };
+
+        // warm up
+        logging.run();
+
+        final long loggingBytes = measureAllocatedBytes(logging);
+        assertTrue(String.format("Logging should not allocate, but allocated %s bytes", loggingBytes),
+                loggingBytes < 1024);
+    }
+}